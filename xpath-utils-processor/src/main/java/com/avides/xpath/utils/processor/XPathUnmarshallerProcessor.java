@@ -0,0 +1,349 @@
+package com.avides.xpath.utils.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * Annotation-processor that generates an unmarshaller for each class with
+ * fields annotated with <code>XPathFirst</code>, <code>XPathList</code> or
+ * <code>XPathMap</code>. The generated class is named like the annotated class
+ * with the suffix <code>XPathUnmarshaller</code> (e.g.
+ * <code>AnyObjectXPathUnmarshaller</code> or
+ * <code>Outer$InnerXPathUnmarshaller</code> for nested classes) and is found
+ * and used by the <code>XPathUnmarshaller</code> at runtime, so the fields are
+ * written without any reflection.
+ * <p>
+ * Annotated fields must be accessible from the package of the annotated class
+ * or have an accessible setter (like <code>setAnyString</code>) and must not be
+ * final or static. If that is not the case for any field, no unmarshaller is
+ * generated (with a warning) and the class is unmarshalled by reflection as
+ * before
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+@SupportedAnnotationTypes(
+{ XPathUnmarshallerProcessor.XPATH_FIRST, XPathUnmarshallerProcessor.XPATH_LIST, XPathUnmarshallerProcessor.XPATH_MAP })
+public class XPathUnmarshallerProcessor extends AbstractProcessor
+{
+    static final String XPATH_FIRST = "com.avides.xpath.utils.annotations.XPathFirst";
+    static final String XPATH_LIST = "com.avides.xpath.utils.annotations.XPathList";
+    static final String XPATH_MAP = "com.avides.xpath.utils.annotations.XPathMap";
+
+    static final String CLASS_NAME_SUFFIX = "XPathUnmarshaller";
+
+    private static final String GENERATED_UNMARSHALLER = "com.avides.xpath.utils.processors.GeneratedUnmarshaller";
+    private static final String UNMARSHALLER_SUPPORT = "com.avides.xpath.utils.processors.UnmarshallerSupport";
+    private static final String GENERATED = "javax.annotation.processing.Generated";
+
+    private final Set<String> generatedTypes = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        Set<TypeElement> annotatedTypes = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations)
+        {
+            for (VariableElement field : ElementFilter.fieldsIn(roundEnv.getElementsAnnotatedWith(annotation)))
+            {
+                annotatedTypes.add((TypeElement) field.getEnclosingElement());
+            }
+        }
+        for (TypeElement type : annotatedTypes)
+        {
+            if (generatedTypes.add(type.getQualifiedName().toString()))
+            {
+                generate(type);
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement type)
+    {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+        String problem = checkType(type, packageElement);
+        List<String> statements = new ArrayList<>();
+        TypeElement currentType = type;
+        while ((problem == null) && (currentType != null) && !currentType.getQualifiedName().contentEquals("java.lang.Object"))
+        {
+            for (VariableElement field : ElementFilter.fieldsIn(currentType.getEnclosedElements()))
+            {
+                problem = addStatements(type, field, packageElement, statements);
+                if (problem != null)
+                {
+                    break;
+                }
+            }
+            TypeMirror superclass = currentType.getSuperclass();
+            currentType = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+        if (problem != null)
+        {
+            processingEnv.getMessager().printMessage(Kind.WARNING, "no " + CLASS_NAME_SUFFIX + " generated, " + problem, type);
+            return;
+        }
+        write(type, packageElement, statements);
+    }
+
+    private String checkType(TypeElement type, PackageElement packageElement)
+    {
+        if ((type.getKind() != ElementKind.CLASS) || type.getModifiers().contains(Modifier.ABSTRACT))
+        {
+            return "because " + type + " is not a concrete class";
+        }
+        if (!isAccessible(type, packageElement))
+        {
+            return "because " + type + " is not accessible from its package";
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements()))
+        {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC))
+            {
+                return null;
+            }
+        }
+        return "because " + type + " has no public no-args-constructor";
+    }
+
+    private String addStatements(TypeElement type, VariableElement field, PackageElement packageElement, List<String> statements)
+    {
+        for (AnnotationMirror annotation : field.getAnnotationMirrors())
+        {
+            String annotationName = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+            if (!annotationName.equals(XPATH_FIRST) && !annotationName.equals(XPATH_LIST) && !annotationName.equals(XPATH_MAP))
+            {
+                continue;
+            }
+            if (field.getModifiers().contains(Modifier.FINAL) || field.getModifiers().contains(Modifier.STATIC))
+            {
+                return "because field " + field.getSimpleName() + " is final or static";
+            }
+            Map<String, AnnotationValue> values = getValues(annotation);
+            for (AnnotationValue value : values.values())
+            {
+                if ((value.getValue() instanceof DeclaredType) && !isAccessible(((DeclaredType) value.getValue()).asElement(), packageElement))
+                {
+                    return "because " + value.getValue() + " is not accessible from package " + packageElement;
+                }
+            }
+            String fieldTarget = getFieldTarget(type, field, packageElement);
+            if (fieldTarget == null)
+            {
+                return "because field " + field.getSimpleName() + " is neither accessible from package " + packageElement + " nor has an accessible setter";
+            }
+            int index = statements.size();
+            String valueExpression;
+            if (annotationName.equals(XPATH_FIRST))
+            {
+                if (Boolean.TRUE.equals(values.get("isSubType").getValue()))
+                {
+                    valueExpression = "support.queryFirstSubType(root, " + literal(values.get("value")) + ", " + classLiteral(field.asType()) + ")";
+                }
+                else
+                {
+                    valueExpression = "support.queryFirst(root, " + literal(values.get("value")) + ", " + rawClass(values.get("converterClass")) + ")";
+                }
+            }
+            else if (annotationName.equals(XPATH_LIST))
+            {
+                boolean parallel = Boolean.TRUE.equals(values.get("parallel").getValue());
+                valueExpression = "support.queryList(root, " + literal(values.get("value")) + ", " + rawClass(values.get("converterClass")) + ", "
+                    + rawClass(values.get("subTypeClass")) + (parallel ? ", true)" : ")");
+            }
+            else
+            {
+                valueExpression = "support.queryMap(root, " + literal(values.get("entryXPath")) + ", " + literal(values.get("keySubXPath")) + ", "
+                    + literal(values.get("valueSubXPath")) + ", " + rawClass(values.get("keyConverterClass")) + ", "
+                    + rawClass(values.get("valueConverterClass")) + ", " + rawClass(values.get("keySubTypeClass")) + ", "
+                    + rawClass(values.get("valueSubTypeClass")) + ")";
+            }
+            addWrite(field, fieldTarget, valueExpression, index, statements);
+        }
+        return null;
+    }
+
+    private void addWrite(VariableElement field, String fieldTarget, String valueExpression, int index, List<String> statements)
+    {
+        TypeMirror fieldType = field.asType();
+        String castType = fieldType.getKind().isPrimitive()
+            ? processingEnv.getTypeUtils().boxedClass((PrimitiveType) fieldType).getQualifiedName().toString()
+            : erasure(fieldType);
+        String fieldValue = "(" + castType + ") support.toFieldValue(" + valueExpression + ", " + classLiteral(fieldType) + ", "
+            + processingEnv.getElementUtils().getConstantExpression(field.getSimpleName().toString()) + ")";
+        if (fieldType.getKind() == TypeKind.BYTE)
+        {
+            // byte has no null-value, so a missing value is not written at all
+            statements.add(castType + " value" + index + " = " + fieldValue + ";");
+            statements.add("if (value" + index + " != null)");
+            statements.add("{");
+            statements.add("    " + assignment(fieldTarget, "value" + index));
+            statements.add("}");
+        }
+        else
+        {
+            statements.add(assignment(fieldTarget, fieldValue));
+        }
+    }
+
+    private static String assignment(String fieldTarget, String value)
+    {
+        return fieldTarget.endsWith("(") ? fieldTarget + value + ");" : fieldTarget + " = " + value + ";";
+    }
+
+    /**
+     * @return the left side of the assignment, or the setter-call without the
+     *         argument (ending with "("), or <code>null</code> if the field can
+     *         not be written
+     */
+    private String getFieldTarget(TypeElement type, VariableElement field, PackageElement packageElement)
+    {
+        TypeElement declaringType = (TypeElement) field.getEnclosingElement();
+        String target = declaringType.equals(type) ? "target" : "((" + erasure(declaringType.asType()) + ") target)";
+        if (isAccessible(field, packageElement))
+        {
+            return target + "." + field.getSimpleName();
+        }
+        String name = field.getSimpleName().toString();
+        String setterName = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type)))
+        {
+            if (method.getSimpleName().contentEquals(setterName) && (method.getParameters().size() == 1) && !method.getModifiers().contains(Modifier.STATIC)
+                && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), field.asType())
+                && isAccessible(method, packageElement))
+            {
+                return "target." + setterName + "(";
+            }
+        }
+        return null;
+    }
+
+    private boolean isAccessible(Element element, PackageElement packageElement)
+    {
+        for (Element current = element; current.getKind() != ElementKind.PACKAGE; current = current.getEnclosingElement())
+        {
+            if ((current != element) && !(current instanceof TypeElement))
+            {
+                // local and anonymous classes are never accessible
+                return false;
+            }
+            Set<Modifier> modifiers = current.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE)
+                || (!modifiers.contains(Modifier.PUBLIC) && !processingEnv.getElementUtils().getPackageOf(current).equals(packageElement)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<String, AnnotationValue> getValues(AnnotationMirror annotation)
+    {
+        Map<String, AnnotationValue> values = new HashMap<>();
+        for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : processingEnv.getElementUtils()
+            .getElementValuesWithDefaults(annotation)
+            .entrySet())
+        {
+            values.put(entry.getKey().getSimpleName().toString(), entry.getValue());
+        }
+        return values;
+    }
+
+    private String literal(AnnotationValue value)
+    {
+        return processingEnv.getElementUtils().getConstantExpression(value.getValue());
+    }
+
+    private String rawClass(AnnotationValue value)
+    {
+        return "(Class) " + classLiteral((TypeMirror) value.getValue());
+    }
+
+    private String classLiteral(TypeMirror type)
+    {
+        return erasure(type) + ".class";
+    }
+
+    private String erasure(TypeMirror type)
+    {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private void write(TypeElement type, PackageElement packageElement, List<String> statements)
+    {
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        String className = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + CLASS_NAME_SUFFIX;
+        String typeName = erasure(type.asType());
+        try (Writer writer = processingEnv.getFiler()
+            .createSourceFile(packageName.isEmpty() ? className : packageName + "." + className, type)
+            .openWriter())
+        {
+            if (!packageName.isEmpty())
+            {
+                writer.write("package " + packageName + ";\n\n");
+            }
+            if (processingEnv.getElementUtils().getTypeElement(GENERATED) != null)
+            {
+                writer.write("@" + GENERATED + "(\"" + getClass().getName() + "\")\n");
+            }
+            writer.write("public final class " + className + " implements " + GENERATED_UNMARSHALLER + "\n");
+            writer.write("{\n");
+            writer.write("    private final " + UNMARSHALLER_SUPPORT + " support;\n\n");
+            writer.write("    public " + className + "(" + UNMARSHALLER_SUPPORT + " support)\n");
+            writer.write("    {\n");
+            writer.write("        this.support = support;\n");
+            writer.write("    }\n\n");
+            writer.write("    @Override\n");
+            writer.write("    @SuppressWarnings({ \"unchecked\", \"rawtypes\" })\n");
+            writer.write("    public Object unmarshal(nu.xom.Element root)\n");
+            writer.write("    {\n");
+            writer.write("        " + typeName + " target = new " + typeName + "();\n");
+            for (String statement : statements)
+            {
+                writer.write("        " + statement + "\n");
+            }
+            writer.write("        return target;\n");
+            writer.write("    }\n");
+            writer.write("}\n");
+        }
+        catch (IOException e)
+        {
+            processingEnv.getMessager().printMessage(Kind.ERROR, "could not write " + className + ": " + e.getMessage(), type);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.avides.xpath.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+
+import nu.xom.ParsingException;
+
+/**
+ * Reads whole {@link File}s with an {@link AsynchronousFileChannel}, so no
+ * thread is blocked while waiting for the I/O
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class AsyncFileReader
+{
+    /**
+     * The maximum size of a {@link File} that can be read into one
+     * {@link ByteBuffer}
+     */
+    static final long MAXIMUM_SIZE = Integer.MAX_VALUE - 8;
+
+    private AsyncFileReader()
+    {
+        // only static methods
+    }
+
+    /**
+     * @param file
+     *            the {@link File} to read, not larger than
+     *            {@link #MAXIMUM_SIZE}
+     * @return {@link CompletableFuture} of the content of the {@link File},
+     *         flipped for reading, or completed exceptionally with a
+     *         {@link ParsingException} if the {@link File} can not be read
+     */
+    static CompletableFuture<ByteBuffer> read(File file)
+    {
+        CompletableFuture<ByteBuffer> content = new CompletableFuture<>();
+        AsynchronousFileChannel channel;
+        try
+        {
+            channel = AsynchronousFileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        catch (IOException e)
+        {
+            content.completeExceptionally(new ParsingException("the xml can not be parsed", e));
+            return content;
+        }
+        ByteBuffer buffer;
+        try
+        {
+            buffer = ByteBuffer.allocate((int) Math.min(channel.size(), MAXIMUM_SIZE));
+        }
+        catch (IOException e)
+        {
+            close(channel);
+            content.completeExceptionally(new ParsingException("the xml can not be parsed", e));
+            return content;
+        }
+        channel.read(buffer, 0, buffer, new CompletionHandler<Integer, ByteBuffer>()
+        {
+            @Override
+            public void completed(Integer read, ByteBuffer target)
+            {
+                if ((read < 0) || !target.hasRemaining())
+                {
+                    close(channel);
+                    target.flip();
+                    content.complete(target);
+                }
+                else
+                {
+                    channel.read(target, target.position(), target, this);
+                }
+            }
+
+            @Override
+            public void failed(Throwable e, ByteBuffer target)
+            {
+                close(channel);
+                content.completeExceptionally(new ParsingException("the xml can not be parsed", e));
+            }
+        });
+        return content;
+    }
+
+    private static void close(AsynchronousFileChannel channel)
+    {
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+            // everything is read already
+        }
+    }
+}
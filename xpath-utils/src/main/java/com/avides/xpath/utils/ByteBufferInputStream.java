@@ -0,0 +1,58 @@
+package com.avides.xpath.utils;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link InputStream} reading the remaining bytes of a {@link ByteBuffer}
+ * (heap or direct) without copying them first. The position of the given
+ * {@link ByteBuffer} is not changed
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class ByteBufferInputStream extends InputStream
+{
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer)
+    {
+        this.buffer = buffer.duplicate();
+    }
+
+    @Override
+    public int read()
+    {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        if (!buffer.hasRemaining())
+        {
+            return -1;
+        }
+        int read = Math.min(len, buffer.remaining());
+        buffer.get(b, off, read);
+        return read;
+    }
+
+    @Override
+    public long skip(long n)
+    {
+        int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available()
+    {
+        return buffer.remaining();
+    }
+}
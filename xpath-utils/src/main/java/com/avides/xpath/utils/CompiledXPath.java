@@ -0,0 +1,285 @@
+package com.avides.xpath.utils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import nu.xom.Node;
+import nu.xom.Nodes;
+import nu.xom.XPathContext;
+import nu.xom.XPathException;
+import nu.xom.jaxen.BaseXPath;
+import nu.xom.jaxen.JaxenException;
+import nu.xom.jaxen.NamespaceContext;
+
+/**
+ * An xPath-query that is parsed once and can be executed on any number of
+ * {@link Node}s, in contrast to {@link Node#query(String)} which parses the
+ * xPath-query on each execution. Instances are immutable and thread-safe
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ *
+ * @see XPathExpressionCache
+ */
+abstract class CompiledXPath
+{
+    private static final Logger log = LoggerFactory.getLogger(CompiledXPath.class);
+
+    private static final NamespaceContext EMPTY_NAMESPACE_CONTEXT = prefix -> null;
+
+    // an abbreviated descendant-step or an axis that can reach beyond the children, not a name containing one of them
+    private static final Pattern SCANNING_STEP = Pattern
+        .compile("//|(?<![\\w.-])(?:descendant|descendant-or-self|ancestor|ancestor-or-self|following|following-sibling|preceding|preceding-sibling)\\s*::");
+
+    private static final Constructor<? extends BaseXPath> jaxenConnectorConstructor = findJaxenConnectorConstructor();
+
+    protected final String xPath;
+    protected final XPathContext context;
+
+    protected CompiledXPath(String xPath, XPathContext context)
+    {
+        this.xPath = xPath;
+        this.context = context;
+    }
+
+    /**
+     * Compiles the given xPath-query, simple location-paths are evaluated
+     * natively (see {@link SimpleLocationPath}), the first match of
+     * descendant-paths too (see {@link DescendantPath}), all others by Jaxen
+     *
+     * @param xPath
+     *            the xPath-query to compile
+     * @param context
+     *            the {@link XPathContext} to resolve namespace-prefixes with,
+     *            can be <code>null</code>
+     * @return the compiled xPath-query
+     * @throws XPathException
+     *             if the xPath-query is not valid
+     */
+    static CompiledXPath compile(String xPath, XPathContext context)
+    {
+        CompiledXPath compiledXPath = jaxenConnectorConstructor != null ? new Jaxen(xPath, context) : new Uncompiled(xPath, context);
+        SimpleLocationPath simpleLocationPath = SimpleLocationPath.parse(compiledXPath);
+        if (simpleLocationPath != null)
+        {
+            return simpleLocationPath;
+        }
+        DescendantPath descendantPath = DescendantPath.parse(compiledXPath);
+        return descendantPath != null ? descendantPath : compiledXPath;
+    }
+
+    /**
+     * Executes this xPath-query on the given {@link Node}
+     *
+     * @param root
+     *            the {@link Node} to execute this xPath-query on
+     * @return the found {@link Nodes}, will never be <code>null</code>
+     */
+    abstract Nodes select(Node root);
+
+    /**
+     * Executes this xPath-query on the given {@link Node} and returns the first
+     * found {@link Node} in document-order
+     *
+     * @param root
+     *            the {@link Node} to execute this xPath-query on
+     * @return the first found {@link Node}, or <code>null</code> if nothing
+     *         was found
+     */
+    Node selectFirst(Node root)
+    {
+        Nodes nodes = select(root);
+        return nodes.size() > 0 ? nodes.get(0) : null;
+    }
+
+    /**
+     * Executes this xPath-query on the given {@link Node} lazily, the found
+     * {@link Node}s are produced in document-order while walking the tree if
+     * possible, so an iteration that stops early does not pay for all
+     * matches. The tree must not be changed while iterating
+     *
+     * @param root
+     *            the {@link Node} to execute this xPath-query on
+     * @return {@link Iterator} of the found {@link Node}s
+     */
+    Iterator<Node> iterate(Node root)
+    {
+        return new NodeIterator(select(root));
+    }
+
+    /**
+     * Tests if this xPath-query finds anything on the given {@link Node}, the
+     * evaluation stops at the first match if possible
+     *
+     * @param root
+     *            the {@link Node} to execute this xPath-query on
+     * @return <code>true</code> if at least one {@link Node} was found
+     */
+    boolean exists(Node root)
+    {
+        return selectFirst(root) != null;
+    }
+
+    /**
+     * @return <code>true</code> if this xPath-query scans whole subtrees or
+     *         axes (like <code>//item</code> or <code>following::item</code>)
+     *         instead of walking down a few steps
+     */
+    boolean isScanning()
+    {
+        return SCANNING_STEP.matcher(xPath).find();
+    }
+
+    /**
+     * @return the (not compiled) xPath-query
+     */
+    String getXPath()
+    {
+        return xPath;
+    }
+
+    /**
+     * {@link Iterator} that looks ahead for the next found {@link Node} only
+     * when it is needed
+     */
+    abstract static class LazyNodeIterator implements Iterator<Node>
+    {
+        private Node next;
+        private boolean advanced;
+
+        /**
+         * @return the next found {@link Node}, or <code>null</code> if there
+         *         is none
+         */
+        protected abstract Node advance();
+
+        @Override
+        public boolean hasNext()
+        {
+            if (!advanced)
+            {
+                next = advance();
+                advanced = true;
+            }
+            return next != null;
+        }
+
+        @Override
+        public Node next()
+        {
+            if (!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            advanced = false;
+            return next;
+        }
+    }
+
+    private static boolean isDetached(Node root)
+    {
+        // XOM temporarily attaches nodes without document to a fragment, so these have to run through Node.query
+        return root.getDocument() == null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Constructor<? extends BaseXPath> findJaxenConnectorConstructor()
+    {
+        try
+        {
+            Constructor<? extends BaseXPath> constructor = (Constructor<? extends BaseXPath>) Class.forName("nu.xom.JaxenConnector")
+                .getDeclaredConstructor(String.class);
+            constructor.setAccessible(true);
+            return constructor;
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            log.warn("xPath-queries can not be compiled, they will be parsed on each execution: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Compiled xPath-query executed by the Jaxen-engine shipped with XOM
+     */
+    private static final class Jaxen extends CompiledXPath
+    {
+        private final BaseXPath jaxenXPath;
+
+        Jaxen(String xPath, XPathContext context)
+        {
+            super(xPath, context);
+            try
+            {
+                jaxenXPath = jaxenConnectorConstructor.newInstance(xPath);
+                // also initializes the context-support, so the instance is completely built before it is shared
+                jaxenXPath.setNamespaceContext(context != null ? context::lookup : EMPTY_NAMESPACE_CONTEXT);
+            }
+            catch (InvocationTargetException e)
+            {
+                throw toXPathException(e.getCause());
+            }
+            catch (ReflectiveOperationException e)
+            {
+                throw toXPathException(e);
+            }
+        }
+
+        @Override
+        Nodes select(Node root)
+        {
+            if (isDetached(root))
+            {
+                return root.query(xPath, context);
+            }
+            try
+            {
+                @SuppressWarnings("unchecked") List<Node> result = jaxenXPath.selectNodes(root);
+                Nodes nodes = new Nodes();
+                for (Node node : result)
+                {
+                    nodes.append(node);
+                }
+                return nodes;
+            }
+            catch (JaxenException | RuntimeException e)
+            {
+                throw toXPathException(e);
+            }
+        }
+
+        private XPathException toXPathException(Throwable e)
+        {
+            if (e instanceof XPathException)
+            {
+                return (XPathException) e;
+            }
+            return new XPathException("XPath error: " + e.getMessage() + " (" + xPath + ")", e);
+        }
+    }
+
+    /**
+     * Fallback if the Jaxen-engine of XOM is not accessible, parses the
+     * xPath-query on each execution
+     */
+    private static final class Uncompiled extends CompiledXPath
+    {
+        Uncompiled(String xPath, XPathContext context)
+        {
+            super(xPath, context);
+        }
+
+        @Override
+        Nodes select(Node root)
+        {
+            return root.query(xPath, context);
+        }
+    }
+}
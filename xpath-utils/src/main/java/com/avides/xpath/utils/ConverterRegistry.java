@@ -0,0 +1,82 @@
+package com.avides.xpath.utils;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registered and cached instances of {@link Function Converter}s of one
+ * {@link XPathUnmarshaller}. Reads are lock-free, each instance is stored on
+ * its own converter-class, so the registry does not prevent the unloading of
+ * converter-classes
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class ConverterRegistry
+{
+    private static final Logger log = LoggerFactory.getLogger(ConverterRegistry.class);
+
+    // replaced as a whole when cleared
+    private volatile ClassValue<AtomicReference<Function<String, ?>>> instances = newInstances();
+
+    /**
+     * Returns the registered or cached instance of the given
+     * {@link Function Converter}-{@link Class}, a new instance is created and
+     * cached if there is none yet
+     */
+    @SuppressWarnings("unchecked")
+    <T> Function<String, T> get(Class<? extends Function<String, T>> converterClass)
+    {
+        AtomicReference<Function<String, ?>> instance = instances.get(converterClass);
+        Function<String, T> converter = (Function<String, T>) instance.get();
+        if (converter == null)
+        {
+            try
+            {
+                converter = converterClass.newInstance();
+            }
+            catch (InstantiationException | IllegalAccessException e)
+            {
+                log.error("could not create new instance for converter-class " + converterClass + ": " + e.getMessage(), e);
+                throw new RuntimeException(e);
+            }
+            if (!instance.compareAndSet(null, converter))
+            {
+                // another thread created or registered an instance in the meantime
+                Function<String, T> existing = (Function<String, T>) instance.get();
+                converter = existing != null ? existing : converter;
+            }
+        }
+        return converter;
+    }
+
+    void register(Function<String, ?> converter)
+    {
+        instances.get(converter.getClass()).set(converter);
+    }
+
+    void unregister(Class<?> converterClass)
+    {
+        instances.get(converterClass).set(null);
+    }
+
+    void clear()
+    {
+        instances = newInstances();
+    }
+
+    private static ClassValue<AtomicReference<Function<String, ?>>> newInstances()
+    {
+        return new ClassValue<AtomicReference<Function<String, ?>>>()
+        {
+            @Override
+            protected AtomicReference<Function<String, ?>> computeValue(Class<?> type)
+            {
+                return new AtomicReference<>();
+            }
+        };
+    }
+}
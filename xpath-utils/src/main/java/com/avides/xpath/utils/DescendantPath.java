@@ -0,0 +1,287 @@
+package com.avides.xpath.utils;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import nu.xom.Document;
+import nu.xom.Element;
+import nu.xom.Node;
+import nu.xom.Nodes;
+
+/**
+ * Native first-match and lazy evaluation of descendant-paths like
+ * <code>//item</code>, <code>.//item</code>, <code>descendant::item</code>,
+ * <code>//*</code> or <code>//item/@id</code>: a single unprefixed name (or
+ * <code>*</code>) on the descendant-axis, optionally followed by an unprefixed
+ * attribute. Jaxen finds all matches of such a path, even when only the first
+ * ones are needed, so {@link #selectFirst(Node)} and {@link #iterate(Node)}
+ * walk the subtree in document-order instead and stop when nothing more is
+ * needed. {@link #select(Node)} and everything that is not
+ * supported natively is delegated to the Jaxen-compiled fallback, so the
+ * results are always the same as of {@link Node#query(String)}
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class DescendantPath extends CompiledXPath
+{
+    private static final String ABSOLUTE_PREFIX = "//";
+    private static final String RELATIVE_PREFIX = ".//";
+    private static final String AXIS_PREFIX = "descendant::";
+
+    private final CompiledXPath fallback;
+    private final boolean absolute;
+    private final String name;
+    private final String attributeName;
+
+    private DescendantPath(CompiledXPath fallback, boolean absolute, String name, String attributeName)
+    {
+        super(fallback.xPath, fallback.context);
+        this.fallback = fallback;
+        this.absolute = absolute;
+        this.name = name;
+        this.attributeName = attributeName;
+    }
+
+    /**
+     * Parses the xPath-query of the given fallback
+     *
+     * @param fallback
+     *            the compiled xPath-query to use if the native evaluation is not
+     *            possible
+     * @return the {@link DescendantPath}, or <code>null</code> if the
+     *         xPath-query is not a supported descendant-path
+     */
+    static DescendantPath parse(CompiledXPath fallback)
+    {
+        String xPath = fallback.xPath;
+        boolean absolute = false;
+        String step;
+        if (xPath.startsWith(ABSOLUTE_PREFIX))
+        {
+            absolute = true;
+            step = xPath.substring(ABSOLUTE_PREFIX.length());
+        }
+        else if (xPath.startsWith(RELATIVE_PREFIX))
+        {
+            step = xPath.substring(RELATIVE_PREFIX.length());
+        }
+        else if (xPath.startsWith(AXIS_PREFIX))
+        {
+            step = xPath.substring(AXIS_PREFIX.length());
+        }
+        else
+        {
+            return null;
+        }
+
+        String attributeName = null;
+        int slash = step.indexOf('/');
+        if (slash >= 0)
+        {
+            String attributeStep = step.substring(slash + 1);
+            if (!attributeStep.startsWith("@") || !SimpleLocationPath.isNCName(attributeStep, 1, attributeStep.length()))
+            {
+                return null;
+            }
+            attributeName = attributeStep.substring(1).intern();
+            step = step.substring(0, slash);
+        }
+        if ("*".equals(step))
+        {
+            return new DescendantPath(fallback, absolute, null, attributeName);
+        }
+        if (!SimpleLocationPath.isNCName(step, 0, step.length()))
+        {
+            return null;
+        }
+        // interned like the names of the parser, so equal names are mostly the same instance
+        return new DescendantPath(fallback, absolute, step.intern(), attributeName);
+    }
+
+    @Override
+    boolean isScanning()
+    {
+        return true;
+    }
+
+    @Override
+    Nodes select(Node root)
+    {
+        return fallback.select(root);
+    }
+
+    @Override
+    Node selectFirst(Node root)
+    {
+        if (absolute)
+        {
+            Document document = root.getDocument();
+            // XOM evaluates absolute paths on detached nodes against a temporary fragment
+            return document != null ? first(document.getRootElement()) : fallback.selectFirst(root);
+        }
+        if (root instanceof Element)
+        {
+            return firstBelow((Element) root);
+        }
+        if (root instanceof Document)
+        {
+            return first(((Document) root).getRootElement());
+        }
+        return fallback.selectFirst(root);
+    }
+
+    @Override
+    Iterator<Node> iterate(Node root)
+    {
+        if (absolute)
+        {
+            Document document = root.getDocument();
+            return document != null ? new DescendantIterator(document.getRootElement(), true) : super.iterate(root);
+        }
+        if (root instanceof Element)
+        {
+            return new DescendantIterator((Element) root, false);
+        }
+        if (root instanceof Document)
+        {
+            return new DescendantIterator(((Document) root).getRootElement(), true);
+        }
+        return super.iterate(root);
+    }
+
+    /**
+     * @return the first match of the given {@link Element} or its
+     *         descendants, in document-order (attributes come before the
+     *         children of their {@link Element})
+     */
+    private Node first(Element element)
+    {
+        Node found = match(element);
+        return found != null ? found : firstBelow(element);
+    }
+
+    private Node firstBelow(Element parent)
+    {
+        for (int i = 0, count = parent.getChildCount(); i < count; i++)
+        {
+            Node child = parent.getChild(i);
+            if (child instanceof Element)
+            {
+                Node found = first((Element) child);
+                if (found != null)
+                {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean matches(Element element)
+    {
+        return (name == null) || (name.equals(element.getLocalName()) && element.getNamespaceURI().isEmpty());
+    }
+
+    /**
+     * @return <code>true</code> if this path starts at the root of the
+     *         document, not at the given {@link Node}
+     */
+    boolean isAbsolute()
+    {
+        return absolute;
+    }
+
+    /**
+     * @return the {@link Node} selected by this path if the given
+     *         {@link Element} is one of the descendants, or <code>null</code>
+     *         if it does not match
+     */
+    Node match(Element element)
+    {
+        if (!matches(element))
+        {
+            return null;
+        }
+        return attributeName != null ? element.getAttribute(attributeName) : element;
+    }
+
+    /**
+     * Walks the subtree in document-order like {@link DescendantPath#first(Element)},
+     * but keeps the path to the current {@link Element}, so the next match is
+     * only searched when it is needed
+     */
+    private final class DescendantIterator extends LazyNodeIterator
+    {
+        private Element[] parents = new Element[16];
+        private int[] indexes = new int[16];
+        private int depth;
+        private Element self;
+
+        /**
+         * @param start
+         *            the {@link Element} to walk the descendants of
+         * @param includingStart
+         *            <code>true</code> if the given start can match itself
+         */
+        DescendantIterator(Element start, boolean includingStart)
+        {
+            if (includingStart)
+            {
+                self = start;
+            }
+            else
+            {
+                push(start);
+            }
+        }
+
+        @Override
+        protected Node advance()
+        {
+            if (self != null)
+            {
+                Element start = self;
+                self = null;
+                push(start);
+                Node found = match(start);
+                if (found != null)
+                {
+                    return found;
+                }
+            }
+            while (depth > 0)
+            {
+                Element parent = parents[depth - 1];
+                if (indexes[depth - 1] >= parent.getChildCount())
+                {
+                    depth--;
+                    continue;
+                }
+                Node child = parent.getChild(indexes[depth - 1]++);
+                if (child instanceof Element)
+                {
+                    push((Element) child);
+                    Node found = match((Element) child);
+                    if (found != null)
+                    {
+                        return found;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private void push(Element element)
+        {
+            if (depth == parents.length)
+            {
+                parents = Arrays.copyOf(parents, depth * 2);
+                indexes = Arrays.copyOf(indexes, depth * 2);
+            }
+            parents[depth] = element;
+            indexes[depth] = 0;
+            depth++;
+        }
+    }
+}
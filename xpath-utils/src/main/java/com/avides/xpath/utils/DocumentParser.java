@@ -0,0 +1,330 @@
+package com.avides.xpath.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import nu.xom.Builder;
+import nu.xom.Document;
+import nu.xom.Element;
+import nu.xom.NodeFactory;
+import nu.xom.ParsingException;
+import nu.xom.ValidityException;
+
+/**
+ * Immutable parser-settings of one {@link XPathUnmarshaller}, used to build
+ * the {@link Element}s to unmarshal from. The {@link Builder}s are reused
+ * according to the {@link ParserPooling}
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class DocumentParser
+{
+    private final boolean validating;
+    private final Supplier<? extends NodeFactory> nodeFactory;
+    private final boolean internNames;
+    private final boolean stripWhitespace;
+    private final boolean pruning;
+    private final boolean earlyTermination;
+    private final long memoryMappingThreshold;
+    private final BuilderPool pool;
+
+    /**
+     * @param settings
+     *            the {@link XPathUnmarshaller.Builder} with the
+     *            parser-settings (validating, {@link NodeFactory},
+     *            name-interning, whitespace-stripping, pruning,
+     *            early-termination, memory-mapping-threshold and
+     *            {@link ParserPooling}), read once on creation
+     */
+    DocumentParser(XPathUnmarshaller.Builder settings)
+    {
+        validating = settings.validating;
+        nodeFactory = settings.nodeFactory;
+        internNames = settings.internNames;
+        stripWhitespace = settings.stripWhitespace;
+        pruning = settings.pruneUnusedNodes;
+        earlyTermination = settings.earlyTermination;
+        memoryMappingThreshold = settings.memoryMappingThreshold;
+        switch (settings.parserPooling)
+        {
+            case THREAD_LOCAL:
+                pool = new ThreadLocalBuilderPool(settings.maximumPooledParsers);
+                break;
+            case BOUNDED:
+                pool = new BoundedBuilderPool(settings.maximumPooledParsers);
+                break;
+            default:
+                pool = null;
+        }
+    }
+
+    Element getRootElement(InputStream inputStream) throws ParsingException
+    {
+        return getRootElement(inputStream, null);
+    }
+
+    Element getRootElement(Reader reader) throws ParsingException
+    {
+        return getRootElement(reader, null);
+    }
+
+    Element getRootElement(File file) throws ParsingException
+    {
+        return getRootElement(file, null);
+    }
+
+    Element getRootElement(String xml) throws ParsingException
+    {
+        return getRootElement(xml, null);
+    }
+
+    /**
+     * @param paths
+     *            the only paths to keep if this parser is pruning and the
+     *            values to wait for if it terminates early, <code>null</code>
+     *            to build everything
+     */
+    Element getRootElement(InputStream inputStream, ElementPaths paths) throws ParsingException
+    {
+        return buildDocument(inputStream, paths, (builder, input) -> builder.build(input)).getRootElement();
+    }
+
+    /**
+     * @param baseURI
+     *            the URI the content was read from, needed to resolve relative
+     *            references like a DTD
+     */
+    Element getRootElement(InputStream inputStream, String baseURI, ElementPaths paths) throws ParsingException
+    {
+        return buildDocument(inputStream, paths, (builder, input) -> builder.build(input, baseURI)).getRootElement();
+    }
+
+    Element getRootElement(Reader reader, ElementPaths paths) throws ParsingException
+    {
+        return buildDocument(reader, paths, (builder, input) -> builder.build(input)).getRootElement();
+    }
+
+    /**
+     * @return <code>true</code> if the given {@link File} is large enough to
+     *         be read memory-mapped
+     */
+    boolean isMemoryMapped(File file)
+    {
+        return file.length() >= memoryMappingThreshold;
+    }
+
+    Element getRootElement(File file, ElementPaths paths) throws ParsingException
+    {
+        if (!isMemoryMapped(file))
+        {
+            return buildDocument(file, paths, (builder, input) -> builder.build(input)).getRootElement();
+        }
+        return buildDocument(file, paths, (builder, input) ->
+        {
+            try (InputStream inputStream = new MappedFileInputStream(input, MappedFileInputStream.DEFAULT_CHUNK_SIZE))
+            {
+                // the base-URI of the file is needed to resolve relative references like a DTD
+                return builder.build(inputStream, input.toURI().toString());
+            }
+        }).getRootElement();
+    }
+
+    /**
+     * @param file
+     *            the {@link File} the content was read from, needed to resolve
+     *            relative references like a DTD
+     * @param content
+     *            the content of the {@link File}
+     */
+    Element getRootElement(File file, ByteBuffer content, ElementPaths paths) throws ParsingException
+    {
+        return buildDocument(content, paths, (builder, input) -> builder.build(new ByteBufferInputStream(input), file.toURI().toString()))
+            .getRootElement();
+    }
+
+    Element getRootElement(String xml, ElementPaths paths) throws ParsingException
+    {
+        // read as characters, so there is no encoding to get wrong
+        return getRootElement(new StringReader(xml), paths);
+    }
+
+    Element getRootElement(ByteBuffer buffer, ElementPaths paths) throws ParsingException
+    {
+        return getRootElement(new ByteBufferInputStream(buffer), paths);
+    }
+
+    Element getRootElement(byte[] bytes, int offset, int length, ElementPaths paths) throws ParsingException
+    {
+        return getRootElement(new ByteArrayInputStream(bytes, offset, length), paths);
+    }
+
+    Element getRootElement(ReadableByteChannel channel, ElementPaths paths) throws ParsingException
+    {
+        return getRootElement(Channels.newInputStream(channel), paths);
+    }
+
+    private Builder newBuilder()
+    {
+        NodeFactory factory = nodeFactory != null ? nodeFactory.get() : null;
+        if (internNames)
+        {
+            factory = new NameInterningNodeFactory(factory != null ? factory : new NodeFactory(), NameInterningNodeFactory.DEFAULT_MAXIMUM_NAMES);
+        }
+        if (stripWhitespace)
+        {
+            factory = new WhitespaceStrippingNodeFactory(factory != null ? factory : new NodeFactory());
+        }
+        if (pruning)
+        {
+            factory = new PruningNodeFactory(factory != null ? factory : new NodeFactory(), null);
+        }
+        if (earlyTermination)
+        {
+            factory = new EarlyTerminatingNodeFactory(factory != null ? factory : new NodeFactory());
+        }
+        return factory != null ? new Builder(validating, factory) : new Builder(validating);
+    }
+
+    private <T> Document buildDocument(T input, ElementPaths paths, ToDocumentConverter<T> converter) throws ParsingException
+    {
+        Builder builder = pool != null ? pool.acquire() : null;
+        if (builder == null)
+        {
+            builder = newBuilder();
+        }
+        NodeFactory factory = builder.getNodeFactory();
+        if (earlyTermination)
+        {
+            ((EarlyTerminatingNodeFactory) factory).setFirstValuePaths(paths != null ? paths.getFirstValuePaths() : null);
+            factory = ((EarlyTerminatingNodeFactory) factory).getDelegate();
+        }
+        if (pruning)
+        {
+            ((PruningNodeFactory) factory).setPaths(paths);
+        }
+        Document document;
+        try
+        {
+            document = converter.convert(builder, input);
+        }
+        catch (ParsingException e)
+        {
+            if (!earlyTermination || !EarlyTerminatingNodeFactory.isTerminatedEarly(e))
+            {
+                throw e;
+            }
+            document = ((EarlyTerminatingNodeFactory) builder.getNodeFactory()).takeDocument();
+        }
+        catch (IOException e)
+        {
+            throw new ParsingException("the xml can not be parsed", e);
+        }
+        // only released on success, the state of the parser is unknown after a failure
+        if (pool != null)
+        {
+            pool.release(builder);
+        }
+        return document;
+    }
+
+    private interface ToDocumentConverter<T>
+    {
+        Document convert(Builder builder, T input) throws IOException, ValidityException, ParsingException;
+    }
+
+    private interface BuilderPool
+    {
+        /**
+         * @return an idle {@link Builder} that is not used by any other thread
+         *         until it is released, or <code>null</code> if there is none
+         */
+        Builder acquire();
+
+        void release(Builder builder);
+    }
+
+    private static final class ThreadLocalBuilderPool implements BuilderPool
+    {
+        private final ThreadLocal<Builder> builders = new ThreadLocal<>();
+
+        // a virtual thread mostly parses only one document, so its builder would be lost with the thread
+        private final BoundedBuilderPool virtualThreadBuilders;
+
+        ThreadLocalBuilderPool(int maximumVirtualThreadBuilders)
+        {
+            virtualThreadBuilders = new BoundedBuilderPool(maximumVirtualThreadBuilders);
+        }
+
+        @Override
+        public Builder acquire()
+        {
+            if (VirtualThreads.isCurrentThreadVirtual())
+            {
+                return virtualThreadBuilders.acquire();
+            }
+            Builder builder = builders.get();
+            // taken out while parsing, so a nested parsing on the same thread gets its own builder
+            builders.set(null);
+            return builder;
+        }
+
+        @Override
+        public void release(Builder builder)
+        {
+            if (VirtualThreads.isCurrentThreadVirtual())
+            {
+                virtualThreadBuilders.release(builder);
+                return;
+            }
+            builders.set(builder);
+        }
+    }
+
+    private static final class BoundedBuilderPool implements BuilderPool
+    {
+        private final int maximumSize;
+        private final Queue<Builder> builders = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+
+        BoundedBuilderPool(int maximumSize)
+        {
+            this.maximumSize = maximumSize;
+        }
+
+        @Override
+        public Builder acquire()
+        {
+            Builder builder = builders.poll();
+            if (builder != null)
+            {
+                size.decrementAndGet();
+            }
+            return builder;
+        }
+
+        @Override
+        public void release(Builder builder)
+        {
+            if (size.incrementAndGet() <= maximumSize)
+            {
+                builders.offer(builder);
+            }
+            else
+            {
+                size.decrementAndGet();
+            }
+        }
+    }
+}
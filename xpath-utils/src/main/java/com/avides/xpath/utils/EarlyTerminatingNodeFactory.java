@@ -0,0 +1,233 @@
+package com.avides.xpath.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nu.xom.Attribute;
+import nu.xom.Document;
+import nu.xom.Element;
+import nu.xom.NodeFactory;
+import nu.xom.Nodes;
+import nu.xom.ParsingException;
+import nu.xom.Text;
+
+/**
+ * {@link NodeFactory} that stops the parsing as soon as the first matches of
+ * all given paths are completely built (see
+ * {@link ElementPaths#getFirstValuePaths()}), so the rest of the input is
+ * neither read nor built. The stop is signalled by an exception, the
+ * {@link Document} built so far is then available by {@link #takeDocument()}.
+ * No {@link Document} is referenced after a parsing, so a pooled
+ * {@link nu.xom.Builder} does not keep the last one alive. All nodes are
+ * created by the given delegate. Not thread-safe, like the
+ * {@link nu.xom.Builder} it is used by
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class EarlyTerminatingNodeFactory extends NodeFactory
+{
+    private final NodeFactory delegate;
+    private List<SimpleLocationPath> firstValuePaths;
+
+    private Document document;
+    // the open elements as built, the root-element first
+    private final List<Element> openElements = new ArrayList<>();
+    private boolean[] found;
+    private int missing;
+
+    /**
+     * @param delegate
+     *            creates all nodes
+     */
+    EarlyTerminatingNodeFactory(NodeFactory delegate)
+    {
+        this.delegate = delegate;
+    }
+
+    NodeFactory getDelegate()
+    {
+        return delegate;
+    }
+
+    /**
+     * Sets the paths to wait for in the next documents
+     *
+     * @param firstValuePaths
+     *            the paths of which only the first matches are needed,
+     *            <code>null</code> to parse the whole input
+     */
+    void setFirstValuePaths(List<SimpleLocationPath> firstValuePaths)
+    {
+        this.firstValuePaths = firstValuePaths;
+    }
+
+    /**
+     * Takes the {@link Document} of the last parsing out of this factory
+     *
+     * @return the incomplete {@link Document} of the last parsing if it was
+     *         terminated early, <code>null</code> if it was completed or is
+     *         already taken
+     */
+    Document takeDocument()
+    {
+        Document taken = document;
+        document = null;
+        openElements.clear();
+        return taken;
+    }
+
+    /**
+     * @param e
+     *            the exception thrown by the {@link nu.xom.Builder}
+     * @return <code>true</code> if the parsing was only stopped because all
+     *         values were found
+     */
+    static boolean isTerminatedEarly(ParsingException e)
+    {
+        return e.getCause() == AllValuesFoundException.INSTANCE;
+    }
+
+    @Override
+    public Document startMakingDocument()
+    {
+        openElements.clear();
+        if (firstValuePaths != null)
+        {
+            found = new boolean[firstValuePaths.size()];
+            missing = found.length;
+        }
+        document = delegate.startMakingDocument();
+        return document;
+    }
+
+    @Override
+    public void finishMakingDocument(Document document)
+    {
+        // the builder returns the completed document itself
+        this.document = null;
+        delegate.finishMakingDocument(document);
+    }
+
+    @Override
+    public Element makeRootElement(String name, String namespace)
+    {
+        return push(delegate.makeRootElement(name, namespace));
+    }
+
+    @Override
+    public Element startMakingElement(String name, String namespace)
+    {
+        return push(delegate.startMakingElement(name, namespace));
+    }
+
+    private Element push(Element element)
+    {
+        // if the delegate drops the element, its content belongs to the parent
+        if (element != null)
+        {
+            openElements.add(element);
+        }
+        return element;
+    }
+
+    @Override
+    public Nodes finishMakingElement(Element element)
+    {
+        int depth = openElements.size() - 1;
+        openElements.remove(depth);
+        Nodes nodes = delegate.finishMakingElement(element);
+        // an element replaced by the delegate is not checked, it could still be changed by its ancestors
+        if ((firstValuePaths != null) && (nodes.size() == 1) && (nodes.get(0) == element))
+        {
+            for (int i = 0; i < found.length; i++)
+            {
+                if (!found[i] && isFirstMatch(firstValuePaths.get(i), element, depth))
+                {
+                    found[i] = true;
+                    missing--;
+                }
+            }
+            if (missing == 0)
+            {
+                throw AllValuesFoundException.INSTANCE;
+            }
+        }
+        return nodes;
+    }
+
+    private boolean isFirstMatch(SimpleLocationPath path, Element element, int depth)
+    {
+        if (path.getElementStepCount() != depth)
+        {
+            return false;
+        }
+        for (int step = 0; step < depth; step++)
+        {
+            Element stepElement = step == (depth - 1) ? element : openElements.get(step + 1);
+            String name = path.getElementName(step);
+            if (!"*".equals(name) && !(name.equals(stepElement.getLocalName()) && stepElement.getNamespaceURI().isEmpty()))
+            {
+                return false;
+            }
+        }
+        if (path.selectsAttribute())
+        {
+            return element.getAttribute(path.getAttributeName()) != null;
+        }
+        if (path.selectsText())
+        {
+            for (int i = 0; i < element.getChildCount(); i++)
+            {
+                if (element.getChild(i) instanceof Text)
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Nodes makeAttribute(String name, String URI, String value, Attribute.Type type)
+    {
+        return delegate.makeAttribute(name, URI, value, type);
+    }
+
+    @Override
+    public Nodes makeText(String data)
+    {
+        return delegate.makeText(data);
+    }
+
+    @Override
+    public Nodes makeComment(String data)
+    {
+        return delegate.makeComment(data);
+    }
+
+    @Override
+    public Nodes makeProcessingInstruction(String target, String data)
+    {
+        return delegate.makeProcessingInstruction(target, data);
+    }
+
+    @Override
+    public Nodes makeDocType(String rootElementName, String publicID, String systemID)
+    {
+        return delegate.makeDocType(rootElementName, publicID, systemID);
+    }
+
+    private static final class AllValuesFoundException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        static final AllValuesFoundException INSTANCE = new AllValuesFoundException();
+
+        private AllValuesFoundException()
+        {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.avides.xpath.utils;
+
+import static com.avides.xpath.utils.utils.ReflectionUtils.doWithFields;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.avides.xpath.utils.annotations.XPathFirst;
+import com.avides.xpath.utils.annotations.XPathList;
+import com.avides.xpath.utils.annotations.XPathMap;
+
+/**
+ * Tree of the element-paths that the annotated fields of a class (including
+ * the fields of its sub-types) can ever select, relative to the element the
+ * class is unmarshalled from. Elements that are not on any path are not needed
+ * for unmarshalling (see {@link PruningNodeFactory}). Only simple
+ * location-paths (see {@link SimpleLocationPath}) can be followed, any other
+ * xPath-query could also select nodes outside of the element it is executed on,
+ * so with such a query the whole document is kept. Immutable after creation
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class ElementPaths
+{
+    private static final String ANY_ELEMENT = "*";
+
+    private final Map<String, ElementPaths> children = new HashMap<>();
+    private boolean complete;
+
+    // only set on the root
+    private List<SimpleLocationPath> firstValuePaths;
+
+    private ElementPaths()
+    {
+        // created by forType
+    }
+
+    /**
+     * Creates the paths needed to unmarshal the given type
+     *
+     * @param type
+     *            the type of the class with the annotated fields
+     * @param defaultToTypeConverters
+     *            the default-{@link Function Converter}s by type, types with
+     *            such a converter need the whole element
+     * @return the paths needed to unmarshal the given type
+     */
+    static ElementPaths forType(Class<?> type, Map<Class<?>, Function<String, ?>> defaultToTypeConverters)
+    {
+        ElementPaths root = new ElementPaths();
+        root.addType(type, defaultToTypeConverters, new HashSet<>(), root);
+        if (!root.complete)
+        {
+            root.firstValuePaths = findFirstValuePaths(type);
+        }
+        return root;
+    }
+
+    private static List<SimpleLocationPath> findFirstValuePaths(Class<?> type)
+    {
+        List<SimpleLocationPath> paths = new ArrayList<>();
+        boolean[] onlyFirstValues = { true };
+        doWithFields(type, field ->
+        {
+            XPathFirst xPathFirst = field.getAnnotation(XPathFirst.class);
+            if ((field.getAnnotation(XPathList.class) != null) || (field.getAnnotation(XPathMap.class) != null))
+            {
+                onlyFirstValues[0] = false;
+            }
+            else if (xPathFirst != null)
+            {
+                CompiledXPath compiledXPath = CompiledXPath.compile(xPathFirst.value(), null);
+                // the first match of a path with positions or without element-steps is only known at the end
+                if ((compiledXPath instanceof SimpleLocationPath) && !((SimpleLocationPath) compiledXPath).hasPositions()
+                    && (((SimpleLocationPath) compiledXPath).getElementStepCount() > 0))
+                {
+                    paths.add((SimpleLocationPath) compiledXPath);
+                }
+                else
+                {
+                    onlyFirstValues[0] = false;
+                }
+            }
+        });
+        return onlyFirstValues[0] ? paths : null;
+    }
+
+    /**
+     * @return <code>true</code> if the whole element with all its descendants
+     *         is needed
+     */
+    boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * @return the paths of the fields (all annotated with {@link XPathFirst})
+     *         which only need the first match, so no input after the first
+     *         matches of all of them is needed, or <code>null</code> if any
+     *         field could need nodes up to the end of the document
+     */
+    List<SimpleLocationPath> getFirstValuePaths()
+    {
+        return firstValuePaths;
+    }
+
+    /**
+     * Adds the paths continuing with the child-element of the given name to
+     * the given {@link List}
+     *
+     * @param localName
+     *            the local-name of the child-element
+     * @param inNoNamespace
+     *            <code>true</code> if the child-element is in no namespace
+     *            (only such elements can be selected by an unprefixed name)
+     * @param paths
+     *            the {@link List} to add the found paths to
+     */
+    void addChildPaths(String localName, boolean inNoNamespace, List<ElementPaths> paths)
+    {
+        if (inNoNamespace)
+        {
+            ElementPaths named = children.get(localName);
+            if (named != null)
+            {
+                paths.add(named);
+            }
+        }
+        ElementPaths any = children.get(ANY_ELEMENT);
+        if (any != null)
+        {
+            paths.add(any);
+        }
+    }
+
+    private void addType(Class<?> type, Map<Class<?>, Function<String, ?>> defaultToTypeConverters, Set<Class<?>> typesInProgress,
+        ElementPaths root)
+    {
+        if ((type == String.class) || type.isEnum() || type.isPrimitive() || defaultToTypeConverters.containsKey(type))
+        {
+            // converted from the string-value of the whole element
+            complete = true;
+            return;
+        }
+        if (!typesInProgress.add(type))
+        {
+            // recursive types could nest endlessly
+            complete = true;
+            return;
+        }
+        doWithFields(type, field ->
+        {
+            XPathFirst xPathFirst = field.getAnnotation(XPathFirst.class);
+            if (xPathFirst != null)
+            {
+                addPath(xPathFirst.value(), xPathFirst.isSubType() ? field.getType() : String.class, defaultToTypeConverters, typesInProgress,
+                    root);
+            }
+            XPathList xPathList = field.getAnnotation(XPathList.class);
+            if (xPathList != null)
+            {
+                addPath(xPathList.value(), xPathList.subTypeClass(), defaultToTypeConverters, typesInProgress, root);
+            }
+            XPathMap xPathMap = field.getAnnotation(XPathMap.class);
+            if (xPathMap != null)
+            {
+                ElementPaths entry = addPath(xPathMap.entryXPath(), null, defaultToTypeConverters, typesInProgress, root);
+                if (entry != null)
+                {
+                    entry.addPath(xPathMap.keySubXPath(), xPathMap.keySubTypeClass(), defaultToTypeConverters, typesInProgress, root);
+                    entry.addPath(xPathMap.valueSubXPath(), xPathMap.valueSubTypeClass(), defaultToTypeConverters, typesInProgress, root);
+                }
+            }
+        });
+        typesInProgress.remove(type);
+    }
+
+    /**
+     * Adds the element-steps of the given xPath-query
+     *
+     * @param valueType
+     *            the type the selected elements are unmarshalled to, or
+     *            <code>null</code> if only the elements themselves are needed
+     * @return the paths of the last element-step, or <code>null</code> if the
+     *         xPath-query can not be followed
+     */
+    private ElementPaths addPath(String xPath, Class<?> valueType, Map<Class<?>, Function<String, ?>> defaultToTypeConverters,
+        Set<Class<?>> typesInProgress, ElementPaths root)
+    {
+        if (complete || root.complete)
+        {
+            return null;
+        }
+        CompiledXPath compiledXPath = CompiledXPath.compile(xPath, null);
+        if (!(compiledXPath instanceof SimpleLocationPath))
+        {
+            root.complete = true;
+            return null;
+        }
+        SimpleLocationPath path = (SimpleLocationPath) compiledXPath;
+        ElementPaths current = this;
+        for (int step = 0; step < path.getElementStepCount(); step++)
+        {
+            current = current.children.computeIfAbsent(path.getElementName(step), name -> new ElementPaths());
+        }
+        if (path.selectsText())
+        {
+            current.complete = true;
+        }
+        else if (!path.selectsAttribute() && (valueType != null))
+        {
+            current.addType(valueType, defaultToTypeConverters, typesInProgress, root);
+        }
+        return current.complete ? null : current;
+    }
+
+    @Override
+    public String toString()
+    {
+        return complete ? "complete" : children.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package com.avides.xpath.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link InputStream} reading a {@link File} from memory-mapped regions of its
+ * {@link FileChannel}, so the parser reads straight from the page-cache
+ * without the copies of a buffered {@link java.io.FileInputStream}. Larger
+ * files are mapped in chunks one after the other, a chunk is released when
+ * it is garbage-collected after the next one is mapped
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class MappedFileInputStream extends InputStream
+{
+    static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long chunkSize;
+
+    private MappedByteBuffer chunk;
+    private long chunkStart;
+
+    /**
+     * @param file
+     *            the {@link File} to read
+     * @param chunkSize
+     *            the maximum number of bytes mapped at once
+     * @throws IOException
+     *             if the {@link File} can not be opened
+     */
+    MappedFileInputStream(File file, long chunkSize) throws IOException
+    {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        size = channel.size();
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        return nextChunkIfNeeded() ? chunk.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        if (!nextChunkIfNeeded())
+        {
+            return -1;
+        }
+        int read = Math.min(len, chunk.remaining());
+        chunk.get(b, off, read);
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException
+    {
+        if ((n <= 0) || !nextChunkIfNeeded())
+        {
+            return 0;
+        }
+        int skipped = (int) Math.min(n, chunk.remaining());
+        chunk.position(chunk.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException
+    {
+        return chunk != null ? chunk.remaining() : 0;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        chunk = null;
+        channel.close();
+    }
+
+    /**
+     * @return <code>false</code> if the end of the {@link File} is reached
+     */
+    private boolean nextChunkIfNeeded() throws IOException
+    {
+        if ((chunk != null) && chunk.hasRemaining())
+        {
+            return true;
+        }
+        long nextStart = chunk != null ? chunkStart + chunk.capacity() : 0;
+        if (nextStart >= size)
+        {
+            return false;
+        }
+        chunkStart = nextStart;
+        chunk = channel.map(MapMode.READ_ONLY, chunkStart, Math.min(chunkSize, size - chunkStart));
+        return true;
+    }
+}
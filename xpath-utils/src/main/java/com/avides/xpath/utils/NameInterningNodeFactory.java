@@ -0,0 +1,157 @@
+package com.avides.xpath.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import nu.xom.Attribute;
+import nu.xom.Document;
+import nu.xom.Element;
+import nu.xom.NodeFactory;
+import nu.xom.Nodes;
+
+/**
+ * {@link NodeFactory} that shares one canonical (interned) {@link String} for
+ * each name and namespace-URI of the built elements and attributes, also
+ * across the documents of the {@link nu.xom.Builder} it is used by. XOM keeps
+ * an own substring of the local-name and prefix per node of a prefixed name,
+ * with this factory all nodes of the same name refer to the same instances,
+ * which can also be compared by identity. The names are collected in a
+ * bounded table, further names are built as before. All nodes are created by
+ * the given delegate. Not thread-safe, like the {@link nu.xom.Builder} it is
+ * used by
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class NameInterningNodeFactory extends NodeFactory
+{
+    static final int DEFAULT_MAXIMUM_NAMES = 4096;
+
+    private final NodeFactory delegate;
+    private final int maximumNames;
+    private final Map<String, String> names = new HashMap<>();
+
+    /**
+     * @param delegate
+     *            creates all nodes
+     * @param maximumNames
+     *            the maximum number of names to intern
+     */
+    NameInterningNodeFactory(NodeFactory delegate, int maximumNames)
+    {
+        this.delegate = delegate;
+        this.maximumNames = maximumNames;
+    }
+
+    private String intern(String name)
+    {
+        String canonical = names.get(name);
+        if (canonical == null)
+        {
+            if (names.size() >= maximumNames)
+            {
+                return name;
+            }
+            canonical = name.intern();
+            names.put(canonical, canonical);
+        }
+        return canonical;
+    }
+
+    @Override
+    public Document startMakingDocument()
+    {
+        return delegate.startMakingDocument();
+    }
+
+    @Override
+    public void finishMakingDocument(Document document)
+    {
+        delegate.finishMakingDocument(document);
+    }
+
+    @Override
+    public Element makeRootElement(String name, String namespace)
+    {
+        return internNames(delegate.makeRootElement(intern(name), intern(namespace)));
+    }
+
+    @Override
+    public Element startMakingElement(String name, String namespace)
+    {
+        return internNames(delegate.startMakingElement(intern(name), intern(namespace)));
+    }
+
+    private Element internNames(Element element)
+    {
+        // an unprefixed name is used as local-name as it is, the parts of a prefixed name are substrings
+        if ((element != null) && !element.getNamespacePrefix().isEmpty())
+        {
+            String localName = intern(element.getLocalName());
+            if (localName != element.getLocalName())
+            {
+                element.setLocalName(localName);
+            }
+            String prefix = intern(element.getNamespacePrefix());
+            if (prefix != element.getNamespacePrefix())
+            {
+                element.setNamespacePrefix(prefix);
+            }
+        }
+        return element;
+    }
+
+    @Override
+    public Nodes finishMakingElement(Element element)
+    {
+        return delegate.finishMakingElement(element);
+    }
+
+    @Override
+    public Nodes makeAttribute(String name, String URI, String value, Attribute.Type type)
+    {
+        Nodes nodes = delegate.makeAttribute(intern(name), intern(URI), value, type);
+        for (int i = 0; i < nodes.size(); i++)
+        {
+            if ((nodes.get(i) instanceof Attribute) && !((Attribute) nodes.get(i)).getNamespacePrefix().isEmpty())
+            {
+                Attribute attribute = (Attribute) nodes.get(i);
+                String localName = intern(attribute.getLocalName());
+                if (localName != attribute.getLocalName())
+                {
+                    attribute.setLocalName(localName);
+                }
+                String prefix = intern(attribute.getNamespacePrefix());
+                if (prefix != attribute.getNamespacePrefix())
+                {
+                    attribute.setNamespace(prefix, attribute.getNamespaceURI());
+                }
+            }
+        }
+        return nodes;
+    }
+
+    @Override
+    public Nodes makeText(String data)
+    {
+        return delegate.makeText(data);
+    }
+
+    @Override
+    public Nodes makeComment(String data)
+    {
+        return delegate.makeComment(data);
+    }
+
+    @Override
+    public Nodes makeProcessingInstruction(String target, String data)
+    {
+        return delegate.makeProcessingInstruction(target, data);
+    }
+
+    @Override
+    public Nodes makeDocType(String rootElementName, String publicID, String systemID)
+    {
+        return delegate.makeDocType(rootElementName, publicID, systemID);
+    }
+}
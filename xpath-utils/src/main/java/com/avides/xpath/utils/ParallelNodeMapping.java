@@ -0,0 +1,98 @@
+package com.avides.xpath.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+import nu.xom.Node;
+
+/**
+ * Maps a {@link List} of {@link Node}s (or of entries of {@link Node}s) in
+ * parallel on a {@link ForkJoinPool}. The {@link List} is split recursively
+ * into ranges until a range is small enough to be mapped sequentially by one
+ * worker, each result is written to the index of its {@link Node}, so the
+ * document-order is kept. Called by a worker of the {@link ForkJoinPool}, the
+ * ranges are forked from the current task
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class ParallelNodeMapping
+{
+    // more ranges than workers, so a worker finishing early can steal the rest of a slow one
+    private static final int RANGES_PER_WORKER = 8;
+
+    private ParallelNodeMapping()
+    {
+        // only static methods
+    }
+
+    /**
+     * @param nodes
+     *            the {@link Node}s to map, must not be changed while mapping
+     * @param mapping
+     *            maps a single {@link Node}, must be thread-safe
+     * @param pool
+     *            the {@link ForkJoinPool} to map with
+     * @return new {@link List} of the mapped values, in the order of the
+     *         given {@link Node}s
+     */
+    static <S, T> List<T> map(List<S> nodes, Function<? super S, T> mapping, ForkJoinPool pool)
+    {
+        List<T> values = new ArrayList<>(Collections.nCopies(nodes.size(), null));
+        int rangeSize = Math.max(1, nodes.size() / (pool.getParallelism() * RANGES_PER_WORKER));
+        MappingTask<S, T> task = new MappingTask<>(nodes, mapping, values, 0, nodes.size(), rangeSize);
+        if (ForkJoinTask.getPool() == pool)
+        {
+            task.invoke();
+        }
+        else
+        {
+            pool.invoke(task);
+        }
+        return values;
+    }
+
+    private static final class MappingTask<S, T> extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<S> nodes;
+        private final transient Function<? super S, T> mapping;
+        private final transient List<T> values;
+        private final int from;
+        private final int to;
+        private final int rangeSize;
+
+        MappingTask(List<S> nodes, Function<? super S, T> mapping, List<T> values, int from, int to, int rangeSize)
+        {
+            this.nodes = nodes;
+            this.mapping = mapping;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.rangeSize = rangeSize;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((to - from) <= rangeSize)
+            {
+                for (int i = from; i < to; i++)
+                {
+                    // distinct indexes of a list with fixed size, the join publishes the values
+                    values.set(i, mapping.apply(nodes.get(i)));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new MappingTask<>(nodes, mapping, values, from, middle, rangeSize),
+                new MappingTask<>(nodes, mapping, values, middle, to, rangeSize));
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.avides.xpath.utils;
+
+import nu.xom.Builder;
+
+/**
+ * How an {@link XPathUnmarshaller} reuses its XOM-{@link Builder}s (and so the
+ * underlying SAX-parsers) between documents. Creating a {@link Builder} looks
+ * up and configures a new SAX-parser, which costs more than parsing a small
+ * document. A {@link Builder} is never used by two threads at the same time
+ * and is dropped after a failed parsing
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ *
+ * @see XPathUnmarshaller.Builder#parserPooling(ParserPooling)
+ */
+public enum ParserPooling
+{
+    /**
+     * a new {@link Builder} for each document
+     */
+    NONE,
+
+    /**
+     * one {@link Builder} per thread, best for a fixed number of long-living
+     * threads (default). Virtual threads (Java 21) share a pool like
+     * {@link #BOUNDED} instead
+     */
+    THREAD_LOCAL,
+
+    /**
+     * a shared pool of idle {@link Builder}s of limited size (see
+     * {@link XPathUnmarshaller.Builder#maximumPooledParsers(int)}), best for
+     * many short-living threads
+     */
+    BOUNDED
+}
@@ -0,0 +1,175 @@
+package com.avides.xpath.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import nu.xom.Attribute;
+import nu.xom.Document;
+import nu.xom.Element;
+import nu.xom.NodeFactory;
+import nu.xom.Nodes;
+
+/**
+ * {@link NodeFactory} that drops all subtrees during parsing which can not be
+ * selected by the annotated fields of a class (see {@link ElementPaths}), so
+ * only the needed part of a document is held in memory. Elements on a path keep
+ * their attributes, their text only if they are needed completely. All nodes
+ * that are kept are created by the given delegate. Not thread-safe, like the
+ * {@link nu.xom.Builder} it is used by
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class PruningNodeFactory extends NodeFactory
+{
+    private static final Nodes NO_NODES = new Nodes();
+
+    // marks open elements that are kept completely
+    private static final List<ElementPaths> COMPLETE = Collections.emptyList();
+
+    private final NodeFactory delegate;
+    private ElementPaths paths;
+
+    // the paths of each open element that is kept, the last one is the current element
+    private final List<List<ElementPaths>> openElements = new ArrayList<>();
+    private boolean pruning;
+
+    /**
+     * @param delegate
+     *            creates the nodes that are kept
+     * @param paths
+     *            the paths to keep, <code>null</code> to keep everything
+     */
+    PruningNodeFactory(NodeFactory delegate, ElementPaths paths)
+    {
+        this.delegate = delegate;
+        this.paths = paths;
+    }
+
+    /**
+     * Sets the paths to keep for the next documents
+     *
+     * @param paths
+     *            the paths to keep, <code>null</code> to keep everything
+     */
+    void setPaths(ElementPaths paths)
+    {
+        this.paths = paths;
+    }
+
+    @Override
+    public Document startMakingDocument()
+    {
+        openElements.clear();
+        pruning = false;
+        return delegate.startMakingDocument();
+    }
+
+    @Override
+    public void finishMakingDocument(Document document)
+    {
+        delegate.finishMakingDocument(document);
+    }
+
+    @Override
+    public Element makeRootElement(String name, String namespace)
+    {
+        Element root = delegate.makeRootElement(name, namespace);
+        openElements.add(((paths == null) || paths.isComplete()) ? COMPLETE : Collections.singletonList(paths));
+        return root;
+    }
+
+    @Override
+    public Element startMakingElement(String name, String namespace)
+    {
+        if (pruning)
+        {
+            // the content of a pruned element is dropped anyway
+            return null;
+        }
+        List<ElementPaths> parentPaths = openElements.get(openElements.size() - 1);
+        if (parentPaths == COMPLETE)
+        {
+            return start(delegate.startMakingElement(name, namespace), COMPLETE);
+        }
+        List<ElementPaths> childPaths = new ArrayList<>(2);
+        String localName = name.substring(name.indexOf(':') + 1);
+        for (ElementPaths parentPath : parentPaths)
+        {
+            parentPath.addChildPaths(localName, namespace.isEmpty(), childPaths);
+        }
+        if (childPaths.isEmpty())
+        {
+            // an own element, so finishMakingElement is called for it and the pruning can end there
+            pruning = true;
+            return new Element(name, namespace);
+        }
+        for (ElementPaths childPath : childPaths)
+        {
+            if (childPath.isComplete())
+            {
+                return start(delegate.startMakingElement(name, namespace), COMPLETE);
+            }
+        }
+        return start(delegate.startMakingElement(name, namespace), childPaths);
+    }
+
+    private Element start(Element element, List<ElementPaths> elementPaths)
+    {
+        // if the delegate drops the element, its content belongs to the parent
+        if (element != null)
+        {
+            openElements.add(elementPaths);
+        }
+        return element;
+    }
+
+    @Override
+    public Nodes finishMakingElement(Element element)
+    {
+        if (pruning)
+        {
+            pruning = false;
+            return NO_NODES;
+        }
+        openElements.remove(openElements.size() - 1);
+        return delegate.finishMakingElement(element);
+    }
+
+    @Override
+    public Nodes makeAttribute(String name, String URI, String value, Attribute.Type type)
+    {
+        return pruning ? NO_NODES : delegate.makeAttribute(name, URI, value, type);
+    }
+
+    @Override
+    public Nodes makeText(String data)
+    {
+        return isContentKept() ? delegate.makeText(data) : NO_NODES;
+    }
+
+    @Override
+    public Nodes makeComment(String data)
+    {
+        return isContentKept() ? delegate.makeComment(data) : NO_NODES;
+    }
+
+    @Override
+    public Nodes makeProcessingInstruction(String target, String data)
+    {
+        return isContentKept() ? delegate.makeProcessingInstruction(target, data) : NO_NODES;
+    }
+
+    @Override
+    public Nodes makeDocType(String rootElementName, String publicID, String systemID)
+    {
+        return delegate.makeDocType(rootElementName, publicID, systemID);
+    }
+
+    private boolean isContentKept()
+    {
+        // outside of the root-element (prolog and epilog) everything is kept
+        return !pruning && (openElements.isEmpty() || (openElements.get(openElements.size() - 1) == COMPLETE));
+    }
+}
@@ -0,0 +1,297 @@
+package com.avides.xpath.utils;
+
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import nu.xom.Attribute;
+import nu.xom.Comment;
+import nu.xom.Document;
+import nu.xom.Element;
+import nu.xom.ParsingException;
+import nu.xom.ProcessingInstruction;
+import nu.xom.Text;
+
+/**
+ * Lazily reads the records matching a record-path from an xml-stream with
+ * StAX. Only the subtree of the current record is built as XOM-{@link Element}
+ * (as root-element of its own {@link Document}), everything outside the
+ * records is skipped, so the memory needed does not depend on the size of the
+ * xml.
+ * <p>
+ * The record-path is a list of element-names separated by <code>/</code>.
+ * Starting with a single <code>/</code> it is matched from the root-element,
+ * otherwise (also with a leading <code>//</code>) it is matched at any depth.
+ * A name without prefix matches the local-name, <code>*</code> matches any
+ * element. Records inside a record are not returned separately
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ *
+ * @param <T>
+ *            the type the records are unmarshalled to
+ */
+final class RecordIterator<T> implements Iterator<T>, AutoCloseable
+{
+    // configured once, creating readers from it is thread-safe
+    private static final XMLInputFactory inputFactory = newInputFactory();
+
+    private final XMLStreamReader reader;
+    private final String[] steps;
+    private final boolean absolute;
+    private final Function<Element, T> unmarshaller;
+
+    // qualified names and in-scope namespaces of the open elements outside of records
+    private final List<String> path = new ArrayList<>();
+    private final Deque<Map<String, String>> namespaces = new ArrayDeque<>();
+
+    private T next;
+    private boolean nextRead;
+    private boolean finished;
+
+    RecordIterator(InputStream inputStream, String recordPath, Function<Element, T> unmarshaller) throws ParsingException
+    {
+        String normalizedPath = recordPath.startsWith("//") ? recordPath.substring(2) : recordPath;
+        absolute = !recordPath.startsWith("//") && recordPath.startsWith("/");
+        steps = (absolute ? normalizedPath.substring(1) : normalizedPath).split("/");
+        if (normalizedPath.isEmpty() || (absolute && (normalizedPath.length() == 1)))
+        {
+            throw new IllegalArgumentException("recordPath must contain at least one element-name, but was " + recordPath);
+        }
+        this.unmarshaller = unmarshaller;
+        try
+        {
+            reader = inputFactory.createXMLStreamReader(inputStream);
+        }
+        catch (XMLStreamException e)
+        {
+            throw new ParsingException("the xml can not be parsed", e);
+        }
+        namespaces.push(Collections.emptyMap());
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        if (!nextRead && !finished)
+        {
+            Element record = nextRecord();
+            if (record != null)
+            {
+                next = unmarshaller.apply(record);
+                nextRead = true;
+            }
+        }
+        return nextRead;
+    }
+
+    @Override
+    public T next()
+    {
+        if (!hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+        T record = next;
+        next = null;
+        nextRead = false;
+        return record;
+    }
+
+    @Override
+    public void close()
+    {
+        finished = true;
+        try
+        {
+            reader.close();
+        }
+        catch (XMLStreamException e)
+        {
+            // the underlying stream is not closed by the reader and is owned by the caller
+        }
+    }
+
+    private Element nextRecord()
+    {
+        try
+        {
+            while (reader.hasNext())
+            {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT)
+                {
+                    path.add(qualifiedName());
+                    if (matches())
+                    {
+                        Element record = readRecord();
+                        path.remove(path.size() - 1);
+                        return record;
+                    }
+                    namespaces.push(withDeclaredNamespaces(namespaces.peek()));
+                }
+                else if (event == XMLStreamConstants.END_ELEMENT)
+                {
+                    path.remove(path.size() - 1);
+                    namespaces.pop();
+                }
+            }
+        }
+        catch (XMLStreamException e)
+        {
+            close();
+            throw new RuntimeException("the xml can not be parsed", e);
+        }
+        close();
+        return null;
+    }
+
+    private boolean matches()
+    {
+        int offset = path.size() - steps.length;
+        if ((offset < 0) || (absolute && (offset != 0)))
+        {
+            return false;
+        }
+        for (int i = 0; i < steps.length; i++)
+        {
+            if (!matches(steps[i], path.get(offset + i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(String step, String qualifiedName)
+    {
+        if (step.equals("*") || step.equals(qualifiedName))
+        {
+            return true;
+        }
+        return (step.indexOf(':') < 0) && qualifiedName.endsWith(step) && (qualifiedName.length() > step.length())
+            && (qualifiedName.charAt(qualifiedName.length() - step.length() - 1) == ':');
+    }
+
+    /**
+     * Builds the subtree of the current start-element up to its end-element
+     */
+    private Element readRecord() throws XMLStreamException
+    {
+        Element record = newElement();
+        for (Entry<String, String> namespace : namespaces.peek().entrySet())
+        {
+            // declarations of the ancestors, e.g. used by QName-values in the record
+            if (record.getNamespaceURI(namespace.getKey()) == null)
+            {
+                declareNamespace(record, namespace.getKey(), namespace.getValue());
+            }
+        }
+        new Document(record);
+        Element current = record;
+        while (true)
+        {
+            switch (reader.next())
+            {
+                case XMLStreamConstants.START_ELEMENT:
+                    Element child = newElement();
+                    current.appendChild(child);
+                    current = child;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (current == record)
+                    {
+                        return record;
+                    }
+                    current = (Element) current.getParent();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    current.appendChild(new Text(reader.getText()));
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    current.appendChild(new Comment(reader.getText()));
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    current.appendChild(new ProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private Element newElement()
+    {
+        Element element = new Element(qualifiedName(), nullToEmpty(reader.getNamespaceURI()));
+        for (int i = 0; i < reader.getNamespaceCount(); i++)
+        {
+            declareNamespace(element, nullToEmpty(reader.getNamespacePrefix(i)), nullToEmpty(reader.getNamespaceURI(i)));
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++)
+        {
+            String prefix = reader.getAttributePrefix(i);
+            String localName = reader.getAttributeLocalName(i);
+            String name = (prefix == null) || prefix.isEmpty() ? localName : prefix + ":" + localName;
+            element.addAttribute(new Attribute(name, nullToEmpty(reader.getAttributeNamespace(i)), reader.getAttributeValue(i)));
+        }
+        return element;
+    }
+
+    private static void declareNamespace(Element element, String prefix, String uri)
+    {
+        // the namespace of the element itself is already declared by its name
+        if (!uri.equals(element.getNamespaceURI(prefix)))
+        {
+            element.addNamespaceDeclaration(prefix, uri);
+        }
+    }
+
+    private Map<String, String> withDeclaredNamespaces(Map<String, String> inScope)
+    {
+        if (reader.getNamespaceCount() == 0)
+        {
+            return inScope;
+        }
+        Map<String, String> declared = new HashMap<>(inScope);
+        for (int i = 0; i < reader.getNamespaceCount(); i++)
+        {
+            declared.put(nullToEmpty(reader.getNamespacePrefix(i)), nullToEmpty(reader.getNamespaceURI(i)));
+        }
+        return declared;
+    }
+
+    private String qualifiedName()
+    {
+        String prefix = reader.getPrefix();
+        return (prefix == null) || prefix.isEmpty() ? reader.getLocalName() : prefix + ":" + reader.getLocalName();
+    }
+
+    private static String nullToEmpty(String value)
+    {
+        return value != null ? value : "";
+    }
+
+    private static XMLInputFactory newInputFactory()
+    {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+}
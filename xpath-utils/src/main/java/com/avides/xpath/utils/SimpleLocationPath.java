@@ -0,0 +1,499 @@
+package com.avides.xpath.utils;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+import nu.xom.Element;
+import nu.xom.Node;
+import nu.xom.Nodes;
+import nu.xom.Text;
+
+/**
+ * Native evaluation of simple relative location-paths, walking the children and
+ * attributes of XOM {@link Element}s directly instead of using Jaxen. Supported
+ * are paths like <code>singleString</code>, <code>map/entry</code>,
+ * <code>string[2]</code>, <code>*&#47;value</code>, <code>@id</code> or
+ * <code>item[1]/text()</code>: child-steps with an unprefixed name or
+ * <code>*</code> and an optional positional predicate, where the last step may
+ * also be an unprefixed attribute or <code>text()</code>. Everything else
+ * (and the evaluation on other {@link Node}s than {@link Element}s) is
+ * delegated to the Jaxen-compiled fallback, so the results are always the same
+ * as of {@link Node#query(String)}
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class SimpleLocationPath extends CompiledXPath
+{
+    private static final int CHILD_ELEMENT = 0;
+    private static final int ANY_CHILD_ELEMENT = 1;
+    private static final int ATTRIBUTE = 2;
+    private static final int TEXT = 3;
+
+    private static final int MAX_POSITION_DIGITS = 9;
+
+    private final CompiledXPath fallback;
+    private final int[] kinds;
+    private final String[] names;
+    private final int[] positions;
+    private final int lastStep;
+
+    private SimpleLocationPath(CompiledXPath fallback, int[] kinds, String[] names, int[] positions)
+    {
+        super(fallback.xPath, fallback.context);
+        this.fallback = fallback;
+        this.kinds = kinds;
+        this.names = names;
+        this.positions = positions;
+        lastStep = kinds.length - 1;
+    }
+
+    /**
+     * Parses the xPath-query of the given fallback
+     *
+     * @param fallback
+     *            the compiled xPath-query to use if the native evaluation is not
+     *            possible
+     * @return the {@link SimpleLocationPath}, or <code>null</code> if the
+     *         xPath-query is not a simple location-path
+     */
+    static SimpleLocationPath parse(CompiledXPath fallback)
+    {
+        String[] steps = fallback.xPath.split("/", -1);
+        int[] kinds = new int[steps.length];
+        String[] names = new String[steps.length];
+        int[] positions = new int[steps.length];
+        for (int i = 0; i < steps.length; i++)
+        {
+            String step = steps[i];
+            boolean isLast = i == (steps.length - 1);
+            if (isLast && "text()".equals(step))
+            {
+                kinds[i] = TEXT;
+            }
+            else if (isLast && step.startsWith("@") && isNCName(step, 1, step.length()))
+            {
+                kinds[i] = ATTRIBUTE;
+                names[i] = step.substring(1).intern();
+            }
+            else
+            {
+                int nameEnd = step.indexOf('[');
+                if (nameEnd < 0)
+                {
+                    nameEnd = step.length();
+                }
+                else
+                {
+                    positions[i] = parsePosition(step, nameEnd);
+                    if (positions[i] < 1)
+                    {
+                        return null;
+                    }
+                }
+                if ((nameEnd == 1) && (step.charAt(0) == '*'))
+                {
+                    kinds[i] = ANY_CHILD_ELEMENT;
+                }
+                else if (isNCName(step, 0, nameEnd))
+                {
+                    kinds[i] = CHILD_ELEMENT;
+                    // interned like the names of the parser, so equal names are mostly the same instance
+                    names[i] = step.substring(0, nameEnd).intern();
+                }
+                else
+                {
+                    return null;
+                }
+            }
+        }
+        return new SimpleLocationPath(fallback, kinds, names, positions);
+    }
+
+    private static int parsePosition(String step, int start)
+    {
+        int end = step.length() - 1;
+        if ((step.charAt(end) != ']') || (end - start - 1 < 1) || (end - start - 1 > MAX_POSITION_DIGITS))
+        {
+            return -1;
+        }
+        int position = 0;
+        for (int i = start + 1; i < end; i++)
+        {
+            char c = step.charAt(i);
+            if ((c < '0') || (c > '9'))
+            {
+                return -1;
+            }
+            position = (position * 10) + (c - '0');
+        }
+        return position;
+    }
+
+    static boolean isNCName(String value, int start, int end)
+    {
+        if (start >= end)
+        {
+            return false;
+        }
+        for (int i = start; i < end; i++)
+        {
+            char c = value.charAt(i);
+            boolean valid = ((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || (c == '_');
+            if (!valid && (i > start))
+            {
+                valid = ((c >= '0') && (c <= '9')) || (c == '-') || (c == '.');
+            }
+            if (!valid)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of element-steps of this path, not counting a last
+     *         attribute- or <code>text()</code>-step
+     */
+    int getElementStepCount()
+    {
+        return kinds[lastStep] < ATTRIBUTE ? kinds.length : lastStep;
+    }
+
+    /**
+     * @param step
+     *            the index of the element-step
+     * @return the name of the element of the given step, or <code>*</code> for
+     *         any element
+     */
+    String getElementName(int step)
+    {
+        return kinds[step] == ANY_CHILD_ELEMENT ? "*" : names[step];
+    }
+
+    /**
+     * @return <code>true</code> if any element-step has a positional
+     *         predicate
+     */
+    boolean hasPositions()
+    {
+        for (int position : positions)
+        {
+            if (position != 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the position of the given element-step, <code>0</code> if it
+     *         has no positional predicate
+     */
+    int getPosition(int step)
+    {
+        return positions[step];
+    }
+
+    /**
+     * @param node
+     *            the {@link Node} to test
+     * @param name
+     *            the name of an element-step (see
+     *            {@link #getElementName(int)})
+     * @return <code>true</code> if the given {@link Node} is an
+     *         {@link Element} matched by the element-step
+     */
+    static boolean matchesElement(Node node, String name)
+    {
+        return matches(node, "*".equals(name) ? ANY_CHILD_ELEMENT : CHILD_ELEMENT, name);
+    }
+
+    /**
+     * @return <code>true</code> if this path selects the text-nodes of the
+     *         last element-step
+     */
+    boolean selectsText()
+    {
+        return kinds[lastStep] == TEXT;
+    }
+
+    /**
+     * @return <code>true</code> if this path selects an attribute of the last
+     *         element-step
+     */
+    boolean selectsAttribute()
+    {
+        return kinds[lastStep] == ATTRIBUTE;
+    }
+
+    /**
+     * @return the name of the selected attribute, or <code>null</code> if this
+     *         path does not select an attribute
+     */
+    String getAttributeName()
+    {
+        return selectsAttribute() ? names[lastStep] : null;
+    }
+
+    @Override
+    boolean isScanning()
+    {
+        return false;
+    }
+
+    @Override
+    Nodes select(Node root)
+    {
+        if (!(root instanceof Element))
+        {
+            return fallback.select(root);
+        }
+        try
+        {
+            Nodes nodes = new Nodes();
+            collect((Element) root, 0, nodes);
+            return nodes;
+        }
+        catch (IrregularTextException e)
+        {
+            return fallback.select(root);
+        }
+    }
+
+    @Override
+    Node selectFirst(Node root)
+    {
+        if (!(root instanceof Element))
+        {
+            return fallback.selectFirst(root);
+        }
+        try
+        {
+            return first((Element) root, 0);
+        }
+        catch (IrregularTextException e)
+        {
+            return fallback.selectFirst(root);
+        }
+    }
+
+    @Override
+    Iterator<Node> iterate(Node root)
+    {
+        if (!(root instanceof Element) || (kinds[lastStep] == TEXT))
+        {
+            // adjacent text-nodes are merged by Jaxen, so text() is selected completely
+            return super.iterate(root);
+        }
+        if (kinds[0] == ATTRIBUTE)
+        {
+            Node attribute = ((Element) root).getAttribute(names[0]);
+            return attribute != null ? Collections.singletonList(attribute).iterator() : Collections.emptyIterator();
+        }
+        return new StepIterator((Element) root);
+    }
+
+    private void collect(Element parent, int step, Nodes nodes)
+    {
+        int kind = kinds[step];
+        if (kind == ATTRIBUTE)
+        {
+            Node attribute = parent.getAttribute(names[step]);
+            if (attribute != null)
+            {
+                nodes.append(attribute);
+            }
+            return;
+        }
+        if (kind == TEXT)
+        {
+            collectText(parent, nodes);
+            return;
+        }
+        int position = positions[step];
+        int matchCount = 0;
+        for (int i = 0, count = parent.getChildCount(); i < count; i++)
+        {
+            Node child = parent.getChild(i);
+            if (matches(child, kind, names[step]) && ((position == 0) || (++matchCount == position)))
+            {
+                if (step == lastStep)
+                {
+                    nodes.append(child);
+                }
+                else
+                {
+                    collect((Element) child, step + 1, nodes);
+                }
+                if (position != 0)
+                {
+                    return;
+                }
+            }
+        }
+    }
+
+    private Node first(Element parent, int step)
+    {
+        int kind = kinds[step];
+        if (kind == ATTRIBUTE)
+        {
+            return parent.getAttribute(names[step]);
+        }
+        if (kind == TEXT)
+        {
+            return firstText(parent);
+        }
+        int position = positions[step];
+        int matchCount = 0;
+        for (int i = 0, count = parent.getChildCount(); i < count; i++)
+        {
+            Node child = parent.getChild(i);
+            if (matches(child, kind, names[step]) && ((position == 0) || (++matchCount == position)))
+            {
+                Node found = step == lastStep ? child : first((Element) child, step + 1);
+                if ((found != null) || (position != 0))
+                {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(Node child, int kind, String name)
+    {
+        if (!(child instanceof Element))
+        {
+            return false;
+        }
+        if (kind == ANY_CHILD_ELEMENT)
+        {
+            return true;
+        }
+        Element element = (Element) child;
+        return name.equals(element.getLocalName()) && element.getNamespaceURI().isEmpty();
+    }
+
+    private static void collectText(Element parent, Nodes nodes)
+    {
+        boolean previousIsText = false;
+        for (int i = 0, count = parent.getChildCount(); i < count; i++)
+        {
+            Node child = parent.getChild(i);
+            boolean isText = child instanceof Text;
+            if (isText)
+            {
+                checkRegularText((Text) child, previousIsText);
+                nodes.append(child);
+            }
+            previousIsText = isText;
+        }
+    }
+
+    private static Node firstText(Element parent)
+    {
+        boolean previousIsText = false;
+        Node found = null;
+        for (int i = 0, count = parent.getChildCount(); i < count; i++)
+        {
+            Node child = parent.getChild(i);
+            boolean isText = child instanceof Text;
+            if (isText)
+            {
+                // the following node has to be checked too, because XPath treats adjacent text-nodes as one
+                checkRegularText((Text) child, previousIsText);
+                if (found == null)
+                {
+                    found = child;
+                }
+            }
+            else if (found != null)
+            {
+                return found;
+            }
+            previousIsText = isText;
+        }
+        return found;
+    }
+
+    private static void checkRegularText(Text text, boolean previousIsText)
+    {
+        // XPath-semantics of empty and adjacent text-nodes (only created programmatically) are left to Jaxen
+        if (previousIsText || text.getValue().isEmpty())
+        {
+            throw IrregularTextException.INSTANCE;
+        }
+    }
+
+    /**
+     * Walks the steps like {@link SimpleLocationPath#collect(Element, int, Nodes)},
+     * but keeps the position in each step, so the next {@link Node} is only
+     * searched when it is needed
+     */
+    private final class StepIterator extends LazyNodeIterator
+    {
+        private final Element[] parents = new Element[kinds.length];
+        private final int[] indexes = new int[kinds.length];
+        private final int[] matchCounts = new int[kinds.length];
+        private int step;
+
+        StepIterator(Element root)
+        {
+            parents[0] = root;
+        }
+
+        @Override
+        protected Node advance()
+        {
+            while (step >= 0)
+            {
+                Element parent = parents[step];
+                int position = positions[step];
+                if ((indexes[step] >= parent.getChildCount()) || ((position != 0) && (matchCounts[step] >= position)))
+                {
+                    step--;
+                    continue;
+                }
+                Node child = parent.getChild(indexes[step]++);
+                if (!matches(child, kinds[step], names[step]) || ((position != 0) && (++matchCounts[step] != position)))
+                {
+                    continue;
+                }
+                if (step == lastStep)
+                {
+                    return child;
+                }
+                if ((step + 1 == lastStep) && (kinds[lastStep] == ATTRIBUTE))
+                {
+                    Node attribute = ((Element) child).getAttribute(names[lastStep]);
+                    if (attribute != null)
+                    {
+                        return attribute;
+                    }
+                    continue;
+                }
+                step++;
+                parents[step] = (Element) child;
+                indexes[step] = 0;
+                matchCounts[step] = 0;
+            }
+            return null;
+        }
+    }
+
+    private static final class IrregularTextException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        static final IrregularTextException INSTANCE = new IrregularTextException();
+
+        private IrregularTextException()
+        {
+            super(null, null, false, false);
+        }
+    }
+}
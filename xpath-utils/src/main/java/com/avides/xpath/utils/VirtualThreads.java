@@ -0,0 +1,95 @@
+package com.avides.xpath.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Access to virtual threads, which are only available from Java 21 on. This is
+ * the version for older Java-versions, which runs the tasks on a pool of
+ * platform threads, at most one per processor. The multi-release JAR contains a version for Java 21 (in
+ * <code>src/main/java21</code>) with the same methods, which runs each task
+ * on its own virtual thread
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class VirtualThreads
+{
+    private VirtualThreads()
+    {
+        // only static methods
+    }
+
+    /**
+     * @return <code>true</code> if the current thread is a virtual thread,
+     *         always <code>false</code> before Java 21
+     */
+    static boolean isCurrentThreadVirtual()
+    {
+        return false;
+    }
+
+    /**
+     * Executes the given tasks concurrently, at most the given number at the
+     * same time, but not more than the number of available processors, as each
+     * task occupies a platform thread. If a task fails, the remaining tasks are
+     * cancelled
+     *
+     * @param tasks
+     *            the tasks to execute
+     * @param maximumConcurrency
+     *            the maximum number of tasks executed at the same time
+     * @return the results of the tasks, in the order of the tasks
+     * @throws ExecutionException
+     *             with the exception of the first failed task
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     */
+    static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int maximumConcurrency) throws ExecutionException, InterruptedException
+    {
+        if (tasks.isEmpty())
+        {
+            return new ArrayList<>();
+        }
+        int threads = Math.min(Math.min(tasks.size(), maximumConcurrency), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<T>> futures = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks)
+            {
+                futures.add(executor.submit(task));
+            }
+            return getAll(futures);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T> List<T> getAll(List<Future<T>> futures) throws ExecutionException, InterruptedException
+    {
+        List<T> results = new ArrayList<>(futures.size());
+        try
+        {
+            for (Future<T> future : futures)
+            {
+                results.add(future.get());
+            }
+        }
+        finally
+        {
+            if (results.size() < futures.size())
+            {
+                futures.forEach(future -> future.cancel(true));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,185 @@
+package com.avides.xpath.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nu.xom.Attribute;
+import nu.xom.Document;
+import nu.xom.Element;
+import nu.xom.Node;
+import nu.xom.NodeFactory;
+import nu.xom.Nodes;
+import nu.xom.Text;
+
+/**
+ * {@link NodeFactory} that drops ignorable whitespace while parsing and merges
+ * adjacent text, so pretty-printed xml is built with about half of the nodes.
+ * Whitespace-only text is ignorable in elements which have child-elements
+ * (the indentation between them), unless <code>xml:space="preserve"</code> is
+ * in scope. The text of elements without child-elements is kept as it is.
+ * Adjacent text (e.g. around a dropped comment) is merged into one
+ * {@link Text}. All nodes are created by the given delegate. Not thread-safe,
+ * like the {@link nu.xom.Builder} it is used by
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class WhitespaceStrippingNodeFactory extends NodeFactory
+{
+    private static final Nodes NO_NODES = new Nodes();
+
+    private final NodeFactory delegate;
+
+    // the open elements as built, the root-element first
+    private final List<Element> openElements = new ArrayList<>();
+
+    /**
+     * @param delegate
+     *            creates all nodes
+     */
+    WhitespaceStrippingNodeFactory(NodeFactory delegate)
+    {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Document startMakingDocument()
+    {
+        openElements.clear();
+        return delegate.startMakingDocument();
+    }
+
+    @Override
+    public void finishMakingDocument(Document document)
+    {
+        delegate.finishMakingDocument(document);
+    }
+
+    @Override
+    public Element makeRootElement(String name, String namespace)
+    {
+        return push(delegate.makeRootElement(name, namespace));
+    }
+
+    @Override
+    public Element startMakingElement(String name, String namespace)
+    {
+        return push(delegate.startMakingElement(name, namespace));
+    }
+
+    private Element push(Element element)
+    {
+        // if the delegate drops the element, its content belongs to the parent
+        if (element != null)
+        {
+            openElements.add(element);
+        }
+        return element;
+    }
+
+    @Override
+    public Nodes finishMakingElement(Element element)
+    {
+        // the whitespace before the first child-element is only known to be ignorable now
+        if ((element.getChildCount() > 1) && isWhitespace(element.getChild(0)) && hasChildElement(element) && !isSpacePreserved(element))
+        {
+            element.removeChild(0);
+        }
+        openElements.remove(openElements.size() - 1);
+        return delegate.finishMakingElement(element);
+    }
+
+    @Override
+    public Nodes makeText(String data)
+    {
+        if (openElements.isEmpty())
+        {
+            return delegate.makeText(data);
+        }
+        Element parent = openElements.get(openElements.size() - 1);
+        int childCount = parent.getChildCount();
+        Node lastChild = childCount > 0 ? parent.getChild(childCount - 1) : null;
+        if (lastChild instanceof Text)
+        {
+            Text text = (Text) lastChild;
+            text.setValue(text.getValue() + data);
+            return NO_NODES;
+        }
+        if (isWhitespace(data) && hasChildElement(parent) && !isSpacePreserved(parent))
+        {
+            return NO_NODES;
+        }
+        return delegate.makeText(data);
+    }
+
+    private static boolean isWhitespace(Node node)
+    {
+        return (node instanceof Text) && isWhitespace(node.getValue());
+    }
+
+    private static boolean hasChildElement(Element element)
+    {
+        for (int i = element.getChildCount() - 1; i >= 0; i--)
+        {
+            if (element.getChild(i) instanceof Element)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param element
+     *            an open element
+     */
+    private boolean isSpacePreserved(Element element)
+    {
+        for (int i = openElements.lastIndexOf(element); i >= 0; i--)
+        {
+            String space = openElements.get(i).getAttributeValue("space", "http://www.w3.org/XML/1998/namespace");
+            if (space != null)
+            {
+                return "preserve".equals(space);
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWhitespace(String data)
+    {
+        for (int i = 0; i < data.length(); i++)
+        {
+            char c = data.charAt(i);
+            if ((c != ' ') && (c != '\t') && (c != '\n') && (c != '\r'))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Nodes makeAttribute(String name, String URI, String value, Attribute.Type type)
+    {
+        return delegate.makeAttribute(name, URI, value, type);
+    }
+
+    @Override
+    public Nodes makeComment(String data)
+    {
+        return delegate.makeComment(data);
+    }
+
+    @Override
+    public Nodes makeProcessingInstruction(String target, String data)
+    {
+        return delegate.makeProcessingInstruction(target, data);
+    }
+
+    @Override
+    public Nodes makeDocType(String rootElementName, String publicID, String systemID)
+    {
+        return delegate.makeDocType(rootElementName, publicID, systemID);
+    }
+}
@@ -0,0 +1,174 @@
+package com.avides.xpath.utils;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import nu.xom.XPathContext;
+
+/**
+ * Bounded, thread-safe cache of compiled xPath-queries, keyed by the
+ * xPath-query and the {@link XPathContext} (compared by identity) used to
+ * resolve namespace-prefixes. If the maximum size is exceeded, the oldest
+ * compiled xPath-queries are evicted first
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ *
+ * @see XPathUtils#getExpressionCache()
+ */
+public final class XPathExpressionCache
+{
+    /**
+     * the maximum number of compiled xPath-queries if not configured otherwise
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+    private final int maximumSize;
+    private final Map<Key, CompiledXPath> expressions = new ConcurrentHashMap<>();
+    private final Queue<Key> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * Creates a new cache with the given maximum size
+     *
+     * @param maximumSize
+     *            the maximum number of compiled xPath-queries to hold, must be
+     *            positive
+     */
+    public XPathExpressionCache(int maximumSize)
+    {
+        if (maximumSize < 1)
+        {
+            throw new IllegalArgumentException("maximumSize must be positive, but was " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    CompiledXPath get(String xPath, XPathContext context)
+    {
+        Key key = new Key(xPath, context);
+        CompiledXPath compiledXPath = expressions.get(key);
+        if (compiledXPath != null)
+        {
+            hitCount.increment();
+            return compiledXPath;
+        }
+        missCount.increment();
+        compiledXPath = CompiledXPath.compile(xPath, context);
+        CompiledXPath existing = expressions.putIfAbsent(key, compiledXPath);
+        if (existing != null)
+        {
+            return existing;
+        }
+        insertionOrder.add(key);
+        evictIfNecessary();
+        return compiledXPath;
+    }
+
+    private void evictIfNecessary()
+    {
+        while (expressions.size() > maximumSize)
+        {
+            Key eldest = insertionOrder.poll();
+            if (eldest == null)
+            {
+                return;
+            }
+            if (expressions.remove(eldest) != null)
+            {
+                evictionCount.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes all compiled xPath-queries, the counters are not reset
+     */
+    public void clear()
+    {
+        expressions.clear();
+        insertionOrder.clear();
+    }
+
+    /**
+     * @return the current number of compiled xPath-queries
+     */
+    public int size()
+    {
+        return expressions.size();
+    }
+
+    /**
+     * @return the maximum number of compiled xPath-queries
+     */
+    public int getMaximumSize()
+    {
+        return maximumSize;
+    }
+
+    /**
+     * @return how often an already compiled xPath-query was found
+     */
+    public long getHitCount()
+    {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return how often an xPath-query had to be compiled
+     */
+    public long getMissCount()
+    {
+        return missCount.sum();
+    }
+
+    /**
+     * @return how often a compiled xPath-query was evicted because the maximum
+     *         size was exceeded
+     */
+    public long getEvictionCount()
+    {
+        return evictionCount.sum();
+    }
+
+    private static final class Key
+    {
+        private final String xPath;
+        private final XPathContext context;
+        private final int hashCode;
+
+        Key(String xPath, XPathContext context)
+        {
+            this.xPath = xPath;
+            this.context = context;
+            hashCode = (31 * xPath.hashCode()) + System.identityHashCode(context);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+            {
+                return true;
+            }
+            if (!(obj instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key) obj;
+            return (context == other.context) && xPath.equals(other.xPath);
+        }
+    }
+}
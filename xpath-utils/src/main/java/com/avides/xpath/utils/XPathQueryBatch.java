@@ -0,0 +1,476 @@
+package com.avides.xpath.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import nu.xom.Element;
+import nu.xom.Node;
+
+/**
+ * A set of xPath-queries whose first (or all) matches are found together in
+ * one traversal of the tree, instead of one traversal per xPath-query like
+ * {@link XPathUtils#queryFirst(Node, String)}. Simple paths (like
+ * <code>header/id</code>, <code>item[2]/price</code>, <code>*&#47;@id</code>
+ * or <code>value/text()</code>, see {@link SimpleLocationPath}) are merged into
+ * a tree of their steps, so shared steps are matched once and only the
+ * subtrees that any path can reach are visited. Relative descendant-paths
+ * (like <code>.//item</code>, see {@link DescendantPath}) are answered by the
+ * same traversal, all other xPath-queries are executed one by one. The
+ * traversal stops when the first matches of all xPath-queries are found,
+ * unless all matches of an xPath-query are wanted. Instances are
+ * immutable and thread-safe, so a batch can be created once and executed on
+ * any number of {@link Node}s
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ *
+ * @see XPathUtils#queryAll(Node, Map)
+ */
+public final class XPathQueryBatch
+{
+    private static final StepNode[] NO_STEPS =
+    {};
+
+    private static final CompiledXPath TEXT = CompiledXPath.compile("text()", null);
+
+    private final String[] names;
+    private final CompiledXPath[] xPaths;
+    private final boolean[] selectingAll;
+    private final StepNode rootStep = new StepNode("", 0);
+    private final int[] descendantQueries;
+    private final int[] separateQueries;
+    private final int traversedFirstQueries;
+    private final boolean traversedAllQueries;
+    private final int descendantFirstQueries;
+    private final boolean descendantAllQueries;
+
+    private XPathQueryBatch(String[] names, String[] xPathStrings, boolean[] selectingAll)
+    {
+        this.names = names;
+        this.selectingAll = selectingAll;
+        xPaths = new CompiledXPath[xPathStrings.length];
+        List<Integer> descendants = new ArrayList<>();
+        List<Integer> separates = new ArrayList<>();
+        int firstQueries = 0;
+        boolean allQueries = false;
+        int descendantFirst = 0;
+        boolean descendantAll = false;
+        for (int query = 0; query < xPathStrings.length; query++)
+        {
+            xPaths[query] = XPathUtils.getExpressionCache().get(xPathStrings[query], null);
+            if (xPaths[query] instanceof SimpleLocationPath)
+            {
+                addSteps((SimpleLocationPath) xPaths[query], query);
+            }
+            else if ((xPaths[query] instanceof DescendantPath) && !((DescendantPath) xPaths[query]).isAbsolute())
+            {
+                descendants.add(Integer.valueOf(query));
+                if (selectingAll[query])
+                {
+                    descendantAll = true;
+                }
+                else
+                {
+                    descendantFirst++;
+                }
+            }
+            else
+            {
+                separates.add(Integer.valueOf(query));
+                continue;
+            }
+            if (selectingAll[query])
+            {
+                allQueries = true;
+            }
+            else
+            {
+                firstQueries++;
+            }
+        }
+        descendantQueries = descendants.stream().mapToInt(Integer::intValue).toArray();
+        separateQueries = separates.stream().mapToInt(Integer::intValue).toArray();
+        traversedFirstQueries = firstQueries;
+        traversedAllQueries = allQueries;
+        descendantFirstQueries = descendantFirst;
+        descendantAllQueries = descendantAll;
+        rootStep.freeze();
+    }
+
+    /**
+     * Creates a new batch of the given xPath-queries, each selecting its first
+     * match
+     *
+     * @param xPathsByName
+     *            the xPath-queries to execute by the names of their results
+     * @return the new {@link XPathQueryBatch}
+     * @throws nu.xom.XPathException
+     *             if any xPath-query is not valid
+     */
+    public static XPathQueryBatch of(Map<String, String> xPathsByName)
+    {
+        String[] names = new String[xPathsByName.size()];
+        String[] xPaths = new String[xPathsByName.size()];
+        int query = 0;
+        for (Entry<String, String> entry : xPathsByName.entrySet())
+        {
+            names[query] = entry.getKey();
+            xPaths[query] = entry.getValue();
+            query++;
+        }
+        return new XPathQueryBatch(names, xPaths, new boolean[names.length]);
+    }
+
+    /**
+     * Creates a new batch of the given xPath-queries, named by themselves.
+     * The results of {@link #queryNodes(Node)} are in the order of the given
+     * first-match xPath-queries followed by the all-matches xPath-queries
+     *
+     * @param firstXPaths
+     *            the xPath-queries selecting their first match
+     * @param allXPaths
+     *            the xPath-queries selecting all of their matches
+     * @return the new {@link XPathQueryBatch}
+     * @throws nu.xom.XPathException
+     *             if any xPath-query is not valid
+     */
+    public static XPathQueryBatch of(List<String> firstXPaths, List<String> allXPaths)
+    {
+        String[] xPaths = new String[firstXPaths.size() + allXPaths.size()];
+        boolean[] selectingAll = new boolean[xPaths.length];
+        for (int i = 0; i < firstXPaths.size(); i++)
+        {
+            xPaths[i] = firstXPaths.get(i);
+        }
+        for (int i = 0; i < allXPaths.size(); i++)
+        {
+            xPaths[firstXPaths.size() + i] = allXPaths.get(i);
+            selectingAll[firstXPaths.size() + i] = true;
+        }
+        return new XPathQueryBatch(xPaths, xPaths, selectingAll);
+    }
+
+    /**
+     * Executes all xPath-queries of this batch on the given {@link Node} and
+     * returns the found {@link Node}s of each
+     *
+     * @param root
+     *            the {@link Node} to execute the xPath-queries from
+     * @return the found {@link Node}s of each xPath-query in the order of
+     *         creation, in document-order and at most one for the
+     *         first-match xPath-queries
+     */
+    public List<List<Node>> queryNodes(Node root)
+    {
+        Traversal traversal = execute(root);
+        List<List<Node>> nodes = new ArrayList<>(xPaths.length);
+        for (int i = 0; i < xPaths.length; i++)
+        {
+            if (selectingAll[i])
+            {
+                nodes.add(traversal.collected.get(i));
+            }
+            else
+            {
+                nodes.add(traversal.found[i] != null ? Collections.singletonList(traversal.found[i]) : Collections.emptyList());
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Executes all xPath-queries of this batch on the given {@link Node} and
+     * returns the first found {@link Node} of each
+     *
+     * @param root
+     *            the {@link Node} to execute the xPath-queries from
+     * @return the first found {@link Node} by the name of each xPath-query (in
+     *         the order of the names on creation), with a <code>null</code>
+     *         value if nothing was found
+     */
+    public Map<String, Node> queryFirstNodes(Node root)
+    {
+        Traversal traversal = execute(root);
+        Map<String, Node> nodes = new LinkedHashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++)
+        {
+            nodes.put(names[i], traversal.first(i));
+        }
+        return nodes;
+    }
+
+    /**
+     * Executes all xPath-queries of this batch on the given {@link Node} and
+     * returns the first found value of each
+     *
+     * @param root
+     *            the {@link Node} to execute the xPath-queries from
+     * @return the first found value by the name of each xPath-query (in the
+     *         order of the names on creation), with a <code>null</code> value
+     *         if nothing was found
+     */
+    public Map<String, String> queryFirst(Node root)
+    {
+        Traversal traversal = execute(root);
+        Map<String, String> values = new LinkedHashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++)
+        {
+            Node node = traversal.first(i);
+            values.put(names[i], node != null ? node.getValue() : null);
+        }
+        return values;
+    }
+
+    private Traversal execute(Node root)
+    {
+        Traversal traversal = new Traversal();
+        if (!(root instanceof Element))
+        {
+            // the native evaluation needs an element to start from, like the single xPath-queries
+            for (int i = 0; i < xPaths.length; i++)
+            {
+                traversal.selectSeparately(i, root);
+            }
+            return traversal;
+        }
+        for (int query : separateQueries)
+        {
+            traversal.selectSeparately(query, root);
+        }
+        traversal.start((Element) root);
+        return traversal;
+    }
+
+    private void addSteps(SimpleLocationPath path, int query)
+    {
+        StepNode step = rootStep;
+        for (int i = 0, count = path.getElementStepCount(); i < count; i++)
+        {
+            step = step.child(path.getElementName(i), path.getPosition(i));
+        }
+        if (path.selectsAttribute())
+        {
+            step.attributeNames.add(path.getAttributeName());
+            step.attributeQueries.add(Integer.valueOf(query));
+        }
+        else if (path.selectsText())
+        {
+            step.textQueries.add(Integer.valueOf(query));
+        }
+        else
+        {
+            step.elementQueries.add(Integer.valueOf(query));
+        }
+    }
+
+    /**
+     * One element-step shared by all simple paths starting with the same
+     * steps, with the xPath-queries that end at it
+     */
+    private static final class StepNode
+    {
+        final String name;
+        final int position;
+        final List<StepNode> childList = new ArrayList<>();
+        final List<Integer> elementQueries = new ArrayList<>();
+        final List<String> attributeNames = new ArrayList<>();
+        final List<Integer> attributeQueries = new ArrayList<>();
+        final List<Integer> textQueries = new ArrayList<>();
+        StepNode[] children = NO_STEPS;
+
+        StepNode(String name, int position)
+        {
+            this.name = name;
+            this.position = position;
+        }
+
+        StepNode child(String childName, int childPosition)
+        {
+            for (StepNode child : childList)
+            {
+                if ((child.position == childPosition) && child.name.equals(childName))
+                {
+                    return child;
+                }
+            }
+            StepNode child = new StepNode(childName, childPosition);
+            childList.add(child);
+            return child;
+        }
+
+        void freeze()
+        {
+            children = childList.toArray(NO_STEPS);
+            for (StepNode child : children)
+            {
+                child.freeze();
+            }
+        }
+    }
+
+    /**
+     * The state and results of one execution: walks the children of all
+     * {@link Element}s that any step can match (or all descendants while
+     * descendant-paths are unanswered) in document-order, so the first match
+     * of each xPath-query is the first one found and all matches are
+     * collected in document-order
+     */
+    private final class Traversal
+    {
+        final Node[] found = new Node[xPaths.length];
+        final List<List<Node>> collected = new ArrayList<>(xPaths.length);
+        private int remaining = traversedFirstQueries;
+        private int remainingDescendants = descendantFirstQueries;
+
+        Traversal()
+        {
+            for (int i = 0; i < xPaths.length; i++)
+            {
+                collected.add(selectingAll[i] ? new ArrayList<>() : null);
+            }
+        }
+
+        Node first(int query)
+        {
+            if (!selectingAll[query])
+            {
+                return found[query];
+            }
+            return collected.get(query).isEmpty() ? null : collected.get(query).get(0);
+        }
+
+        void selectSeparately(int query, Node root)
+        {
+            if (selectingAll[query])
+            {
+                xPaths[query].select(root).forEach(collected.get(query)::add);
+            }
+            else
+            {
+                found[query] = xPaths[query].selectFirst(root);
+            }
+        }
+
+        void start(Element root)
+        {
+            resolve(rootStep, root);
+            walk(root, rootStep.children);
+        }
+
+        private boolean isWalking()
+        {
+            return (remaining > 0) || traversedAllQueries;
+        }
+
+        private boolean isWalkingDescendants()
+        {
+            return (remainingDescendants > 0) || descendantAllQueries;
+        }
+
+        private void walk(Element parent, StepNode[] steps)
+        {
+            int[] matchCounts = new int[steps.length];
+            for (int i = 0, count = parent.getChildCount(); (i < count) && isWalking(); i++)
+            {
+                Node child = parent.getChild(i);
+                if (!(child instanceof Element))
+                {
+                    continue;
+                }
+                Element element = (Element) child;
+                if (isWalkingDescendants())
+                {
+                    resolveDescendants(element);
+                }
+                List<StepNode> nextSteps = null;
+                for (int j = 0; j < steps.length; j++)
+                {
+                    StepNode step = steps[j];
+                    if (!SimpleLocationPath.matchesElement(element, step.name) || ((step.position != 0) && (++matchCounts[j] != step.position)))
+                    {
+                        continue;
+                    }
+                    resolve(step, element);
+                    if (step.children.length > 0)
+                    {
+                        if (nextSteps == null)
+                        {
+                            nextSteps = new ArrayList<>();
+                        }
+                        nextSteps.addAll(Arrays.asList(step.children));
+                    }
+                }
+                if ((nextSteps != null) || isWalkingDescendants())
+                {
+                    walk(element, nextSteps != null ? nextSteps.toArray(NO_STEPS) : NO_STEPS);
+                }
+            }
+        }
+
+        private void resolve(StepNode step, Element element)
+        {
+            for (Integer query : step.elementQueries)
+            {
+                answer(query.intValue(), element);
+            }
+            for (int i = 0; i < step.attributeQueries.size(); i++)
+            {
+                answer(step.attributeQueries.get(i).intValue(), element.getAttribute(step.attributeNames.get(i)));
+            }
+            for (Integer query : step.textQueries)
+            {
+                // relative to the matched element, so the irregular text-nodes are still handled like by the single xPath-query
+                int textQuery = query.intValue();
+                if (selectingAll[textQuery])
+                {
+                    TEXT.select(element).forEach(collected.get(textQuery)::add);
+                }
+                else if (found[textQuery] == null)
+                {
+                    answer(textQuery, TEXT.selectFirst(element));
+                }
+            }
+        }
+
+        private void resolveDescendants(Element element)
+        {
+            for (int query : descendantQueries)
+            {
+                if ((selectingAll[query] || (found[query] == null)) && answer(query, ((DescendantPath) xPaths[query]).match(element))
+                    && !selectingAll[query])
+                {
+                    remainingDescendants--;
+                }
+            }
+        }
+
+        /**
+         * @return <code>true</code> if the given {@link Node} is a wanted
+         *         match of the given xPath-query
+         */
+        private boolean answer(int query, Node node)
+        {
+            if (node == null)
+            {
+                return false;
+            }
+            if (selectingAll[query])
+            {
+                collected.get(query).add(node);
+                return true;
+            }
+            if (found[query] != null)
+            {
+                return false;
+            }
+            found[query] = node;
+            remaining--;
+            return true;
+        }
+    }
+}
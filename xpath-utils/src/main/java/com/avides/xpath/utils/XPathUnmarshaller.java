@@ -0,0 +1,1768 @@
+package com.avides.xpath.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.avides.xpath.utils.annotations.XPathFirst;
+import com.avides.xpath.utils.annotations.XPathList;
+import com.avides.xpath.utils.annotations.XPathMap;
+import com.avides.xpath.utils.converters.ToBooleanConverter;
+import com.avides.xpath.utils.converters.ToCharacterConverter;
+import com.avides.xpath.utils.converters.ToDoubleConverter;
+import com.avides.xpath.utils.converters.ToFloatConverter;
+import com.avides.xpath.utils.converters.ToIntegerConverter;
+import com.avides.xpath.utils.converters.ToLocalDateConverter;
+import com.avides.xpath.utils.converters.ToLocalDateTimeConverter;
+import com.avides.xpath.utils.converters.ToLocalTimeConverter;
+import com.avides.xpath.utils.converters.ToLongConverter;
+import com.avides.xpath.utils.converters.ToShortConverter;
+import com.avides.xpath.utils.converters.ToZonedDateTimeConverter;
+import com.avides.xpath.utils.processors.BindingPlan;
+import com.avides.xpath.utils.utils.SubtreeSize;
+
+import nu.xom.Element;
+import nu.xom.Node;
+import nu.xom.NodeFactory;
+import nu.xom.ParsingException;
+
+/**
+ * Class for unmarshalling xml to new instances of classes which have fields
+ * that are annotated with {@link XPathFirst}, {@link XPathList} or
+ * {@link XPathMap}. Such classes must have a public no-args-constructor
+ * <p>
+ * The static methods of {@link XPathUtils} and of this class use the default
+ * instance (see {@link #getInstance()}). Independent instances with their own
+ * {@link Function Converter}s, parser-settings and cached
+ * {@link BindingPlan}s are created by {@link #builder()}. Such instances can
+ * not be changed after creation and can be shared between threads
+ *
+ * @author Martin Schumacher
+ * @since 1.0.0.RELEASE
+ *
+ * @see XPathUtils
+ * @see XPathUtils#fromXml(String, Class)
+ * @see XPathUtils#fromInputStream(InputStream, Class)
+ * @see XPathUtils#fromReader(Reader, Class)
+ * @see XPathUtils#fromFile(File, Class)
+ * @see XPathUtils#fromRoot(Element, Class)
+ */
+public class XPathUnmarshaller
+{
+    private static final String GENERATED_UNMARSHALLERS_PROPERTY = "xpath-utils.generatedUnmarshallers";
+    private static final String INTERN_NAMES_PROPERTY = "xpath-utils.internNames";
+
+    /**
+     * the maximum number of files processed at the same time by
+     * {@link #unmarshalAll(Collection, Class)}
+     */
+    public static final int DEFAULT_MAXIMUM_BATCH_CONCURRENCY = 256;
+
+    /**
+     * the minimum number of values from which a parallel list is converted and
+     * unmarshalled in parallel, if not configured otherwise
+     */
+    public static final int DEFAULT_PARALLEL_LIST_THRESHOLD = 1024;
+
+    /**
+     * the minimum number of nodes of a subtree from which its sub-objects are
+     * unmarshalled as forked tasks, if not configured otherwise
+     */
+    public static final int DEFAULT_FORK_JOIN_THRESHOLD = 512;
+
+    /**
+     * the minimum estimated cost of all fields of a type from which they are
+     * evaluated in parallel, if not configured otherwise. A simple path costs
+     * 1, a sub-type 4 and an xPath-query scanning whole subtrees (like
+     * <code>//item</code>) 16 more
+     */
+    public static final int DEFAULT_PARALLEL_FIELD_COST_THRESHOLD = 64;
+
+    private static final XPathUnmarshaller defaultInstance = builder().build();
+
+    private final ConverterRegistry converters;
+
+    // copy-on-write, so the converters can be read without any locking
+    private final AtomicReference<Map<Class<?>, Function<String, ?>>> defaultToTypeConverters;
+
+    private final DocumentParser parser;
+    private final boolean pruneUnusedNodes;
+    private final boolean earlyTermination;
+    private final int parallelListThreshold;
+    private final ForkJoinPool forkJoinPool;
+    private final boolean forkJoinUnmarshalling;
+    private final int forkJoinThreshold;
+    private final Executor fieldEvaluationExecutor;
+    private final int parallelFieldCostThreshold;
+    private final boolean singleTraversalUnmarshalling;
+
+    // only changed for the default instance by the static setter
+    private volatile boolean generatedUnmarshallersEnabled;
+
+    // replaced as a whole on changes, each plan is stored on its own type
+    private volatile ClassValue<BindingPlan<?>> bindingPlans = newBindingPlans();
+    private volatile ClassValue<ElementPaths> elementPaths = newElementPaths();
+
+    private XPathUnmarshaller(Builder builder)
+    {
+        converters = new ConverterRegistry();
+        builder.converterInstances.values().forEach(converters::register);
+        Map<Class<?>, Function<String, ?>> defaultConverters = newDefaultConverterInstancesToType(converters);
+        builder.defaultConverterInstancesToType.forEach((type, converter) ->
+        {
+            if (converter != null)
+            {
+                defaultConverters.put(type, converter);
+            }
+            else
+            {
+                defaultConverters.remove(type);
+            }
+        });
+        defaultToTypeConverters = new AtomicReference<>(Collections.unmodifiableMap(defaultConverters));
+        parser = new DocumentParser(builder);
+        pruneUnusedNodes = builder.pruneUnusedNodes;
+        earlyTermination = builder.earlyTermination;
+        parallelListThreshold = builder.parallelListThreshold;
+        forkJoinPool = builder.forkJoinPool;
+        forkJoinUnmarshalling = builder.forkJoinUnmarshalling;
+        forkJoinThreshold = builder.forkJoinThreshold;
+        fieldEvaluationExecutor = builder.fieldEvaluationExecutor;
+        parallelFieldCostThreshold = builder.parallelFieldCostThreshold;
+        singleTraversalUnmarshalling = builder.singleTraversalUnmarshalling;
+        generatedUnmarshallersEnabled = builder.generatedUnmarshallersEnabled;
+    }
+
+    /**
+     * Builds an {@link Element} of the given xml with the parser-settings of
+     * this instance, on which further xPath-operations can be executed
+     *
+     * @param xml
+     *            the xml to build the {@link Element} from
+     * @return the resulting {@link Element}
+     * @throws ParsingException
+     *             if the {@link Element} can not be build
+     *
+     * @since 2.2.0
+     * @see XPathUtils#getRootElement(String)
+     */
+    public Element getRootElement(String xml) throws ParsingException
+    {
+        return parser.getRootElement(xml);
+    }
+
+    /**
+     * Builds an {@link Element} of the given {@link InputStream} with the
+     * parser-settings of this instance, on which further xPath-operations can
+     * be executed
+     *
+     * @param inputStream
+     *            the {@link InputStream} to build the {@link Element} from
+     * @return the resulting {@link Element}
+     * @throws ParsingException
+     *             if the {@link Element} can not be build
+     *
+     * @since 2.2.0
+     * @see XPathUtils#getRootElement(InputStream)
+     */
+    public Element getRootElement(InputStream inputStream) throws ParsingException
+    {
+        return parser.getRootElement(inputStream);
+    }
+
+    /**
+     * Builds an {@link Element} of the given {@link Reader} with the
+     * parser-settings of this instance, on which further xPath-operations can
+     * be executed
+     *
+     * @param reader
+     *            the {@link Reader} to build the {@link Element} from
+     * @return the resulting {@link Element}
+     * @throws ParsingException
+     *             if the {@link Element} can not be build
+     *
+     * @since 2.2.0
+     * @see XPathUtils#getRootElement(Reader)
+     */
+    public Element getRootElement(Reader reader) throws ParsingException
+    {
+        return parser.getRootElement(reader);
+    }
+
+    /**
+     * Builds an {@link Element} of the given {@link File} with the
+     * parser-settings of this instance, on which further xPath-operations can
+     * be executed
+     *
+     * @param file
+     *            the {@link File} to build the {@link Element} from
+     * @return the resulting {@link Element}
+     * @throws ParsingException
+     *             if the {@link Element} can not be build
+     *
+     * @since 2.2.0
+     * @see XPathUtils#getRootElement(File)
+     */
+    public Element getRootElement(File file) throws ParsingException
+    {
+        return parser.getRootElement(file);
+    }
+
+    /**
+     * Builds an {@link Element} of the remaining bytes of the given
+     * {@link ByteBuffer} (heap or direct) with the parser-settings of this
+     * instance, without copying them first. The position of the
+     * {@link ByteBuffer} is not changed
+     *
+     * @param buffer
+     *            the {@link ByteBuffer} to build the {@link Element} from
+     * @return the resulting {@link Element}
+     * @throws ParsingException
+     *             if the {@link Element} can not be build
+     *
+     * @since 2.2.0
+     */
+    public Element getRootElement(ByteBuffer buffer) throws ParsingException
+    {
+        return parser.getRootElement(buffer, null);
+    }
+
+    /**
+     * Builds an {@link Element} of a slice of the given byte-array with the
+     * parser-settings of this instance, without copying it first
+     *
+     * @param bytes
+     *            the byte-array containing the xml
+     * @param offset
+     *            the index of the first byte of the xml
+     * @param length
+     *            the number of bytes of the xml
+     * @return the resulting {@link Element}
+     * @throws ParsingException
+     *             if the {@link Element} can not be build
+     *
+     * @since 2.2.0
+     */
+    public Element getRootElement(byte[] bytes, int offset, int length) throws ParsingException
+    {
+        return parser.getRootElement(bytes, offset, length, null);
+    }
+
+    /**
+     * Builds an {@link Element} of the given {@link ReadableByteChannel} with
+     * the parser-settings of this instance
+     *
+     * @param channel
+     *            the {@link ReadableByteChannel} to build the {@link Element}
+     *            from
+     * @return the resulting {@link Element}
+     * @throws ParsingException
+     *             if the {@link Element} can not be build
+     *
+     * @since 2.2.0
+     */
+    public Element getRootElement(ReadableByteChannel channel) throws ParsingException
+    {
+        return parser.getRootElement(channel, null);
+    }
+
+    /**
+     * unmarshalls from xml
+     *
+     * @param <T>
+     *            the type of the resulting new instance, determined by the
+     *            given {@link Class}
+     * @param xml
+     *            xml to unmarshal from
+     * @param type
+     *            the type of the class with the annotated fields
+     * @return new instance of the given type unmarshalled by the given xml
+     * @throws ParsingException
+     *             if the xml can not be parsed (invalid xml)
+     *
+     * @since 1.0.0.RELEASE
+     */
+    public <T> T unmarshal(String xml, Class<T> type) throws ParsingException
+    {
+        return unmarshal(parser.getRootElement(xml, getElementPaths(type)), type);
+    }
+
+    /**
+     * unmarshalls from {@link InputStream}
+     *
+     * @param <T>
+     *            the type of the resulting new instance, determined by the
+     *            given {@link Class}
+     * @param inputStream
+     *            {@link InputStream} to unmarshal from
+     * @param type
+     *            the type of the class with the annotated fields
+     * @return new instance of the given type unmarshalled by the given
+     *         {@link InputStream}
+     * @throws ParsingException
+     *             if the {@link InputStream} can not be parsed (invalid xml)
+     *
+     * @since 1.0.2.RELEASE
+     */
+    public <T> T unmarshal(InputStream inputStream, Class<T> type) throws ParsingException
+    {
+        return unmarshal(parser.getRootElement(inputStream, getElementPaths(type)), type);
+    }
+
+    /**
+     * unmarshalls from {@link Reader}
+     *
+     * @param <T>
+     *            the type of the resulting new instance, determined by the
+     *            given {@link Class}
+     * @param reader
+     *            {@link Reader} to unmarshal from
+     * @param type
+     *            the type of the class with the annotated fields
+     * @return new instance of the given type unmarshalled by the given
+     *         {@link Reader}
+     * @throws ParsingException
+     *             if the {@link Reader} can not be parsed (invalid xml)
+     *
+     * @since 1.0.2.RELEASE
+     */
+    public <T> T unmarshal(Reader reader, Class<T> type) throws ParsingException
+    {
+        return unmarshal(parser.getRootElement(reader, getElementPaths(type)), type);
+    }
+
+    /**
+     * unmarshalls from {@link File}
+     *
+     * @param <T>
+     *            the type of the resulting new instance, determined by the
+     *            given {@link Class}
+     * @param file
+     *            {@link File} to unmarshal from
+     * @param type
+     *            the type of the class with the annotated fields
+     * @return new instance of the given type unmarshalled by the given
+     *         {@link File}
+     * @throws ParsingException
+     *             if the {@link File} can not be parsed (invalid xml)
+     *
+     * @since 1.0.2.RELEASE
+     */
+    public <T> T unmarshal(File file, Class<T> type) throws ParsingException
+    {
+        return unmarshal(parser.getRootElement(file, getElementPaths(type)), type);
+    }
+
+    /**
+     * unmarshalls from the remaining bytes of a {@link ByteBuffer} (heap or
+     * direct), without copying them first. The position of the
+     * {@link ByteBuffer} is not changed
+     *
+     * @param <T>
+     *            the type of the resulting new instance, determined by the
+     *            given {@link Class}
+     * @param buffer
+     *            {@link ByteBuffer} to unmarshal from
+     * @param type
+     *            the type of the class with the annotated fields
+     * @return new instance of the given type unmarshalled by the given
+     *         {@link ByteBuffer}
+     * @throws ParsingException
+     *             if the {@link ByteBuffer} can not be parsed (invalid xml)
+     *
+     * @since 2.2.0
+     */
+    public <T> T unmarshal(ByteBuffer buffer, Class<T> type) throws ParsingException
+    {
+        return unmarshal(parser.getRootElement(buffer, getElementPaths(type)), type);
+    }
+
+    /**
+     * unmarshalls from a slice of a byte-array, without copying it first
+     *
+     * @param <T>
+     *            the type of the resulting new instance, determined by the
+     *            given {@link Class}
+     * @param bytes
+     *            the byte-array containing the xml
+     * @param offset
+     *            the index of the first byte of the xml
+     * @param length
+     *            the number of bytes of the xml
+     * @param type
+     *            the type of the class with the annotated fields
+     * @return new instance of the given type unmarshalled by the given bytes
+     * @throws ParsingException
+     *             if the bytes can not be parsed (invalid xml)
+     *
+     * @since 2.2.0
+     */
+    public <T> T unmarshal(byte[] bytes, int offset, int length, Class<T> type) throws ParsingException
+    {
+        return unmarshal(parser.getRootElement(bytes, offset, length, getElementPaths(type)), type);
+    }
+
+    /**
+     * unmarshalls from {@link ReadableByteChannel}
+     *
+     * @param <T>
+     *            the type of the resulting new instance, determined by the
+     *            given {@link Class}
+     * @param channel
+     *            {@link ReadableByteChannel} to unmarshal from
+     * @param type
+     *            the type of the class with the annotated fields
+     * @return new instance of the given type unmarshalled by the given
+     *         {@link ReadableByteChannel}
+     * @throws ParsingException
+     *             if the {@link ReadableByteChannel} can not be parsed
+     *             (invalid xml)
+     *
+     * @since 2.2.0
+     */
+    public <T> T unmarshal(ReadableByteChannel channel, Class<T> type) throws ParsingException
+    {
+        return unmarshal(parser.getRootElement(channel, getElementPaths(type)), type);
+    }
+
+    /**
+     * Unmarshals from {@link File} asynchronously. The {@link File} is read by
+     * an {@link java.nio.channels.AsynchronousFileChannel}, so no thread
+     * waits for the I/O, the parsing and unmarshalling is done by the given
+     * {@link Executor}
+     *
+     * @param <T>
+     *            the type of the resulting new instance, determined by the
+     *            given {@link Class}
+     * @param file
+     *            {@link File} to unmarshal from
+     * @param type
+     *            the type of the class with the annotated fields
+     * @param executor
+     *            the {@link Executor} to parse and unmarshal with
+     * @return {@link CompletableFuture} of the new instance of the given type
+     *         unmarshalled by the given {@link File}, completed exceptionally
+     *         with a {@link ParsingException} if the {@link File} can not be
+     *         parsed (invalid xml)
+     *
+     * @since 2.2.0
+     */
+    public <T> CompletableFuture<T> unmarshalAsync(File file, Class<T> type, Executor executor)
+    {
+        return getRootElementAsync(file, getElementPaths(type), executor).thenApply(root -> unmarshal(root, type));
+    }
+
+    /**
+     * Unmarshals from {@link InputStream} asynchronously by the given
+     * {@link Executor}
+     *
+     * @param <T>
+     *            the type of the resulting new instance, determined by the
+     *            given {@link Class}
+     * @param inputStream
+     *            {@link InputStream} to unmarshal from
+     * @param type
+     *            the type of the class with the annotated fields
+     * @param executor
+     *            the {@link Executor} to read, parse and unmarshal with
+     * @return {@link CompletableFuture} of the new instance of the given type
+     *         unmarshalled by the given {@link InputStream}, completed
+     *         exceptionally with a {@link ParsingException} if the
+     *         {@link InputStream} can not be parsed (invalid xml)
+     *
+     * @since 2.2.0
+     */
+    public <T> CompletableFuture<T> unmarshalAsync(InputStream inputStream, Class<T> type, Executor executor)
+    {
+        return CompletableFuture.supplyAsync(() -> completing(() -> unmarshal(inputStream, type)), executor);
+    }
+
+    /**
+     * Unmarshals from {@link Reader} asynchronously by the given
+     * {@link Executor}
+     *
+     * @param <T>
+     *            the type of the resulting new instance, determined by the
+     *            given {@link Class}
+     * @param reader
+     *            {@link Reader} to unmarshal from
+     * @param type
+     *            the type of the class with the annotated fields
+     * @param executor
+     *            the {@link Executor} to read, parse and unmarshal with
+     * @return {@link CompletableFuture} of the new instance of the given type
+     *         unmarshalled by the given {@link Reader}, completed
+     *         exceptionally with a {@link ParsingException} if the
+     *         {@link Reader} can not be parsed (invalid xml)
+     *
+     * @since 2.2.0
+     */
+    public <T> CompletableFuture<T> unmarshalAsync(Reader reader, Class<T> type, Executor executor)
+    {
+        return CompletableFuture.supplyAsync(() -> completing(() -> unmarshal(reader, type)), executor);
+    }
+
+    /**
+     * Builds an {@link Element} of the given {@link File} asynchronously with
+     * the parser-settings of this instance. A {@link File} smaller than the
+     * {@link Builder#memoryMappingThreshold(long) memory-mapping-threshold} is
+     * read by an {@link java.nio.channels.AsynchronousFileChannel}, so no
+     * thread waits for the I/O, the parsing is done by the given
+     * {@link Executor}. Larger {@link File}s, and {@link File}s too large for
+     * one buffer, are read by the {@link Executor}
+     *
+     * @param file
+     *            the {@link File} to build the {@link Element} from
+     * @param executor
+     *            the {@link Executor} to parse with
+     * @return {@link CompletableFuture} of the resulting {@link Element},
+     *         completed exceptionally with a {@link ParsingException} if the
+     *         {@link Element} can not be build
+     *
+     * @since 2.2.0
+     */
+    public CompletableFuture<Element> getRootElementAsync(File file, Executor executor)
+    {
+        return getRootElementAsync(file, null, executor);
+    }
+
+    /**
+     * Builds an {@link Element} of the given {@link InputStream}
+     * asynchronously by the given {@link Executor} with the parser-settings of
+     * this instance
+     *
+     * @param inputStream
+     *            the {@link InputStream} to build the {@link Element} from
+     * @param executor
+     *            the {@link Executor} to read and parse with
+     * @return {@link CompletableFuture} of the resulting {@link Element},
+     *         completed exceptionally with a {@link ParsingException} if the
+     *         {@link Element} can not be build
+     *
+     * @since 2.2.0
+     */
+    public CompletableFuture<Element> getRootElementAsync(InputStream inputStream, Executor executor)
+    {
+        return CompletableFuture.supplyAsync(() -> completing(() -> parser.getRootElement(inputStream)), executor);
+    }
+
+    /**
+     * Builds an {@link Element} of the given {@link Reader} asynchronously by
+     * the given {@link Executor} with the parser-settings of this instance
+     *
+     * @param reader
+     *            the {@link Reader} to build the {@link Element} from
+     * @param executor
+     *            the {@link Executor} to read and parse with
+     * @return {@link CompletableFuture} of the resulting {@link Element},
+     *         completed exceptionally with a {@link ParsingException} if the
+     *         {@link Element} can not be build
+     *
+     * @since 2.2.0
+     */
+    public CompletableFuture<Element> getRootElementAsync(Reader reader, Executor executor)
+    {
+        return CompletableFuture.supplyAsync(() -> completing(() -> parser.getRootElement(reader)), executor);
+    }
+
+    private CompletableFuture<Element> getRootElementAsync(File file, ElementPaths paths, Executor executor)
+    {
+        if (parser.isMemoryMapped(file) || (file.length() > AsyncFileReader.MAXIMUM_SIZE))
+        {
+            // large files are read by the executor (memory-mapped above the threshold), instead of into one buffer on the heap
+            return CompletableFuture.supplyAsync(() -> completing(() -> parser.getRootElement(file, paths)), executor);
+        }
+        return AsyncFileReader.read(file).thenApplyAsync(content -> completing(() -> parser.getRootElement(file, content, paths)), executor);
+    }
+
+    /**
+     * @return the result of the given parsing, a {@link ParsingException} is
+     *         wrapped in a {@link CompletionException}, so the
+     *         {@link CompletableFuture} is completed exceptionally with it
+     */
+    private static <T> T completing(ParsingSupplier<T> parsing)
+    {
+        try
+        {
+            return parsing.get();
+        }
+        catch (ParsingException e)
+        {
+            throw new CompletionException(e);
+        }
+    }
+
+    private interface ParsingSupplier<T>
+    {
+        T get() throws ParsingException;
+    }
+
+    /**
+     * Unmarshals all given files concurrently, with at most
+     * {@link #DEFAULT_MAXIMUM_BATCH_CONCURRENCY} files at the same time
+     *
+     * @param <T>
+     *            the type of the resulting new instances, determined by the
+     *            given {@link Class}
+     * @param paths
+     *            the files to unmarshal from
+     * @param type
+     *            the type of the class with the annotated fields
+     * @return new instances of the given type, in the order of the given
+     *         files
+     * @throws ParsingException
+     *             if any file can not be parsed (invalid xml)
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     *
+     * @since 2.2.0
+     * @see #unmarshalAll(Collection, Class, int)
+     */
+    public <T> List<T> unmarshalAll(Collection<Path> paths, Class<T> type) throws ParsingException, InterruptedException
+    {
+        return unmarshalAll(paths, type, DEFAULT_MAXIMUM_BATCH_CONCURRENCY);
+    }
+
+    /**
+     * Unmarshals all given files concurrently, with at most the given number
+     * of files at the same time. On Java 21 and later each file is read,
+     * parsed and unmarshalled on its own virtual thread, so thousands of small
+     * files can be processed with the I/O and the parsing overlapped. Before
+     * Java 21 the files are processed by a pool of platform threads, limited
+     * additionally by the number of available processors. If a file can not
+     * be unmarshalled, the remaining files are cancelled
+     *
+     * @param <T>
+     *            the type of the resulting new instances, determined by the
+     *            given {@link Class}
+     * @param paths
+     *            the files to unmarshal from
+     * @param type
+     *            the type of the class with the annotated fields
+     * @param maximumConcurrency
+     *            the maximum number of files processed at the same time, must
+     *            be positive
+     * @return new instances of the given type, in the order of the given
+     *         files
+     * @throws ParsingException
+     *             if any file can not be parsed (invalid xml)
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     *
+     * @since 2.2.0
+     */
+    public <T> List<T> unmarshalAll(Collection<Path> paths, Class<T> type, int maximumConcurrency) throws ParsingException, InterruptedException
+    {
+        if (maximumConcurrency < 1)
+        {
+            throw new IllegalArgumentException("maximumConcurrency must be positive, but was " + maximumConcurrency);
+        }
+        List<Callable<T>> tasks = new ArrayList<>(paths.size());
+        for (Path path : paths)
+        {
+            tasks.add(() -> unmarshal(path, type));
+        }
+        try
+        {
+            return VirtualThreads.invokeAll(tasks, maximumConcurrency);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof ParsingException)
+            {
+                throw (ParsingException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error)
+            {
+                throw (Error) e.getCause();
+            }
+            throw new ParsingException("the xml can not be parsed", e.getCause());
+        }
+    }
+
+    private <T> T unmarshal(Path path, Class<T> type) throws ParsingException
+    {
+        if (path.getFileSystem() == FileSystems.getDefault())
+        {
+            return unmarshal(path.toFile(), type);
+        }
+        try (InputStream inputStream = Files.newInputStream(path))
+        {
+            return unmarshal(parser.getRootElement(inputStream, path.toUri().toString(), getElementPaths(type)), type);
+        }
+        catch (IOException e)
+        {
+            throw new ParsingException("the xml can not be parsed", e);
+        }
+    }
+
+    /**
+     * unmarshalls from {@link Element}
+     *
+     * @param <T>
+     *            the type of the resulting new instance, determined by the
+     *            given {@link Class}
+     * @param root
+     *            {@link Element} to unmarshal from
+     * @param type
+     *            the type of the class with the annotated fields
+     * @return new instance of the given type unmarshalled by the given
+     *         {@link Element}
+     *
+     * @since 1.0.0.RELEASE
+     */
+    public <T> T unmarshal(Element root, Class<T> type)
+    {
+        BindingPlan<T> plan = getBindingPlan(type);
+        if (forkJoinUnmarshalling && (ForkJoinTask.getPool() != forkJoinPool))
+        {
+            // entered once, the sub-objects are then forked from the workers of the pool
+            return forkJoinPool.invoke(ForkJoinTask.adapt(() -> plan.unmarshal(root)));
+        }
+        return plan.unmarshal(root);
+    }
+
+    /**
+     * unmarshalls each record of the given {@link InputStream} that matches
+     * the given record-path. The xml is read lazily while the returned
+     * {@link Stream} is consumed, only the subtree of the current record is
+     * built (as root-element of its own {@link nu.xom.Document Document}) and
+     * unmarshalled, so the memory needed does not depend on the size of the
+     * xml. The record-path is a list of element-names separated by
+     * <code>/</code> (like <code>/feed/items/item</code>), matched from the
+     * root-element if it starts with a single <code>/</code> or at any depth
+     * otherwise (like <code>item</code> or <code>//items/item</code>). A name
+     * without prefix matches the local-name, <code>*</code> matches any
+     * element. Errors while reading are thrown as {@link RuntimeException}. The
+     * {@link InputStream} is not closed
+     *
+     * @param <T>
+     *            the type of the resulting new instances, determined by the
+     *            given {@link Class}
+     * @param inputStream
+     *            {@link InputStream} to unmarshal from
+     * @param recordPath
+     *            the path of the elements to unmarshal
+     * @param type
+     *            the type of the class with the annotated fields
+     * @return lazy {@link Stream} of new instances of the given type, one per
+     *         record
+     * @throws ParsingException
+     *             if the {@link InputStream} can not be read as xml
+     *
+     * @since 2.2.0
+     */
+    public <T> Stream<T> stream(InputStream inputStream, String recordPath, Class<T> type) throws ParsingException
+    {
+        RecordIterator<T> records = new RecordIterator<>(inputStream, recordPath, record -> unmarshal(record, type));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(records, Spliterator.ORDERED), false)
+            .onClose(records::close);
+    }
+
+    /**
+     * Returns the instance of the given {@link Function Converter}-{@link Class}
+     * registered on this unmarshaller, a new instance is created and cached if
+     * there is none yet
+     *
+     * @param <T>
+     *            the result-type of the {@link Function Converter}
+     * @param converterClass
+     *            the {@link Class} of the {@link Function Converter}
+     * @return the instance of the {@link Function Converter}
+     *
+     * @since 2.2.0
+     *
+     * @see Builder#converterInstance(Function)
+     */
+    public <T> Function<String, T> getConverter(Class<? extends Function<String, T>> converterClass)
+    {
+        return converters.get(converterClass);
+    }
+
+    /**
+     * Same as {@link XPathUtils#queryList(Node, String, Class, Class)}, but
+     * converts and unmarshals the values with this unmarshaller
+     *
+     * @param <T>
+     *            the type of the resulting list-items, determined by the given
+     *            {@link Function Converter} or {@link Class}
+     * @param root
+     *            the {@link Node} to execute the given xPath-query from
+     * @param xPath
+     *            the xPath-query to execute on the given {@link Node}
+     * @param converterClass
+     *            the {@link Function Converter} (given by the {@link Class}) to
+     *            convert the values with
+     * @param subType
+     *            the {@link Class} to unmarshall the values to
+     * @return a {@link List} of the found values, will never be
+     *         <code>null</code>
+     *
+     * @since 2.2.0
+     */
+    public <T> List<T> queryList(Node root, String xPath, Class<? extends Function<String, T>> converterClass, Class<T> subType)
+    {
+        return queryList(root, xPath, converterClass, subType, false);
+    }
+
+    /**
+     * Same as {@link #queryList(Node, String, Class, Class)}, but if parallel
+     * and at least {@link Builder#parallelListThreshold(int)} values are found,
+     * they are converted and unmarshalled in parallel on the
+     * {@link Builder#forkJoinPool(ForkJoinPool) ForkJoinPool} of this
+     * unmarshaller. The order of the values is kept. The {@link Function
+     * Converter} and the unmarshalled types must be thread-safe then, which
+     * all standard {@link Function Converter}s are
+     *
+     * @param <T>
+     *            the type of the resulting list-items, determined by the given
+     *            {@link Function Converter} or {@link Class}
+     * @param root
+     *            the {@link Node} to execute the given xPath-query from
+     * @param xPath
+     *            the xPath-query to execute on the given {@link Node}
+     * @param converterClass
+     *            the {@link Function Converter} (given by the {@link Class}) to
+     *            convert the values with
+     * @param subType
+     *            the {@link Class} to unmarshall the values to
+     * @param parallel
+     *            <code>true</code> to convert and unmarshal large lists in
+     *            parallel
+     * @return a {@link List} of the found values, will never be
+     *         <code>null</code>
+     *
+     * @since 2.2.0
+     * @see XPathList#parallel()
+     */
+    public <T> List<T> queryList(Node root, String xPath, Class<? extends Function<String, T>> converterClass, Class<T> subType, boolean parallel)
+    {
+        return toList(XPathUtils.queryNodeList(root, xPath), converterClass, subType, parallel);
+    }
+
+    /**
+     * Same as {@link #queryList(Node, String, Class, Class, boolean)} for
+     * already found {@link Node}s, e.g. by an {@link XPathQueryBatch}
+     *
+     * @param <T>
+     *            the type of the resulting list-items, determined by the given
+     *            {@link Function Converter} or {@link Class}
+     * @param nodeList
+     *            the found {@link Node}s
+     * @param converterClass
+     *            the {@link Function Converter} (given by the {@link Class}) to
+     *            convert the values with
+     * @param subType
+     *            the {@link Class} to unmarshall the values to
+     * @param parallel
+     *            <code>true</code> to convert and unmarshal large lists in
+     *            parallel
+     * @return a {@link List} of the converted values, will never be
+     *         <code>null</code>
+     *
+     * @since 2.2.0
+     */
+    public <T> List<T> toList(List<Node> nodeList, Class<? extends Function<String, T>> converterClass, Class<T> subType, boolean parallel)
+    {
+        Function<Node, T> mapping;
+        if ((subType != null) && (subType != String.class))
+        {
+            mapping = node -> unmarshallSubType(node, subType);
+        }
+        else
+        {
+            Function<String, T> converter = converterClass != null ? getConverter(converterClass) : null;
+            mapping = node -> converter != null ? converter.apply(node.getValue()) : null;
+        }
+        if ((parallel && (nodeList.size() >= parallelListThreshold)) || isForking(nodeList, subType))
+        {
+            return ParallelNodeMapping.map(nodeList, mapping, forkJoinPool);
+        }
+        List<T> values = new ArrayList<>(nodeList.size());
+        for (Node node : nodeList)
+        {
+            values.add(mapping.apply(node));
+        }
+        return values;
+    }
+
+    /**
+     * Same as
+     * {@link XPathUtils#queryMap(Node, String, String, String, Class, Class, Class, Class)},
+     * but converts and unmarshals the keys and values with this unmarshaller
+     *
+     * @param <K>
+     *            the type of the keys
+     * @param <V>
+     *            the type of the values
+     * @param root
+     *            the {@link Node} to execute the given entryXPath-query from
+     * @param entryXPath
+     *            the xPath-query to find the entries
+     * @param keySubXPath
+     *            the xPath-query to find the key of each entry
+     * @param valueSubXPath
+     *            the xPath-query to find the value of each entry
+     * @param keyConverterClass
+     *            the {@link Function keyConverter} (given by the {@link Class})
+     *            to convert the keys with
+     * @param valueConverterClass
+     *            the {@link Function valueConverter} (given by the
+     *            {@link Class}) to convert the values with
+     * @param keySubType
+     *            the {@link Class} to unmarshall the found
+     *            entry-key-{@link Node}
+     * @param valueSubType
+     *            the {@link Class} to unmarshall the found
+     *            entry-value-{@link Node}
+     * @return a {@link Map} of key and value
+     *
+     * @since 2.2.0
+     */
+    public <K, V> Map<K, V> queryMap(Node root, String entryXPath, String keySubXPath, String valueSubXPath,
+        Class<? extends Function<String, K>> keyConverterClass, Class<? extends Function<String, V>> valueConverterClass, Class<K> keySubType,
+        Class<V> valueSubType)
+    {
+        return toMap(XPathUtils.queryNodeList(root, entryXPath), keySubXPath, valueSubXPath, keyConverterClass, valueConverterClass, keySubType,
+            valueSubType);
+    }
+
+    /**
+     * Same as
+     * {@link #queryMap(Node, String, String, String, Class, Class, Class, Class)}
+     * for already found entry-{@link Node}s, e.g. by an
+     * {@link XPathQueryBatch}
+     *
+     * @param <K>
+     *            the type of the keys
+     * @param <V>
+     *            the type of the values
+     * @param entryNodes
+     *            the found entry-{@link Node}s
+     * @param keySubXPath
+     *            the xPath-query to find the key of each entry
+     * @param valueSubXPath
+     *            the xPath-query to find the value of each entry
+     * @param keyConverterClass
+     *            the {@link Function keyConverter} (given by the {@link Class})
+     *            to convert the keys with
+     * @param valueConverterClass
+     *            the {@link Function valueConverter} (given by the
+     *            {@link Class}) to convert the values with
+     * @param keySubType
+     *            the {@link Class} to unmarshall the found
+     *            entry-key-{@link Node}
+     * @param valueSubType
+     *            the {@link Class} to unmarshall the found
+     *            entry-value-{@link Node}
+     * @return a {@link Map} of key and value
+     *
+     * @since 2.2.0
+     */
+    public <K, V> Map<K, V> toMap(List<Node> entryNodes, String keySubXPath, String valueSubXPath,
+        Class<? extends Function<String, K>> keyConverterClass, Class<? extends Function<String, V>> valueConverterClass, Class<K> keySubType,
+        Class<V> valueSubType)
+    {
+        Map<Node, Node> nodeMap = new HashMap<>();
+        for (Node entryNode : entryNodes)
+        {
+            nodeMap.put(XPathUtils.queryFirstNode(entryNode, keySubXPath), XPathUtils.queryFirstNode(entryNode, valueSubXPath));
+        }
+        Map<K, V> map = new HashMap<>(nodeMap.size());
+        Function<String, K> keyConverter = null;
+        Function<String, V> valueConverter = null;
+        if (((keySubType == null) || (keySubType == String.class)) && (keyConverterClass != null))
+        {
+            keyConverter = getConverter(keyConverterClass);
+        }
+        if (((valueSubType == null) || (keySubType == String.class)) && (valueConverterClass != null))
+        {
+            valueConverter = getConverter(valueConverterClass);
+        }
+        if (isForking(nodeMap, keySubType, valueSubType))
+        {
+            Function<String, K> forkedKeyConverter = keyConverter;
+            Function<String, V> forkedValueConverter = valueConverter;
+            List<Entry<K, V>> entries = ParallelNodeMapping.map(new ArrayList<>(nodeMap.entrySet()),
+                entry -> new SimpleImmutableEntry<>(unmarshallOrConvert(entry.getKey(), keySubType, forkedKeyConverter),
+                    unmarshallOrConvert(entry.getValue(), valueSubType, forkedValueConverter)),
+                forkJoinPool);
+            for (Entry<K, V> entry : entries)
+            {
+                map.put(entry.getKey(), entry.getValue());
+            }
+            return map;
+        }
+        for (Entry<Node, Node> entry : nodeMap.entrySet())
+        {
+            K key = unmarshallOrConvert(entry.getKey(), keySubType, keyConverter);
+            V value = unmarshallOrConvert(entry.getValue(), valueSubType, valueConverter);
+            map.put(key, value);
+        }
+        return map;
+    }
+
+    /**
+     * @return <code>true</code> if the given sub-objects are unmarshalled as
+     *         forked tasks, because this unmarshaller is running in its
+     *         {@link ForkJoinPool} and they are large enough
+     */
+    private boolean isForking(List<Node> nodes, Class<?> subType)
+    {
+        return forkJoinUnmarshalling && isSubObjectType(subType) && (nodes.size() > 1) && (ForkJoinTask.getPool() == forkJoinPool)
+            && SubtreeSize.isAtLeast(nodes, forkJoinThreshold);
+    }
+
+    private boolean isForking(Map<Node, Node> nodeMap, Class<?> keySubType, Class<?> valueSubType)
+    {
+        if (!forkJoinUnmarshalling || (!isSubObjectType(keySubType) && !isSubObjectType(valueSubType)) || (nodeMap.size() < 2)
+            || (ForkJoinTask.getPool() != forkJoinPool))
+        {
+            return false;
+        }
+        List<Node> nodes = new ArrayList<>(nodeMap.size() * 2);
+        for (Entry<Node, Node> entry : nodeMap.entrySet())
+        {
+            if (entry.getKey() != null)
+            {
+                nodes.add(entry.getKey());
+            }
+            if (entry.getValue() != null)
+            {
+                nodes.add(entry.getValue());
+            }
+        }
+        return SubtreeSize.isAtLeast(nodes, forkJoinThreshold);
+    }
+
+    private static boolean isSubObjectType(Class<?> subType)
+    {
+        return (subType != null) && (subType != String.class) && !subType.isEnum();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T unmarshallOrConvert(Node node, Class<T> subType, Function<String, T> converter)
+    {
+        if (node != null)
+        {
+            if ((subType != null) && (subType != String.class))
+            {
+                return unmarshallSubType(node, subType);
+            }
+            else if (converter != null)
+            {
+                return converter.apply(node.getValue());
+            }
+            else if ((subType == null) || (subType == String.class))
+            {
+                return (T) node.getValue();
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings(
+    { "unchecked", "rawtypes" })
+    private <T> T unmarshallSubType(Node node, Class<T> subType)
+    {
+        if (subType.isEnum())
+        {
+            return (T) Enum.valueOf((Class<Enum>) subType, node.getValue());
+        }
+        return unmarshal((Element) node, subType);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> BindingPlan<T> getBindingPlan(Class<T> type)
+    {
+        return (BindingPlan<T>) bindingPlans.get(type);
+    }
+
+    private ClassValue<BindingPlan<?>> newBindingPlans()
+    {
+        return new ClassValue<BindingPlan<?>>()
+        {
+            @Override
+            protected BindingPlan<?> computeValue(Class<?> type)
+            {
+                BindingPlan.Settings settings = BindingPlan.settings()
+                    .generateUnmarshaller(generatedUnmarshallersEnabled)
+                    .forkJoinThreshold(forkJoinUnmarshalling ? forkJoinThreshold : 0)
+                    .fieldEvaluationExecutor(fieldEvaluationExecutor, parallelFieldCostThreshold)
+                    .singleTraversal(singleTraversalUnmarshalling);
+                return BindingPlan.create(type, XPathUnmarshaller.this, defaultToTypeConverters.get(), settings);
+            }
+        };
+    }
+
+    private ElementPaths getElementPaths(Class<?> type)
+    {
+        return pruneUnusedNodes || earlyTermination ? elementPaths.get(type) : null;
+    }
+
+    private ClassValue<ElementPaths> newElementPaths()
+    {
+        return new ClassValue<ElementPaths>()
+        {
+            @Override
+            protected ElementPaths computeValue(Class<?> type)
+            {
+                return ElementPaths.forType(type, defaultToTypeConverters.get());
+            }
+        };
+    }
+
+    /**
+     * Drops all cached {@link BindingPlan}s, so they are created again with the
+     * current {@link Function Converter}s on the next unmarshalling
+     */
+    private void clearBindingPlans()
+    {
+        bindingPlans = newBindingPlans();
+        elementPaths = newElementPaths();
+    }
+
+    /**
+     * Creates a {@link NodeFactory} for an own XOM-{@link nu.xom.Builder} that
+     * drops all subtrees during parsing which are not needed to unmarshal the
+     * given type, so the built tree is much smaller but gives the same result
+     * when unmarshalled with this instance. Only element-paths of simple
+     * location-paths (like <code>item/name</code> or <code>*&#47;@id</code>)
+     * are followed, for any other xPath-query the whole element it is executed
+     * on is kept. Elements on a path keep their attributes, their text only if
+     * it is needed. The factory is not thread-safe, like the
+     * {@link nu.xom.Builder} it is used by
+     *
+     * @param type
+     *            the type of the class with the annotated fields
+     * @return new {@link NodeFactory} keeping only the nodes needed for the
+     *         given type
+     *
+     * @since 2.2.0
+     * @see Builder#pruneUnusedNodes(boolean)
+     */
+    public NodeFactory newPruningNodeFactory(Class<?> type)
+    {
+        return new PruningNodeFactory(new NodeFactory(), elementPaths.get(type));
+    }
+
+    DocumentParser getParser()
+    {
+        return parser;
+    }
+
+    void registerConverterInstance(Function<String, ?> converter)
+    {
+        converters.register(converter);
+        clearBindingPlans();
+    }
+
+    void unregisterConverterInstance(Class<?> converterClass)
+    {
+        converters.unregister(converterClass);
+        clearBindingPlans();
+    }
+
+    void clearConverterInstances()
+    {
+        converters.clear();
+        clearBindingPlans();
+    }
+
+    /**
+     * Enables or disables unmarshalling by classes that are generated at
+     * runtime per type for the default instance (disabled by default, can also
+     * be enabled with the system-property
+     * <code>xpath-utils.generatedUnmarshallers=true</code>). The generated
+     * classes create the instances and write the fields without reflection, so
+     * the JIT can inline the whole unmarshalling of a type. If no class can be
+     * generated for a type, it is unmarshalled by reflection
+     *
+     * @param enabled
+     *            <code>true</code> to unmarshal by generated classes
+     *
+     * @since 2.2.0
+     *
+     * @see Builder#generatedUnmarshallersEnabled(boolean)
+     */
+    public static void setGeneratedUnmarshallersEnabled(boolean enabled)
+    {
+        defaultInstance.generatedUnmarshallersEnabled = enabled;
+        defaultInstance.clearBindingPlans();
+    }
+
+    /**
+     * @return <code>true</code> if unmarshalling by generated classes is
+     *         enabled for the default instance
+     *
+     * @since 2.2.0
+     *
+     * @see #setGeneratedUnmarshallersEnabled(boolean)
+     */
+    public static boolean isGeneratedUnmarshallersEnabled()
+    {
+        return defaultInstance.generatedUnmarshallersEnabled;
+    }
+
+    /**
+     * Registers a default {@link Function Converter} to use for unmarshalling
+     * when the value (after an annotated {@link Function Converter}-conversion)
+     * is a {@link String} but the field-type is not. So when the registered
+     * default-{@link Function Converter}s contain a matching one for the wanted
+     * field-type, it is used to convert the value to the wanted type
+     *
+     * @param type
+     *            the type that matches the field-type and the given
+     *            {@link Function Converter}-result-type
+     * @param converter
+     *            the {@link Function Converter} to use for converting to the
+     *            given type
+     *
+     * @since 1.0.2.RELEASE
+     */
+    public static void registerDefaultConverterInstanceToType(Class<?> type, Function<String, ?> converter)
+    {
+        defaultInstance.updateDefaultConverters(converters -> converters.put(type, converter));
+    }
+
+    /**
+     * Unregisters a {@link Function Converter} for default-conversion for the
+     * given type
+     *
+     * @param type
+     *            the type the {@link Function Converter} is registered to
+     *            convert to
+     *
+     * @since 1.0.3.RELEASE
+     *
+     * @see #registerDefaultConverterInstanceToType(Class, Function)
+     */
+    public static void unregisterDefaultConverterInstanceToType(Class<?> type)
+    {
+        defaultInstance.updateDefaultConverters(converters -> converters.remove(type));
+    }
+
+    /**
+     * Resets all {@link Function Converter}s for default-conversion to the
+     * default (clears all and puts the default ones)
+     *
+     * @since 1.0.3.RELEASE
+     *
+     * @see #registerDefaultConverterInstanceToType(Class, Function)
+     */
+    public static void resetDefaultConverterInstancesToType()
+    {
+        defaultInstance.defaultToTypeConverters.set(Collections.unmodifiableMap(newDefaultConverterInstancesToType(defaultInstance.converters)));
+        defaultInstance.clearBindingPlans();
+    }
+
+    private static Map<Class<?>, Function<String, ?>> newDefaultConverterInstancesToType(ConverterRegistry converters)
+    {
+        Map<Class<?>, Function<String, ?>> defaultConverters = new HashMap<>();
+        defaultConverters.put(Integer.class, converters.get(ToIntegerConverter.class));
+        defaultConverters.put(Long.class, converters.get(ToLongConverter.class));
+        defaultConverters.put(Short.class, converters.get(ToShortConverter.class));
+        defaultConverters.put(Double.class, converters.get(ToDoubleConverter.class));
+        defaultConverters.put(Float.class, converters.get(ToFloatConverter.class));
+        defaultConverters.put(Boolean.class, converters.get(ToBooleanConverter.class));
+        defaultConverters.put(Character.class, converters.get(ToCharacterConverter.class));
+        defaultConverters.put(int.class, converters.get(ToIntegerConverter.class));
+        defaultConverters.put(long.class, converters.get(ToLongConverter.class));
+        defaultConverters.put(short.class, converters.get(ToShortConverter.class));
+        defaultConverters.put(double.class, converters.get(ToDoubleConverter.class));
+        defaultConverters.put(float.class, converters.get(ToFloatConverter.class));
+        defaultConverters.put(boolean.class, converters.get(ToBooleanConverter.class));
+        defaultConverters.put(char.class, converters.get(ToCharacterConverter.class));
+        defaultConverters.put(LocalDate.class, converters.get(ToLocalDateConverter.class));
+        defaultConverters.put(LocalDateTime.class, converters.get(ToLocalDateTimeConverter.class));
+        defaultConverters.put(LocalTime.class, converters.get(ToLocalTimeConverter.class));
+        defaultConverters.put(ZonedDateTime.class, converters.get(ToZonedDateTimeConverter.class));
+        return defaultConverters;
+    }
+
+    private void updateDefaultConverters(Consumer<Map<Class<?>, Function<String, ?>>> update)
+    {
+        defaultToTypeConverters.updateAndGet(defaultConverters ->
+        {
+            Map<Class<?>, Function<String, ?>> updated = new HashMap<>(defaultConverters);
+            update.accept(updated);
+            return Collections.unmodifiableMap(updated);
+        });
+        clearBindingPlans();
+    }
+
+    /**
+     * Returns the default instance of the {@link XPathUnmarshaller}, used by
+     * {@link XPathUtils} and changed by the static methods for registering
+     * {@link Function Converter}s
+     *
+     * @return the default instance of the {@link XPathUnmarshaller}
+     *
+     * @since 1.0.0.RELEASE
+     */
+    public static XPathUnmarshaller getInstance()
+    {
+        return defaultInstance;
+    }
+
+    /**
+     * Creates a {@link Builder} for a new, independent {@link XPathUnmarshaller}
+     * that starts with the standard default-{@link Function Converter}s and is
+     * not affected by the static registration-methods
+     *
+     * @return new {@link Builder}
+     *
+     * @since 2.2.0
+     */
+    public static Builder builder()
+    {
+        return new Builder();
+    }
+
+    /**
+     * Builder for independent, immutable {@link XPathUnmarshaller}-instances
+     *
+     * @author Martin Schumacher
+     * @since 2.2.0
+     *
+     * @see XPathUnmarshaller#builder()
+     */
+    public static final class Builder
+    {
+        private final Map<Class<?>, Function<String, ?>> converterInstances = new LinkedHashMap<>();
+
+        // a null-value removes the standard default-converter of the type
+        private final Map<Class<?>, Function<String, ?>> defaultConverterInstancesToType = new LinkedHashMap<>();
+
+        private boolean generatedUnmarshallersEnabled = Boolean.getBoolean(GENERATED_UNMARSHALLERS_PROPERTY);
+
+        // the parser-settings, read by the DocumentParser
+        boolean validating;
+        Supplier<? extends NodeFactory> nodeFactory;
+        boolean internNames = Boolean.getBoolean(INTERN_NAMES_PROPERTY);
+        boolean stripWhitespace;
+        boolean pruneUnusedNodes;
+        boolean earlyTermination;
+        long memoryMappingThreshold = Long.MAX_VALUE;
+        ParserPooling parserPooling = ParserPooling.THREAD_LOCAL;
+        int maximumPooledParsers = Runtime.getRuntime().availableProcessors();
+
+        private int parallelListThreshold = DEFAULT_PARALLEL_LIST_THRESHOLD;
+        private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
+        private boolean forkJoinUnmarshalling;
+        private int forkJoinThreshold = DEFAULT_FORK_JOIN_THRESHOLD;
+        private Executor fieldEvaluationExecutor;
+        private int parallelFieldCostThreshold = DEFAULT_PARALLEL_FIELD_COST_THRESHOLD;
+        private boolean singleTraversalUnmarshalling;
+
+        private Builder()
+        {
+            // created by XPathUnmarshaller.builder()
+        }
+
+        /**
+         * Registers the given explicit instance of a {@link Function Converter}
+         * to use, if a {@link Function Converter} of that class is used
+         *
+         * @param converter
+         *            the instance of the {@link Function Converter}
+         * @return this {@link Builder}
+         */
+        public Builder converterInstance(Function<String, ?> converter)
+        {
+            converterInstances.put(converter.getClass(), converter);
+            return this;
+        }
+
+        /**
+         * Registers a default {@link Function Converter} to convert
+         * {@link String}-values to fields of the given type
+         *
+         * @param type
+         *            the type that matches the field-type and the given
+         *            {@link Function Converter}-result-type
+         * @param converter
+         *            the {@link Function Converter} to use for converting to
+         *            the given type
+         * @return this {@link Builder}
+         *
+         * @see XPathUnmarshaller#registerDefaultConverterInstanceToType(Class,
+         *      Function)
+         */
+        public Builder defaultConverterInstanceToType(Class<?> type, Function<String, ?> converter)
+        {
+            defaultConverterInstancesToType.put(type, converter);
+            return this;
+        }
+
+        /**
+         * Removes the default {@link Function Converter} for the given type
+         *
+         * @param type
+         *            the type the {@link Function Converter} converts to
+         * @return this {@link Builder}
+         *
+         * @see XPathUnmarshaller#unregisterDefaultConverterInstanceToType(Class)
+         */
+        public Builder withoutDefaultConverterInstanceToType(Class<?> type)
+        {
+            defaultConverterInstancesToType.put(type, null);
+            return this;
+        }
+
+        /**
+         * @param enabled
+         *            <code>true</code> to unmarshal by classes generated at
+         *            runtime per type
+         * @return this {@link Builder}
+         *
+         * @see XPathUnmarshaller#setGeneratedUnmarshallersEnabled(boolean)
+         */
+        public Builder generatedUnmarshallersEnabled(boolean enabled)
+        {
+            generatedUnmarshallersEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * @param validating
+         *            <code>true</code> to validate the parsed xml against its
+         *            DTD (default is <code>false</code>)
+         * @return this {@link Builder}
+         */
+        public Builder validating(boolean validating)
+        {
+            this.validating = validating;
+            return this;
+        }
+
+        /**
+         * @param nodeFactory
+         *            creates the {@link NodeFactory} that builds the nodes for
+         *            each new XOM-{@link nu.xom.Builder}, which is reused
+         *            according to the {@link #parserPooling(ParserPooling)}
+         *            (default is the {@link NodeFactory} of XOM)
+         * @return this {@link Builder}
+         */
+        public Builder nodeFactory(Supplier<? extends NodeFactory> nodeFactory)
+        {
+            this.nodeFactory = nodeFactory;
+            return this;
+        }
+
+        /**
+         * @param internNames
+         *            <code>true</code> to share one canonical instance of each
+         *            element- and attribute-name and namespace-URI between
+         *            all nodes built by a parser, which saves memory for
+         *            large documents with many prefixed names (default is
+         *            <code>false</code>, for the default instance used by
+         *            {@link XPathUtils#getRootElement(InputStream)} it can be
+         *            enabled with the system-property
+         *            <code>xpath-utils.internNames=true</code>)
+         * @return this {@link Builder}
+         */
+        public Builder internNames(boolean internNames)
+        {
+            this.internNames = internNames;
+            return this;
+        }
+
+        /**
+         * @param stripWhitespace
+         *            <code>true</code> to drop the whitespace-only text between
+         *            elements (e.g. the indentation of pretty-printed xml)
+         *            and to merge adjacent text while parsing (default is
+         *            <code>false</code>). This roughly halves the nodes of
+         *            pretty-printed xml, so less memory is needed and every
+         *            xPath-step has less children to scan. Text of elements
+         *            without child-elements and text in scope of
+         *            <code>xml:space="preserve"</code> is kept, but the
+         *            string-value of an element with child-elements does not
+         *            contain the dropped whitespace any more
+         * @return this {@link Builder}
+         */
+        public Builder stripWhitespace(boolean stripWhitespace)
+        {
+            this.stripWhitespace = stripWhitespace;
+            return this;
+        }
+
+        /**
+         * @param pruneUnusedNodes
+         *            <code>true</code> to drop all subtrees while parsing that
+         *            are not needed to unmarshal the requested type (see
+         *            {@link XPathUnmarshaller#newPruningNodeFactory(Class)}),
+         *            which reduces the memory needed for large documents of
+         *            which only a small part is mapped (default is
+         *            <code>false</code>)
+         * @return this {@link Builder}
+         */
+        public Builder pruneUnusedNodes(boolean pruneUnusedNodes)
+        {
+            this.pruneUnusedNodes = pruneUnusedNodes;
+            return this;
+        }
+
+        /**
+         * @param earlyTermination
+         *            <code>true</code> to stop parsing as soon as the values
+         *            of all annotated fields of the requested type are found,
+         *            so the rest of the input is not read (default is
+         *            <code>false</code>). This is only possible for types of
+         *            which all fields are annotated with {@link XPathFirst}
+         *            with a simple location-path without positions (like
+         *            <code>header/id</code> or <code>header/@version</code>),
+         *            other types are parsed completely as before. A missing
+         *            value is only known at the end, so for a header that is
+         *            mapped by a sub-type the parsing stops after the
+         *            header-element even if some of its values are missing.
+         *            The rest of the input is not validated either
+         * @return this {@link Builder}
+         */
+        public Builder earlyTermination(boolean earlyTermination)
+        {
+            this.earlyTermination = earlyTermination;
+            return this;
+        }
+
+        /**
+         * @param memoryMappingThreshold
+         *            the size in bytes from which {@link File}s are read
+         *            memory-mapped (in chunks) instead of by a buffered
+         *            stream, which saves copies and page-cache churn for large
+         *            local files, must not be negative (default is
+         *            {@link Long#MAX_VALUE}, files are never mapped). A mapped
+         *            chunk is only unmapped when it is garbage-collected, not
+         *            when the parsing is finished: until then a file can not
+         *            be deleted or renamed on Windows, and truncating it can
+         *            crash the JVM
+         * @return this {@link Builder}
+         */
+        public Builder memoryMappingThreshold(long memoryMappingThreshold)
+        {
+            if (memoryMappingThreshold < 0)
+            {
+                throw new IllegalArgumentException("memoryMappingThreshold must not be negative, but was " + memoryMappingThreshold);
+            }
+            this.memoryMappingThreshold = memoryMappingThreshold;
+            return this;
+        }
+
+        /**
+         * @param parserPooling
+         *            how to reuse the parsers between documents (default is
+         *            {@link ParserPooling#THREAD_LOCAL})
+         * @return this {@link Builder}
+         */
+        public Builder parserPooling(ParserPooling parserPooling)
+        {
+            this.parserPooling = parserPooling;
+            return this;
+        }
+
+        /**
+         * @param maximumPooledParsers
+         *            the maximum number of idle parsers kept for
+         *            {@link ParserPooling#BOUNDED} and for virtual threads
+         *            with {@link ParserPooling#THREAD_LOCAL} (default is the
+         *            number of available processors), must be positive
+         * @return this {@link Builder}
+         */
+        public Builder maximumPooledParsers(int maximumPooledParsers)
+        {
+            if (maximumPooledParsers < 1)
+            {
+                throw new IllegalArgumentException("maximumPooledParsers must be positive, but was " + maximumPooledParsers);
+            }
+            this.maximumPooledParsers = maximumPooledParsers;
+            return this;
+        }
+
+        /**
+         * @param parallelListThreshold
+         *            the minimum number of values from which a parallel list
+         *            (see {@link XPathList#parallel()}) is converted and
+         *            unmarshalled in parallel, smaller lists are processed
+         *            sequentially because splitting them costs more than it
+         *            saves (default is
+         *            {@link XPathUnmarshaller#DEFAULT_PARALLEL_LIST_THRESHOLD}),
+         *            must be positive
+         * @return this {@link Builder}
+         */
+        public Builder parallelListThreshold(int parallelListThreshold)
+        {
+            if (parallelListThreshold < 1)
+            {
+                throw new IllegalArgumentException("parallelListThreshold must be positive, but was " + parallelListThreshold);
+            }
+            this.parallelListThreshold = parallelListThreshold;
+            return this;
+        }
+
+        /**
+         * @param forkJoinPool
+         *            the {@link ForkJoinPool} to process parallel lists and to
+         *            unmarshal with fork-join (default is the
+         *            {@link ForkJoinPool#commonPool() common pool})
+         * @return this {@link Builder}
+         */
+        public Builder forkJoinPool(ForkJoinPool forkJoinPool)
+        {
+            this.forkJoinPool = forkJoinPool;
+            return this;
+        }
+
+        /**
+         * @param forkJoinUnmarshalling
+         *            <code>true</code> to unmarshal each {@link Element} in the
+         *            {@link #forkJoinPool(ForkJoinPool) ForkJoinPool}, where
+         *            the independent branches of large subtrees (sub-type
+         *            fields, list-elements and map-keys and -values of
+         *            sub-types) are unmarshalled as forked tasks, so a single
+         *            large document with deep and wide object-graphs is
+         *            unmarshalled by all workers of the pool (default is
+         *            <code>false</code>). Subtrees smaller than the
+         *            {@link #forkJoinThreshold(int)} are unmarshalled on the
+         *            current worker. Sub-types are unmarshalled by
+         *            reflection then, not by classes generated at runtime or
+         *            at compile-time, and the unmarshalled types and {@link Function
+         *            Converter}s must be thread-safe
+         * @return this {@link Builder}
+         */
+        public Builder forkJoinUnmarshalling(boolean forkJoinUnmarshalling)
+        {
+            this.forkJoinUnmarshalling = forkJoinUnmarshalling;
+            return this;
+        }
+
+        /**
+         * @param forkJoinThreshold
+         *            the minimum number of nodes of a subtree from which its
+         *            branches are unmarshalled as forked tasks with
+         *            {@link #forkJoinUnmarshalling(boolean)} (default is
+         *            {@link XPathUnmarshaller#DEFAULT_FORK_JOIN_THRESHOLD}),
+         *            must be positive
+         * @return this {@link Builder}
+         */
+        public Builder forkJoinThreshold(int forkJoinThreshold)
+        {
+            if (forkJoinThreshold < 1)
+            {
+                throw new IllegalArgumentException("forkJoinThreshold must be positive, but was " + forkJoinThreshold);
+            }
+            this.forkJoinThreshold = forkJoinThreshold;
+            return this;
+        }
+
+        /**
+         * @param fieldEvaluationExecutor
+         *            the {@link Executor} to evaluate the fields of a single
+         *            unmarshalled type in parallel with, <code>null</code> to
+         *            evaluate them one after another (default). Only types
+         *            whose fields together reach the
+         *            {@link #parallelFieldCostThreshold(int)} are evaluated in
+         *            parallel, the expensive fields (like
+         *            <code>//item</code>) by the {@link Executor} and the
+         *            cheap ones by the calling thread. Sub-types are
+         *            unmarshalled by reflection then, not by classes generated
+         *            at runtime or at compile-time, and the unmarshalled types and
+         *            {@link Function Converter}s must be thread-safe
+         * @return this {@link Builder}
+         */
+        public Builder parallelFieldEvaluation(Executor fieldEvaluationExecutor)
+        {
+            this.fieldEvaluationExecutor = fieldEvaluationExecutor;
+            return this;
+        }
+
+        /**
+         * @param parallelFieldCostThreshold
+         *            the minimum estimated cost of all fields of a type from
+         *            which they are evaluated in parallel with
+         *            {@link #parallelFieldEvaluation(Executor)} (default is
+         *            {@link XPathUnmarshaller#DEFAULT_PARALLEL_FIELD_COST_THRESHOLD}),
+         *            must be positive
+         * @return this {@link Builder}
+         */
+        public Builder parallelFieldCostThreshold(int parallelFieldCostThreshold)
+        {
+            if (parallelFieldCostThreshold < 1)
+            {
+                throw new IllegalArgumentException("parallelFieldCostThreshold must be positive, but was " + parallelFieldCostThreshold);
+            }
+            this.parallelFieldCostThreshold = parallelFieldCostThreshold;
+            return this;
+        }
+
+        /**
+         * @param singleTraversalUnmarshalling
+         *            <code>true</code> to find the {@link Node}s of all
+         *            annotated fields of a type in one traversal of the
+         *            {@link Element} instead of one traversal per field
+         *            (default is <code>false</code>). The simple paths of the
+         *            fields (like <code>header/id</code>,
+         *            <code>item[2]/@id</code> or <code>items/item</code>) and
+         *            relative descendant-paths (like <code>.//item</code>)
+         *            are merged into a tree of their steps, so shared steps
+         *            are matched once and each subtree is visited at most
+         *            once (see {@link XPathQueryBatch}). Other xPath-queries
+         *            are still executed per field. Types are unmarshalled by
+         *            reflection then, not by classes generated at runtime or
+         *            at compile-time
+         * @return this {@link Builder}
+         */
+        public Builder singleTraversalUnmarshalling(boolean singleTraversalUnmarshalling)
+        {
+            this.singleTraversalUnmarshalling = singleTraversalUnmarshalling;
+            return this;
+        }
+
+        /**
+         * @return new {@link XPathUnmarshaller} with the settings of this
+         *         {@link Builder}
+         */
+        public XPathUnmarshaller build()
+        {
+            return new XPathUnmarshaller(this);
+        }
+    }
+}
@@ -2,26 +2,26 @@ package com.avides.xpath.utils;
 
 import static java.util.stream.Collectors.toList;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import com.avides.xpath.utils.converters.NoneConverter;
 import com.avides.xpath.utils.converters.ToBooleanConverter;
 import com.avides.xpath.utils.converters.ToCharacterConverter;
@@ -35,13 +35,11 @@ import com.avides.xpath.utils.converters.ToLongConverter;
 import com.avides.xpath.utils.converters.ToShortConverter;
 import com.avides.xpath.utils.converters.ToZonedDateTimeConverter;
 
-import nu.xom.Builder;
-import nu.xom.Document;
 import nu.xom.Element;
 import nu.xom.Node;
 import nu.xom.Nodes;
 import nu.xom.ParsingException;
-import nu.xom.ValidityException;
+import nu.xom.XPathContext;
 
 /**
  * Utility-class for simple access to xml-nodes via xPath-queries containing
@@ -55,9 +53,7 @@ import nu.xom.ValidityException;
  */
 public abstract class XPathUtils
 {
-    private static final Logger log = LoggerFactory.getLogger(XPathUtils.class);
-
-    private static final Map<Class<? extends Function<String, ?>>, Function<String, ?>> converterCache = new HashMap<>(256);
+    private static final XPathExpressionCache expressionCache = new XPathExpressionCache(XPathExpressionCache.DEFAULT_MAXIMUM_SIZE);
 
     private XPathUtils()
     {
@@ -78,7 +74,7 @@ public abstract class XPathUtils
      */
     public static Element getRootElement(InputStream inputStream) throws ParsingException
     {
-        return buildElement(inputStream, input -> new Builder().build(input)).getRootElement();
+        return XPathUnmarshaller.getInstance().getParser().getRootElement(inputStream);
     }
 
     /**
@@ -95,7 +91,7 @@ public abstract class XPathUtils
      */
     public static Element getRootElement(Reader reader) throws ParsingException
     {
-        return buildElement(reader, input -> new Builder().build(input)).getRootElement();
+        return XPathUnmarshaller.getInstance().getParser().getRootElement(reader);
     }
 
     /**
@@ -112,7 +108,7 @@ public abstract class XPathUtils
      */
     public static Element getRootElement(File file) throws ParsingException
     {
-        return buildElement(file, input -> new Builder().build(input)).getRootElement();
+        return XPathUnmarshaller.getInstance().getParser().getRootElement(file);
     }
 
     /**
@@ -129,7 +125,125 @@ public abstract class XPathUtils
      */
     public static Element getRootElement(String xml) throws ParsingException
     {
-        return getRootElement(new ByteArrayInputStream(xml.getBytes()));
+        return XPathUnmarshaller.getInstance().getParser().getRootElement(xml);
+    }
+
+    /**
+     * Builds an {@link Element} of the remaining bytes of the given
+     * {@link ByteBuffer} (heap or direct), without copying them first, on
+     * which further xPath-operations can be executed. The position of the
+     * {@link ByteBuffer} is not changed
+     *
+     * @param buffer
+     *            the {@link ByteBuffer} to build the {@link Element} from
+     * @return the resulting {@link Element}
+     * @throws ParsingException
+     *             if the {@link Element} can not be build
+     *
+     * @since 2.2.0
+     */
+    public static Element getRootElement(ByteBuffer buffer) throws ParsingException
+    {
+        return XPathUnmarshaller.getInstance().getRootElement(buffer);
+    }
+
+    /**
+     * Builds an {@link Element} of a slice of the given byte-array, without
+     * copying it first, on which further xPath-operations can be executed
+     *
+     * @param bytes
+     *            the byte-array containing the xml
+     * @param offset
+     *            the index of the first byte of the xml
+     * @param length
+     *            the number of bytes of the xml
+     * @return the resulting {@link Element}
+     * @throws ParsingException
+     *             if the {@link Element} can not be build
+     *
+     * @since 2.2.0
+     */
+    public static Element getRootElement(byte[] bytes, int offset, int length) throws ParsingException
+    {
+        return XPathUnmarshaller.getInstance().getRootElement(bytes, offset, length);
+    }
+
+    /**
+     * Builds an {@link Element} of the given {@link ReadableByteChannel} on
+     * which further xPath-operations can be executed
+     *
+     * @param channel
+     *            the {@link ReadableByteChannel} to build the {@link Element}
+     *            from
+     * @return the resulting {@link Element}
+     * @throws ParsingException
+     *             if the {@link Element} can not be build
+     *
+     * @since 2.2.0
+     */
+    public static Element getRootElement(ReadableByteChannel channel) throws ParsingException
+    {
+        return XPathUnmarshaller.getInstance().getRootElement(channel);
+    }
+
+    /**
+     * Builds an {@link Element} of the given {@link File} asynchronously. The
+     * {@link File} is read by an
+     * {@link java.nio.channels.AsynchronousFileChannel}, so no thread waits for
+     * the I/O, the parsing is done by the given {@link Executor}. A
+     * {@link File} too large for one buffer is read by the {@link Executor}
+     *
+     * @param file
+     *            the {@link File} to build the {@link Element} from
+     * @param executor
+     *            the {@link Executor} to parse with
+     * @return {@link CompletableFuture} of the resulting {@link Element},
+     *         completed exceptionally with a {@link ParsingException} if the
+     *         {@link Element} can not be build
+     *
+     * @since 2.2.0
+     */
+    public static CompletableFuture<Element> getRootElementAsync(File file, Executor executor)
+    {
+        return XPathUnmarshaller.getInstance().getRootElementAsync(file, executor);
+    }
+
+    /**
+     * Builds an {@link Element} of the given {@link InputStream} asynchronously
+     * by the given {@link Executor}
+     *
+     * @param inputStream
+     *            the {@link InputStream} to build the {@link Element} from
+     * @param executor
+     *            the {@link Executor} to read and parse with
+     * @return {@link CompletableFuture} of the resulting {@link Element},
+     *         completed exceptionally with a {@link ParsingException} if the
+     *         {@link Element} can not be build
+     *
+     * @since 2.2.0
+     */
+    public static CompletableFuture<Element> getRootElementAsync(InputStream inputStream, Executor executor)
+    {
+        return XPathUnmarshaller.getInstance().getRootElementAsync(inputStream, executor);
+    }
+
+    /**
+     * Builds an {@link Element} of the given {@link Reader} asynchronously by
+     * the given {@link Executor}
+     *
+     * @param reader
+     *            the {@link Reader} to build the {@link Element} from
+     * @param executor
+     *            the {@link Executor} to read and parse with
+     * @return {@link CompletableFuture} of the resulting {@link Element},
+     *         completed exceptionally with a {@link ParsingException} if the
+     *         {@link Element} can not be build
+     *
+     * @since 2.2.0
+     */
+    public static CompletableFuture<Element> getRootElementAsync(Reader reader, Executor executor)
+    {
+        return XPathUnmarshaller.getInstance().getRootElementAsync(reader, executor);
     }
 
     /**
@@ -276,7 +390,129 @@ public abstract class XPathUtils
     }
 
     /**
-     * Alias for {@link Node#query(String)}
+     * Unmarshals the remaining bytes of the given {@link ByteBuffer} (heap or
+     * direct) to a new instance of the given {@link Class}, without copying
+     * them first
+     *
+     * @param <T>
+     *            the type of the resulting new instance, determined by the
+     *            given {@link Class}
+     * @param buffer
+     *            the {@link ByteBuffer} to be unmarshalled
+     * @param type
+     *            the {@link Class} of the wanted new instance
+     * @return a new instance of the given {@link Class}, unmarshalled from the
+     *         given {@link ByteBuffer}
+     * @throws ParsingException
+     *             if the {@link ByteBuffer} can not be parsed (invalid xml)
+     *
+     * @since 2.2.0
+     *
+     * @see XPathUnmarshaller#unmarshal(ByteBuffer, Class)
+     */
+    public static <T> T fromByteBuffer(ByteBuffer buffer, Class<T> type) throws ParsingException
+    {
+        return XPathUnmarshaller.getInstance().unmarshal(buffer, type);
+    }
+
+    /**
+     * Unmarshals a slice of the given byte-array to a new instance of the given
+     * {@link Class}, without copying it first
+     *
+     * @param <T>
+     *            the type of the resulting new instance, determined by the
+     *            given {@link Class}
+     * @param bytes
+     *            the byte-array containing the xml
+     * @param offset
+     *            the index of the first byte of the xml
+     * @param length
+     *            the number of bytes of the xml
+     * @param type
+     *            the {@link Class} of the wanted new instance
+     * @return a new instance of the given {@link Class}, unmarshalled from the
+     *         given bytes
+     * @throws ParsingException
+     *             if the bytes can not be parsed (invalid xml)
+     *
+     * @since 2.2.0
+     *
+     * @see XPathUnmarshaller#unmarshal(byte[], int, int, Class)
+     */
+    public static <T> T fromBytes(byte[] bytes, int offset, int length, Class<T> type) throws ParsingException
+    {
+        return XPathUnmarshaller.getInstance().unmarshal(bytes, offset, length, type);
+    }
+
+    /**
+     * Unmarshals the given {@link ReadableByteChannel} to a new instance of the
+     * given {@link Class}
+     *
+     * @param <T>
+     *            the type of the resulting new instance, determined by the
+     *            given {@link Class}
+     * @param channel
+     *            the {@link ReadableByteChannel} to be unmarshalled
+     * @param type
+     *            the {@link Class} of the wanted new instance
+     * @return a new instance of the given {@link Class}, unmarshalled from the
+     *         given {@link ReadableByteChannel}
+     * @throws ParsingException
+     *             if the {@link ReadableByteChannel} can not be parsed
+     *             (invalid xml)
+     *
+     * @since 2.2.0
+     *
+     * @see XPathUnmarshaller#unmarshal(ReadableByteChannel, Class)
+     */
+    public static <T> T fromChannel(ReadableByteChannel channel, Class<T> type) throws ParsingException
+    {
+        return XPathUnmarshaller.getInstance().unmarshal(channel, type);
+    }
+
+    /**
+     * Unmarshals each record of the given {@link InputStream} that matches the
+     * given record-path to a new instance of the given {@link Class}, while the
+     * returned {@link Stream} is consumed. Only one record at a time is built
+     * as {@link Element}, so even huge xml can be unmarshalled with constant
+     * memory. The {@link Stream} should be closed after use, the
+     * {@link InputStream} is not closed
+     *
+     * <pre>
+     * try (Stream&lt;Item&gt; items = XPathUtils.stream(inputStream, "/feed/items/item", Item.class))
+     * {
+     *     items.forEach(item -&gt; ...);
+     * }
+     * </pre>
+     *
+     * @param <T>
+     *            the type of the resulting new instances, determined by the
+     *            given {@link Class}
+     * @param inputStream
+     *            the {@link InputStream} to unmarshal from
+     * @param recordPath
+     *            the path of the record-elements, like
+     *            <code>/feed/items/item</code> (from the root-element) or
+     *            <code>item</code> (at any depth)
+     * @param type
+     *            the {@link Class} of the wanted new instances
+     * @return a lazy {@link Stream} of new instances of the given
+     *         {@link Class}, one per record
+     * @throws ParsingException
+     *             if the {@link InputStream} can not be read as xml
+     *
+     * @since 2.2.0
+     *
+     * @see XPathUnmarshaller#stream(InputStream, String, Class)
+     */
+    public static <T> Stream<T> stream(InputStream inputStream, String recordPath, Class<T> type) throws ParsingException
+    {
+        return XPathUnmarshaller.getInstance().stream(inputStream, recordPath, type);
+    }
+
+    /**
+     * Same as {@link Node#query(String)}, but the xPath-query is only compiled
+     * once and then taken from the {@link #getExpressionCache() cache}
      *
      * @param root
      *            the {@link Node} to execute the given xPath-query on
@@ -290,7 +526,43 @@ public abstract class XPathUtils
      */
     public static Nodes queryNodes(Node root, String xPath)
     {
-        return root.query(xPath);
+        return queryNodes(root, xPath, null);
+    }
+
+    /**
+     * Same as {@link Node#query(String, XPathContext)}, but the xPath-query is
+     * only compiled once per {@link XPathContext} and then taken from the
+     * {@link #getExpressionCache() cache}
+     *
+     * @param root
+     *            the {@link Node} to execute the given xPath-query on
+     * @param xPath
+     *            the xPath-query to execute on the given {@link Node}
+     * @param context
+     *            the {@link XPathContext} to resolve namespace-prefixes with,
+     *            can be <code>null</code>
+     * @return the found {@link Nodes}
+     *
+     * @since 2.2.0
+     *
+     * @see Node#query(String, XPathContext)
+     */
+    public static Nodes queryNodes(Node root, String xPath, XPathContext context)
+    {
+        return expressionCache.get(xPath, context).select(root);
+    }
+
+    /**
+     * Returns the cache of compiled xPath-queries used by all query-methods,
+     * e.g. to monitor its hit-, miss- and eviction-counters
+     *
+     * @return the cache of compiled xPath-queries
+     *
+     * @since 2.2.0
+     */
+    public static XPathExpressionCache getExpressionCache()
+    {
+        return expressionCache;
     }
 
     /**
@@ -329,9 +601,73 @@ public abstract class XPathUtils
     public static List<Node> queryNodeList(Node root, String xPath)
     {
         List<Node> nodeList = new ArrayList<>();
-        for (Node node : each(root, xPath))
+        iterate(root, xPath).forEachRemaining(nodeList::add);
+        return nodeList;
+    }
+
+    /**
+     * Executes the given xPath-query on the given {@link Node} lazily and
+     * returns an {@link Iterator} of the found {@link Node}s in document-order.
+     * For simple paths (like <code>list/value</code>) and descendant-paths
+     * (like <code>//item</code>) the {@link Node}s are found while iterating,
+     * so an iteration that stops early does not pay for all matches, all other
+     * xPath-queries are executed completely first. The tree must not be
+     * changed while iterating, in contrast to {@link #each(Node, String)}
+     *
+     * @param root
+     *            the {@link Node} to execute the given xPath-query from
+     * @param xPath
+     *            the xPath-query to execute on the given {@link Node}
+     * @return {@link Iterator} of the found {@link Node}s, will never be
+     *         <code>null</code>
+     *
+     * @since 2.2.0
+     */
+    public static Iterator<Node> iterate(Node root, String xPath)
+    {
+        return expressionCache.get(xPath, null).iterate(root);
+    }
+
+    /**
+     * Executes the given xPath-query on the given {@link Node} and returns a
+     * page of the found {@link Nodes} as a {@link List} of {@link Node}. The
+     * {@link Node}s before the page are skipped and the query stops after the
+     * page if possible (see {@link #iterate(Node, String)})
+     *
+     * @param root
+     *            the {@link Node} to execute the given xPath-query from
+     * @param xPath
+     *            the xPath-query to execute on the given {@link Node}
+     * @param offset
+     *            the number of found {@link Node}s to skip, must not be
+     *            negative
+     * @param limit
+     *            the maximum number of {@link Node}s to return, must not be
+     *            negative
+     * @return the found {@link Node}s from the given offset, at most the given
+     *         limit, will never be <code>null</code>
+     *
+     * @since 2.2.0
+     */
+    public static List<Node> queryNodeList(Node root, String xPath, int offset, int limit)
+    {
+        if (offset < 0)
+        {
+            throw new IllegalArgumentException("offset must not be negative, but was " + offset);
+        }
+        if (limit < 0)
+        {
+            throw new IllegalArgumentException("limit must not be negative, but was " + limit);
+        }
+        List<Node> nodeList = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<Node> nodes = iterate(root, xPath);
+        for (int skipped = 0; (skipped < offset) && nodes.hasNext(); skipped++)
+        {
+            nodes.next();
+        }
+        while ((nodeList.size() < limit) && nodes.hasNext())
         {
-            nodeList.add(node);
+            nodeList.add(nodes.next());
         }
         return nodeList;
     }
@@ -354,17 +690,15 @@ public abstract class XPathUtils
     public static List<Element> queryElementList(Node root, String xPath)
     {
         List<Element> elementList = new ArrayList<>();
-        for (Node node : each(root, xPath))
-        {
-            elementList.add((Element) node);
-        }
+        iterate(root, xPath).forEachRemaining(node -> elementList.add((Element) node));
         return elementList;
     }
 
     /**
      * Executes the given xPath-query on the given {@link Node} and returns the
      * first found {@link Node} or <code>null</code> if no {@link Nodes} were
-     * found
+     * found. Simple paths (like <code>map/entry</code>) and descendant-paths
+     * (like <code>//item</code>) stop at the first match
      *
      * @param root
      *            the {@link Node} to execute the given xPath-query from
@@ -377,8 +711,7 @@ public abstract class XPathUtils
      */
     public static Node queryFirstNode(Node root, String xPath)
     {
-        Nodes nodes = queryNodes(root, xPath);
-        return (hasNodes(nodes)) ? nodes.get(0) : null;
+        return expressionCache.get(xPath, null).selectFirst(root);
     }
 
     /**
@@ -421,6 +754,30 @@ public abstract class XPathUtils
         return node != null ? node.getValue() : null;
     }
 
+    /**
+     * Executes all given xPath-queries on the given {@link Node} and returns
+     * the first found value of each. Simple paths (like <code>header/id</code>
+     * or <code>item[2]/@id</code>) and relative descendant-paths (like
+     * <code>.//item</code>) are answered together in one traversal of the
+     * tree, all others one by one. To execute the same xPath-queries on many
+     * {@link Node}s, create the {@link XPathQueryBatch} once instead
+     *
+     * @param root
+     *            the {@link Node} to execute the given xPath-queries from
+     * @param xPathsByName
+     *            the xPath-queries to execute by the names of their results
+     * @return the first found value by the name of each xPath-query, with a
+     *         <code>null</code> value if nothing was found
+     *
+     * @since 2.2.0
+     *
+     * @see XPathQueryBatch
+     */
+    public static Map<String, String> queryAll(Node root, Map<String, String> xPathsByName)
+    {
+        return XPathQueryBatch.of(xPathsByName).queryFirst(root);
+    }
+
     /**
      * Executes the given xPath-query on the given {@link Node} and returns the
      * first found value converted by the given {@link Function Converter} or
@@ -448,7 +805,8 @@ public abstract class XPathUtils
 
     /**
      * Tests, if the given xPath-query on the given {@link Node} results to an
-     * existing {@link Node}
+     * existing {@link Node}. The evaluation stops at the first found
+     * {@link Node} if possible, its value is never built
      *
      * @param root
      *            the {@link Node} to execute the given xPath-query from
@@ -460,7 +818,26 @@ public abstract class XPathUtils
      */
     public static boolean hasNode(Node root, String xPath)
     {
-        return queryFirst(root, xPath) != null;
+        return expressionCache.get(xPath, null).exists(root);
+    }
+
+    /**
+     * Tests, if the given xPath-query scans whole subtrees or axes (like
+     * <code>//item</code> or <code>following::item</code>), so its evaluation
+     * is much more expensive than a path of child-steps (like
+     * <code>order/item</code>)
+     *
+     * @param xPath
+     *            the xPath-query to test
+     * @return true if the xPath-query scans, false if not
+     * @throws nu.xom.XPathException
+     *             if the xPath-query is not valid
+     *
+     * @since 2.2.0
+     */
+    public static boolean isScanning(String xPath)
+    {
+        return expressionCache.get(xPath, null).isScanning();
     }
 
     /**
@@ -1008,10 +1385,36 @@ public abstract class XPathUtils
     public static List<String> queryList(Node root, String xPath)
     {
         List<String> list = new ArrayList<>();
-        each(root, xPath).forEach(node -> list.add(node.getValue()));
+        iterate(root, xPath).forEachRemaining(node -> list.add(node.getValue()));
         return list;
     }
 
+    /**
+     * Executes the given xPath-query on the given {@link Node} and returns a
+     * page of the found values. The values before the page are skipped without
+     * being built and the query stops after the page if possible (see
+     * {@link #iterate(Node, String)})
+     *
+     * @param root
+     *            the {@link Node} to execute the given xPath-query from
+     * @param xPath
+     *            the xPath-query to execute on the given {@link Node}
+     * @param offset
+     *            the number of found values to skip, must not be negative
+     * @param limit
+     *            the maximum number of values to return, must not be negative
+     * @return a {@link List} of the found values from the given offset, at
+     *         most the given limit, will never be <code>null</code>
+     *
+     * @since 2.2.0
+     *
+     * @see #queryNodeList(Node, String, int, int)
+     */
+    public static List<String> queryList(Node root, String xPath, int offset, int limit)
+    {
+        return queryNodeList(root, xPath, offset, limit).stream().map(Node::getValue).collect(toList());
+    }
+
     /**
      * Executes the given xPath-query on the given {@link Node} and returns a
      * {@link List} of the found values converted by the given {@link Function
@@ -1073,17 +1476,44 @@ public abstract class XPathUtils
      */
     public static <T> List<T> queryList(Node root, String xPath, Class<? extends Function<String, T>> converterClass, Class<T> subType)
     {
-        if ((subType != null) && (subType != String.class))
-        {
-            List<Node> nodeList = XPathUtils.queryNodeList(root, xPath);
-            List<T> values = new ArrayList<>(nodeList.size());
-            for (Node node : nodeList)
-            {
-                values.add(unmarshallSubType(node, subType));
-            }
-            return values;
-        }
-        return queryList(root, xPath, converterClass);
+        return XPathUnmarshaller.getInstance().queryList(root, xPath, converterClass, subType);
+    }
+
+    /**
+     * Same as {@link #queryList(Node, String, Class, Class)}, but if parallel,
+     * large lists are converted or unmarshalled in parallel on the
+     * {@link java.util.concurrent.ForkJoinPool#commonPool() common pool},
+     * keeping the order of the found {@link Node}s
+     *
+     * @param <T>
+     *            the type of the resulting list-items, determined by the given
+     *            {@link Function Converter} or {@link Class}
+     * @param root
+     *            the {@link Node} to execute the given xPath-query from
+     * @param xPath
+     *            the xPath-query to execute on the given {@link Node}
+     * @param converterClass
+     *            the {@link Function Converter} (given by the {@link Class}) to
+     *            convert the values with
+     * @param subType
+     *            the {@link Class} to unmarshall the values to
+     * @param parallel
+     *            <code>true</code> to convert and unmarshal lists of at least
+     *            {@link XPathUnmarshaller#DEFAULT_PARALLEL_LIST_THRESHOLD}
+     *            values in parallel
+     * @return a {@link List} of the found values converted by the given
+     *         {@link Function Converter}, or a {@link List} of the given
+     *         {@link Class subType}, if a {@link Class subType is given}. Will
+     *         never be <code>null</code>
+     *
+     * @since 2.2.0
+     *
+     * @see XPathUnmarshaller#queryList(Node, String, Class, Class, boolean)
+     */
+    public static <T> List<T> queryList(Node root, String xPath, Class<? extends Function<String, T>> converterClass, Class<T> subType,
+        boolean parallel)
+    {
+        return XPathUnmarshaller.getInstance().queryList(root, xPath, converterClass, subType, parallel);
     }
 
     /**
@@ -1276,25 +1706,8 @@ public abstract class XPathUtils
         Class<? extends Function<String, K>> keyConverterClass, Class<? extends Function<String, V>> valueConverterClass, Class<K> keySubType,
         Class<V> valueSubType)
     {
-        Map<Node, Node> nodeMap = queryNodeMap(root, entryXPath, keySubXPath, valueSubXPath);
-        Map<K, V> map = new HashMap<>(nodeMap.size());
-        Function<String, K> keyConverter = null;
-        Function<String, V> valueConverter = null;
-        if (((keySubType == null) || (keySubType == String.class)) && (keyConverterClass != null))
-        {
-            keyConverter = getConverter(keyConverterClass);
-        }
-        if (((valueSubType == null) || (keySubType == String.class)) && (valueConverterClass != null))
-        {
-            valueConverter = getConverter(valueConverterClass);
-        }
-        for (Entry<Node, Node> entry : nodeMap.entrySet())
-        {
-            K key = unmarshallOrConvert(entry.getKey(), keySubType, keyConverter);
-            V value = unmarshallOrConvert(entry.getValue(), valueSubType, valueConverter);
-            map.put(key, value);
-        }
-        return map;
+        return XPathUnmarshaller.getInstance()
+            .queryMap(root, entryXPath, keySubXPath, valueSubXPath, keyConverterClass, valueConverterClass, keySubType, valueSubType);
     }
 
     /**
@@ -1525,10 +1938,9 @@ public abstract class XPathUtils
      *
      * @since 1.0.2.RELEASE
      */
-    @SuppressWarnings("unchecked")
     public static void registerConverterInstance(Function<String, ?> converter)
     {
-        converterCache.put((Class<? extends Function<String, ?>>) converter.getClass(), converter);
+        XPathUnmarshaller.getInstance().registerConverterInstance(converter);
     }
 
     /**
@@ -1543,7 +1955,7 @@ public abstract class XPathUtils
      */
     public static void unregisterConverterInstance(Class<? extends Function<String, ?>> converterClass)
     {
-        converterCache.remove(converterClass);
+        XPathUnmarshaller.getInstance().unregisterConverterInstance(converterClass);
     }
 
     /**
@@ -1553,7 +1965,7 @@ public abstract class XPathUtils
      */
     public static void clearConverterInstances()
     {
-        converterCache.clear();
+        XPathUnmarshaller.getInstance().clearConverterInstances();
     }
 
     /**
@@ -1610,72 +2022,23 @@ public abstract class XPathUtils
         XPathUnmarshaller.resetDefaultConverterInstancesToType();
     }
 
-    @SuppressWarnings("unchecked")
-    static <T> Function<String, T> getConverter(Class<? extends Function<String, T>> converterClass)
-    {
-        Function<String, T> converter = (Function<String, T>) converterCache.get(converterClass);
-        if (converter == null)
-        {
-            try
-            {
-                converter = converterClass.newInstance();
-                converterCache.put(converterClass, converter);
-            }
-            catch (InstantiationException | IllegalAccessException e)
-            {
-                log.error("could not create new instance for converter-class " + converterClass + ": " + e.getMessage(), e);
-                throw new RuntimeException(e);
-            }
-        }
-        return converter;
-    }
-
-    @SuppressWarnings("unchecked")
-    private static <T> T unmarshallOrConvert(Node node, Class<T> subType, Function<String, T> converter)
-    {
-        if (node != null)
-        {
-            if ((subType != null) && (subType != String.class))
-            {
-                return unmarshallSubType(node, subType);
-            }
-            else if (converter != null)
-            {
-                return converter.apply(node.getValue());
-            }
-            else if ((subType == null) || (subType == String.class))
-            {
-                return (T) node.getValue();
-            }
-        }
-        return null;
-    }
-
-    @SuppressWarnings(
-    { "unchecked", "rawtypes" })
-    private static <T> T unmarshallSubType(Node node, Class<T> subType)
-    {
-        if (subType.isEnum())
-        {
-            return (T) Enum.valueOf((Class<Enum>) subType, node.getValue());
-        }
-        return XPathUtils.fromRoot((Element) node, subType);
-    }
-
-    private static <T> Document buildElement(T input, ToDocumentConverter<T> converter) throws ParsingException
-    {
-        try
-        {
-            return converter.convert(input);
-        }
-        catch (IOException e)
-        {
-            throw new ParsingException("the xml can not be parsed", e);
-        }
-    }
-
-    private interface ToDocumentConverter<T>
+    /**
+     * Returns the registered or cached instance of the given
+     * {@link Function Converter}-{@link Class}, a new instance is created and
+     * cached if there is none yet
+     *
+     * @param <T>
+     *            the result-type of the {@link Function Converter}
+     * @param converterClass
+     *            the {@link Class} of the {@link Function Converter}
+     * @return the instance of the {@link Function Converter}
+     *
+     * @since 2.2.0
+     *
+     * @see #registerConverterInstance(Function)
+     */
+    public static <T> Function<String, T> getConverter(Class<? extends Function<String, T>> converterClass)
     {
-        Document convert(T input) throws IOException, ValidityException, ParsingException;
+        return XPathUnmarshaller.getInstance().getConverter(converterClass);
     }
 }
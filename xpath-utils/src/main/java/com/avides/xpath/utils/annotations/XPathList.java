@@ -46,4 +46,16 @@ public @interface XPathList
      * @return the generic-type of the list
      */
     Class<?> subTypeClass() default String.class;
+
+    /**
+     * if set to <code>true</code>, large lists (see
+     * {@link com.avides.xpath.utils.XPathUnmarshaller.Builder#parallelListThreshold(int)})
+     * are converted or unmarshalled in parallel, keeping the order of the
+     * found {@link nu.xom.Nodes Nodes}. Default: <code>false</code>
+     *
+     * @return <code>true</code> to process large lists in parallel
+     *
+     * @since 2.2.0
+     */
+    boolean parallel() default false;
 }
@@ -0,0 +1,356 @@
+package com.avides.xpath.utils.processors;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avides.xpath.utils.XPathUtils;
+import com.avides.xpath.utils.utils.FieldWriter;
+import com.avides.xpath.utils.utils.ReflectionUtils;
+
+import nu.xom.Element;
+import nu.xom.Node;
+
+/**
+ * Base-class for all processors of a single annotated {@link Field}. A
+ * processor is created once per {@link Field} (see {@link BindingPlan}) and
+ * resolves everything that does not depend on the xml (annotation-values,
+ * {@link Function Converter}s, null-values and the {@link FieldWriter}) on
+ * creation, so {@link #process(Element, Object)} can be called for any number of
+ * targets
+ *
+ * @author Martin Schumacher
+ * @since 1.0.3.RELEASE
+ */
+public abstract class AbstractAnnotationProcessor
+{
+    private static final Logger log = LoggerFactory.getLogger(AbstractAnnotationProcessor.class);
+
+    /**
+     * returned by {@link #resolveValue(Element, Object)} if the {@link Field}
+     * must not be written at all
+     */
+    protected static final Object NO_VALUE = new Object();
+
+    private static final Object NOT_MATCHING = new Object();
+
+    // relative costs of an evaluation, a scan of whole subtrees costs as much as many simple steps
+    private static final int SIMPLE_PATH_COST = 1;
+    private static final int SUB_OBJECT_COST = 4;
+    private static final int SCANNING_PATH_COST = 16;
+
+    protected final Field field;
+    private final Class<?> fieldType;
+    private final Object nullValue;
+    private final Function<String, ?> fieldTypeConverter;
+    private final FieldWriter fieldWriter;
+
+    /**
+     * @deprecated only set by the deprecated per-target constructors, use
+     *             {@link #process(Element, Object)} instead
+     */
+    @Deprecated
+    protected Element root;
+
+    /**
+     * @deprecated only set by the deprecated per-target constructors, use
+     *             {@link #process(Element, Object)} instead
+     */
+    @Deprecated
+    protected Object target;
+
+    public AbstractAnnotationProcessor(Field field, Map<Class<?>, Function<String, ?>> defaultToTypeConverters)
+    {
+        this.field = field;
+        fieldType = field.getType();
+        nullValue = fieldType.isPrimitive() ? ReflectionUtils.getNullValue(fieldType) : null;
+        fieldTypeConverter = defaultToTypeConverters.get(fieldType);
+        fieldWriter = FieldWriter.of(field);
+    }
+
+    /**
+     * @deprecated since 2.2.0 processors are created once per {@link Field}
+     *             and can be used for any number of targets, use
+     *             {@link #AbstractAnnotationProcessor(Field, Map)} and
+     *             {@link #process(Element, Object)} instead
+     */
+    @Deprecated
+    public AbstractAnnotationProcessor(Element root, Field field, Object target, Map<Class<?>, Function<String, ?>> defaultToTypeConverters)
+    {
+        this(field, defaultToTypeConverters);
+        this.root = root;
+        this.target = target;
+    }
+
+    /**
+     * Executes the xPath-query of the annotation on the root and sets the
+     * result to the {@link Field} of the target given on creation. Does
+     * nothing if the {@link Field} is not annotated with the annotation of
+     * this processor
+     *
+     * @deprecated since 2.2.0, use {@link #process(Element, Object)} instead
+     */
+    @Deprecated
+    public void process()
+    {
+        if (!isAnnotated())
+        {
+            return;
+        }
+        process(root, target);
+    }
+
+    /**
+     * @return <code>false</code> if this processor was created by a deprecated
+     *         per-target constructor for a {@link Field} without the
+     *         annotation of this processor
+     */
+    boolean isAnnotated()
+    {
+        return true;
+    }
+
+    /**
+     * Executes the xPath-query of the annotation on the given root and sets the
+     * result to the {@link Field} of the given target
+     *
+     * @param root
+     *            the {@link Element} to execute the xPath-query on
+     * @param target
+     *            the instance to set the {@link Field}-value on
+     */
+    public void process(Element root, Object target)
+    {
+        write(target, resolveValue(root, target));
+    }
+
+    /**
+     * Executes the xPath-query of the annotation on the given root and converts
+     * the result to a value that can be set to the {@link Field}
+     *
+     * @param root
+     *            the {@link Element} to execute the xPath-query on
+     * @param target
+     *            the instance the value is resolved for (only used for
+     *            error-messages)
+     * @return the value to set, assignable to the {@link Field} (boxed for
+     *         primitives), or {@link #NO_VALUE} if nothing should be set
+     */
+    public abstract Object resolveValue(Element root, Object target);
+
+    /**
+     * Sets the given value, resolved by
+     * {@link #resolveValue(Element, Object)}, to the {@link Field} of the given
+     * target
+     *
+     * @param target
+     *            the instance to set the {@link Field}-value on
+     * @param fieldValue
+     *            the resolved value
+     */
+    public void write(Object target, Object fieldValue)
+    {
+        if (fieldValue == NO_VALUE)
+        {
+            return;
+        }
+        try
+        {
+            fieldWriter.set(target, fieldValue);
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new RuntimeException("could not set value " + fieldValue + " for field " + field + " on target " + target, e);
+        }
+    }
+
+    /**
+     * Converts the given value to a value that can be set to the {@link Field},
+     * like {@link #toFieldValueExtended(Object, Object)}, but without
+     * enum-conversion
+     *
+     * @param target
+     *            the instance the value is converted for (only used for
+     *            error-messages)
+     * @param value
+     *            the value to convert
+     * @return the converted value or {@link #NO_VALUE}
+     */
+    public Object toFieldValueSimple(Object target, Object value)
+    {
+        return toFieldValue(target, value, true);
+    }
+
+    /**
+     * Converts the given value to a value that can be set to the {@link Field}:
+     * <code>null</code> is converted to the null-value of primitives,
+     * {@link String}s are converted by a registered default-{@link Function
+     * Converter} for the field-type or to an enum-constant
+     *
+     * @param target
+     *            the instance the value is converted for (only used for
+     *            error-messages)
+     * @param value
+     *            the value to convert
+     * @return the converted value or {@link #NO_VALUE}
+     */
+    @SuppressWarnings(
+    { "rawtypes", "unchecked" })
+    public Object toFieldValueExtended(Object target, Object value)
+    {
+        Object fieldValue = toFieldValue(target, value, false);
+        if (fieldValue != NOT_MATCHING)
+        {
+            return fieldValue;
+        }
+        if ((fieldType.isEnum() && String.class.isAssignableFrom(value.getClass())))
+        {
+            if (((String) value).isEmpty())
+            {
+                return null;
+            }
+            try
+            {
+                return Enum.valueOf((Class<Enum>) fieldType, (String) value);
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new RuntimeException("could not set value " + value + " for field " + field + " on target " + target, e);
+            }
+        }
+        throw new RuntimeException("could not set value " + value + " for field " + field + " on target " + target + " (field-types not matching)");
+    }
+
+    private Object toFieldValue(Object target, Object value, boolean throwExceptionIfNotMatching)
+    {
+        try
+        {
+            if (value == null)
+            {
+                if (!fieldType.isPrimitive())
+                {
+                    return null;
+                }
+                if (nullValue != null)
+                {
+                    return nullValue;
+                }
+                log.warn("no null-value for primitive byte is implemented yet, so don't set anything for field " + field + " on target " + target);
+                return NO_VALUE;
+            }
+            if (ReflectionUtils.isAssignable(fieldType, value.getClass()))
+            {
+                return value;
+            }
+            else if ((value.getClass() == String.class) && (fieldTypeConverter != null))
+            {
+                return fieldTypeConverter.apply((String) value);
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new RuntimeException("could not set value " + value + " for field " + field + " on target " + target, e);
+        }
+        if (throwExceptionIfNotMatching)
+        {
+            throw new RuntimeException(
+                "could not set value " + value + " for field " + field + " on target " + target + " (field-types not matching)");
+        }
+        return NOT_MATCHING;
+    }
+
+    /**
+     * @return <code>true</code> if the value is unmarshalled to sub-objects,
+     *         so it is an independent branch of the object-graph that can be
+     *         resolved by a forked task (see {@link BindingPlan})
+     */
+    boolean isBranch()
+    {
+        return false;
+    }
+
+    /**
+     * @return the xPath-query whose found {@link Node}s are given to
+     *         {@link #resolveValue(Element, Object, List)} when the fields of
+     *         a type are evaluated in one traversal (see {@link BindingPlan}),
+     *         <code>null</code> if the value is only resolved by
+     *         {@link #resolveValue(Element, Object)}
+     */
+    String getSelectingXPath()
+    {
+        return null;
+    }
+
+    /**
+     * @return <code>true</code> if all {@link Node}s found by the
+     *         {@link #getSelectingXPath() selecting xPath-query} are needed,
+     *         not only the first one
+     */
+    boolean isSelectingAll()
+    {
+        return false;
+    }
+
+    /**
+     * Converts the {@link Node}s found by the {@link #getSelectingXPath()
+     * selecting xPath-query} like {@link #resolveValue(Element, Object)}
+     *
+     * @param root
+     *            the {@link Element} the {@link Node}s were found from
+     * @param target
+     *            the target to resolve the value for
+     * @param nodes
+     *            the found {@link Node}s in document-order, only the first one
+     *            if not {@link #isSelectingAll()}
+     * @return the value to {@link #write(Object, Object) write}
+     */
+    Object resolveValue(Element root, Object target, List<Node> nodes)
+    {
+        return resolveValue(root, target);
+    }
+
+    /**
+     * @return the estimated relative cost of
+     *         {@link #resolveValue(Element, Object)}, used to decide if the
+     *         fields of a type are evaluated in parallel (see
+     *         {@link BindingPlan})
+     */
+    int getEvaluationCost()
+    {
+        return SIMPLE_PATH_COST;
+    }
+
+    /**
+     * @param branch
+     *            <code>true</code> if the value is unmarshalled to sub-objects
+     * @param xPaths
+     *            the xPath-queries of the evaluation
+     * @return the estimated relative cost of the evaluation, much higher for
+     *         xPath-queries scanning whole subtrees (like
+     *         <code>//item</code>) than for simple paths
+     */
+    protected static int estimateEvaluationCost(boolean branch, String... xPaths)
+    {
+        int cost = branch ? SUB_OBJECT_COST : SIMPLE_PATH_COST;
+        for (String xPath : xPaths)
+        {
+            if (XPathUtils.isScanning(xPath))
+            {
+                cost += SCANNING_PATH_COST;
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * @return the processed {@link Field}
+     */
+    public Field getField()
+    {
+        return field;
+    }
+}
@@ -0,0 +1,533 @@
+package com.avides.xpath.utils.processors;
+
+import static com.avides.xpath.utils.utils.ReflectionUtils.doWithFields;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avides.xpath.utils.XPathQueryBatch;
+import com.avides.xpath.utils.XPathUnmarshaller;
+import com.avides.xpath.utils.annotations.XPathFirst;
+import com.avides.xpath.utils.annotations.XPathList;
+import com.avides.xpath.utils.annotations.XPathMap;
+import com.avides.xpath.utils.utils.SubtreeSize;
+
+import nu.xom.Element;
+import nu.xom.Node;
+
+/**
+ * Immutable plan how to unmarshal an {@link Element} to a new instance of a
+ * specific {@link Class}. All reflection-work (walking the class-hierarchy,
+ * reading the annotations, resolving {@link Function Converter}s and the
+ * no-args-constructor) is done once on creation, so
+ * {@link #unmarshal(Element)} only executes the prepared processors
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ *
+ * @param <T>
+ *            the type of the instances created by this plan
+ */
+public final class BindingPlan<T>
+{
+    private static final Logger log = LoggerFactory.getLogger(BindingPlan.class);
+
+    private static final AbstractAnnotationProcessor[] NO_PROCESSORS =
+    {};
+
+    // set while the fields of a plan are evaluated in parallel, on the calling thread and on the executing ones
+    private static final ThreadLocal<Boolean> EVALUATING_FIELDS = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final Class<T> type;
+    private final Function<String, T> typeConverter;
+    private final Constructor<T> constructor;
+    private final AbstractAnnotationProcessor[] processors;
+    private final GeneratedUnmarshaller generatedUnmarshaller;
+    private final int forkJoinThreshold;
+    private final boolean hasBranches;
+    private final Executor fieldEvaluationExecutor;
+    private final XPathQueryBatch batch;
+    private final int[] batchQueries;
+
+    private BindingPlan(Class<T> type, Function<String, T> typeConverter, Constructor<T> constructor, AbstractAnnotationProcessor[] processors,
+            GeneratedUnmarshaller generatedUnmarshaller, int forkJoinThreshold, Executor fieldEvaluationExecutor, boolean singleTraversal)
+    {
+        this.type = type;
+        this.typeConverter = typeConverter;
+        this.constructor = constructor;
+        this.processors = processors;
+        this.generatedUnmarshaller = generatedUnmarshaller;
+        this.forkJoinThreshold = forkJoinThreshold;
+        hasBranches = Arrays.stream(processors).anyMatch(AbstractAnnotationProcessor::isBranch);
+        this.fieldEvaluationExecutor = fieldEvaluationExecutor;
+        batchQueries = new int[processors.length];
+        batch = singleTraversal ? createBatch(processors, batchQueries) : null;
+    }
+
+    /**
+     * @param batchQueries
+     *            filled with the index of the result of each processor in the
+     *            {@link XPathQueryBatch}, <code>-1</code> for processors that
+     *            resolve their values on their own
+     * @return the {@link XPathQueryBatch} of the selecting xPath-queries of
+     *         the given processors, or <code>null</code> if less than two
+     *         processors have one
+     */
+    private static XPathQueryBatch createBatch(AbstractAnnotationProcessor[] processors, int[] batchQueries)
+    {
+        List<String> firstXPaths = new ArrayList<>();
+        List<String> allXPaths = new ArrayList<>();
+        for (AbstractAnnotationProcessor processor : processors)
+        {
+            if (processor.getSelectingXPath() != null)
+            {
+                (processor.isSelectingAll() ? allXPaths : firstXPaths).add(processor.getSelectingXPath());
+            }
+        }
+        if ((firstXPaths.size() + allXPaths.size()) < 2)
+        {
+            return null;
+        }
+        int first = 0;
+        int all = firstXPaths.size();
+        for (int i = 0; i < processors.length; i++)
+        {
+            if (processors[i].getSelectingXPath() == null)
+            {
+                batchQueries[i] = -1;
+            }
+            else
+            {
+                batchQueries[i] = processors[i].isSelectingAll() ? all++ : first++;
+            }
+        }
+        return XPathQueryBatch.of(firstXPaths, allXPaths);
+    }
+
+    /**
+     * @return new {@link Settings} with the defaults: no generated
+     *         unmarshallers, no fork-join, sequential evaluation of the fields
+     *         and a traversal per field
+     */
+    public static Settings settings()
+    {
+        return new Settings();
+    }
+
+    /**
+     * Creates the plan for the given type. If an unmarshaller was generated at
+     * compile-time for the type (see {@link UnmarshallerSupport}), the plan
+     * uses it. Otherwise the plan is created optionally with a
+     * {@link GeneratedUnmarshaller} that executes the processors without
+     * reflection (see {@link UnmarshallerGenerator}). If the
+     * {@link GeneratedUnmarshaller} can not be generated for the given type,
+     * the plan unmarshals by reflection. Types unmarshalled with fork-join,
+     * parallel field evaluation or in one traversal are always unmarshalled by
+     * reflection, also if there is a compiled unmarshaller
+     *
+     * @param <T>
+     *            the type of the instances created by the plan
+     * @param type
+     *            the type of the class with the annotated fields
+     * @param unmarshaller
+     *            the {@link XPathUnmarshaller} that owns the plan, used for
+     *            the {@link Function Converter}s and sub-types of the fields
+     * @param defaultToTypeConverters
+     *            the default-{@link Function Converter}s by type to use
+     * @param settings
+     *            the {@link Settings} how to unmarshal
+     * @return the plan for the given type
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> BindingPlan<T> create(Class<T> type, XPathUnmarshaller unmarshaller, Map<Class<?>, Function<String, ?>> defaultToTypeConverters,
+        Settings settings)
+    {
+        Function<String, T> typeConverter = (Function<String, T>) defaultToTypeConverters.get(type);
+        if (typeConverter != null)
+        {
+            return new BindingPlan<>(type, typeConverter, null, NO_PROCESSORS, null, 0, null, false);
+        }
+        List<AbstractAnnotationProcessor> processors = new ArrayList<>();
+        doWithFields(type, field ->
+        {
+            XPathFirst xPathFirst = field.getAnnotation(XPathFirst.class);
+            if (xPathFirst != null)
+            {
+                processors.add(new XPathFirstProcessor(field, xPathFirst, unmarshaller, defaultToTypeConverters));
+            }
+            XPathList xPathList = field.getAnnotation(XPathList.class);
+            if (xPathList != null)
+            {
+                processors.add(new XPathListProcessor(field, xPathList, unmarshaller, defaultToTypeConverters));
+            }
+            XPathMap xPathMap = field.getAnnotation(XPathMap.class);
+            if (xPathMap != null)
+            {
+                processors.add(new XPathMapProcessor(field, xPathMap, unmarshaller, defaultToTypeConverters));
+            }
+        });
+        Constructor<T> constructor = findConstructor(type);
+        AbstractAnnotationProcessor[] processorArray = processors.toArray(NO_PROCESSORS);
+        Executor executor = (settings.fieldEvaluationExecutor != null)
+            && isEvaluatingInParallel(processorArray, settings.parallelFieldCostThreshold) ? settings.fieldEvaluationExecutor
+            : null;
+        // the sub-objects of generated unmarshallers (at compile- or runtime) can not be forked and their fields are evaluated sequentially, each
+        // by its own traversal
+        if ((settings.forkJoinThreshold > 0) || (executor != null) || settings.singleTraversal)
+        {
+            return new BindingPlan<>(type, null, constructor, processorArray, null, settings.forkJoinThreshold, executor,
+                settings.singleTraversal);
+        }
+        GeneratedUnmarshaller compiledUnmarshaller = new UnmarshallerSupport(unmarshaller, defaultToTypeConverters).findCompiledUnmarshaller(type);
+        if (compiledUnmarshaller != null)
+        {
+            return new BindingPlan<>(type, null, null, NO_PROCESSORS, compiledUnmarshaller, 0, null, false);
+        }
+        GeneratedUnmarshaller generatedUnmarshaller = settings.generateUnmarshaller ? UnmarshallerGenerator.generate(type, constructor, processorArray) : null;
+        return new BindingPlan<>(type, null, constructor, processorArray, generatedUnmarshaller, 0, null, false);
+    }
+
+    /**
+     * @return <code>true</code> if the given processors are expensive enough
+     *         and there is at least one expensive processor to evaluate next
+     *         to the others
+     */
+    private static boolean isEvaluatingInParallel(AbstractAnnotationProcessor[] processors, int costThreshold)
+    {
+        int cost = 0;
+        boolean hasExpensive = false;
+        for (AbstractAnnotationProcessor processor : processors)
+        {
+            cost += processor.getEvaluationCost();
+            hasExpensive |= isExpensive(processor);
+        }
+        return (processors.length > 1) && hasExpensive && (cost >= costThreshold);
+    }
+
+    private static boolean isExpensive(AbstractAnnotationProcessor processor)
+    {
+        return processor.getEvaluationCost() > 1;
+    }
+
+    private static <T> Constructor<T> findConstructor(Class<T> type)
+    {
+        try
+        {
+            return type.getConstructor();
+        }
+        catch (NoSuchMethodException | SecurityException e)
+        {
+            // the same exception is thrown on first unmarshal, so unannotated types without constructor can still be planned
+            return null;
+        }
+    }
+
+    /**
+     * Unmarshals the given {@link Element} to a new instance of the type of
+     * this plan
+     *
+     * @param root
+     *            {@link Element} to unmarshal from
+     * @return new instance of the type of this plan
+     */
+    @SuppressWarnings("unchecked")
+    public T unmarshal(Element root)
+    {
+        if (typeConverter != null)
+        {
+            return typeConverter.apply(root.getValue());
+        }
+        if (generatedUnmarshaller != null)
+        {
+            return (T) generatedUnmarshaller.unmarshal(root);
+        }
+
+        T target = newInstance();
+        if (isForking(root))
+        {
+            processForked(root, target);
+            return target;
+        }
+        if ((fieldEvaluationExecutor != null) && !EVALUATING_FIELDS.get().booleanValue())
+        {
+            processInParallel(root, target);
+            return target;
+        }
+        if (batch != null)
+        {
+            processInOneTraversal(root, target);
+            return target;
+        }
+        for (AbstractAnnotationProcessor processor : processors)
+        {
+            processor.process(root, target);
+        }
+        return target;
+    }
+
+    private boolean isForking(Element root)
+    {
+        return (forkJoinThreshold > 0) && hasBranches && ForkJoinTask.inForkJoinPool() && SubtreeSize.isAtLeast(root, forkJoinThreshold);
+    }
+
+    /**
+     * Resolves the values of the branches (the fields with sub-objects) as
+     * forked tasks and all other values on the current thread, the values are
+     * written in the order of the processors
+     */
+    private void processForked(Element root, T target)
+    {
+        ForkJoinTask<?>[] branches = new ForkJoinTask<?>[processors.length];
+        for (int i = 0; i < processors.length; i++)
+        {
+            AbstractAnnotationProcessor processor = processors[i];
+            if (processor.isBranch())
+            {
+                branches[i] = ForkJoinTask.adapt(() -> processor.resolveValue(root, target)).fork();
+            }
+        }
+        Object[] values = new Object[processors.length];
+        for (int i = 0; i < processors.length; i++)
+        {
+            if (branches[i] == null)
+            {
+                values[i] = processors[i].resolveValue(root, target);
+            }
+        }
+        for (int i = 0; i < processors.length; i++)
+        {
+            processors[i].write(target, branches[i] != null ? branches[i].join() : values[i]);
+        }
+    }
+
+    /**
+     * Finds the {@link Node}s of all processors with a selecting xPath-query
+     * in one traversal, all other processors resolve their values on their
+     * own
+     */
+    private void processInOneTraversal(Element root, T target)
+    {
+        List<List<Node>> nodes = batch.queryNodes(root);
+        for (int i = 0; i < processors.length; i++)
+        {
+            AbstractAnnotationProcessor processor = processors[i];
+            if (batchQueries[i] < 0)
+            {
+                processor.process(root, target);
+            }
+            else
+            {
+                processor.write(target, processor.resolveValue(root, target, nodes.get(batchQueries[i])));
+            }
+        }
+    }
+
+    /**
+     * Resolves the values of all expensive processors but the last one by the
+     * {@link Executor} and all other values on the current thread, the values
+     * are written in the order of the processors. Nested plans evaluate their
+     * fields sequentially meanwhile, so a bounded {@link Executor} can not be
+     * exhausted by tasks waiting for their own sub-tasks
+     */
+    private void processInParallel(Element root, T target)
+    {
+        int last = processors.length - 1;
+        while (!isExpensive(processors[last]))
+        {
+            last--;
+        }
+        EVALUATING_FIELDS.set(Boolean.TRUE);
+        try
+        {
+            CompletableFuture<?>[] tasks = new CompletableFuture<?>[processors.length];
+            for (int i = 0; i < last; i++)
+            {
+                AbstractAnnotationProcessor processor = processors[i];
+                if (isExpensive(processor))
+                {
+                    tasks[i] = CompletableFuture.supplyAsync(() -> resolveEvaluatingFields(processor, root, target), fieldEvaluationExecutor);
+                }
+            }
+            Object[] values = new Object[processors.length];
+            for (int i = 0; i < processors.length; i++)
+            {
+                if (tasks[i] == null)
+                {
+                    values[i] = processors[i].resolveValue(root, target);
+                }
+            }
+            for (int i = 0; i < processors.length; i++)
+            {
+                processors[i].write(target, tasks[i] != null ? join(tasks[i]) : values[i]);
+            }
+        }
+        finally
+        {
+            EVALUATING_FIELDS.set(Boolean.FALSE);
+        }
+    }
+
+    private static Object resolveEvaluatingFields(AbstractAnnotationProcessor processor, Element root, Object target)
+    {
+        // restored, an executor may run the task on the calling thread
+        Boolean previous = EVALUATING_FIELDS.get();
+        EVALUATING_FIELDS.set(Boolean.TRUE);
+        try
+        {
+            return processor.resolveValue(root, target);
+        }
+        finally
+        {
+            EVALUATING_FIELDS.set(previous);
+        }
+    }
+
+    private static Object join(CompletableFuture<?> task)
+    {
+        try
+        {
+            return task.join();
+        }
+        catch (CompletionException e)
+        {
+            // the failure of the evaluation, as if it was evaluated on the current thread
+            if (e.getCause() instanceof RuntimeException)
+            {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error)
+            {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private T newInstance()
+    {
+        try
+        {
+            if (constructor == null)
+            {
+                throw new InstantiationException(type.getName() + " has no public no-args-constructor");
+            }
+            return constructor.newInstance();
+        }
+        catch (InstantiationException | IllegalAccessException | InvocationTargetException e)
+        {
+            log.error("could not create new instance for " + type.getName(), e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    AbstractAnnotationProcessor[] getProcessors()
+    {
+        return processors;
+    }
+
+    /**
+     * @return <code>true</code> if this plan unmarshals by a
+     *         {@link GeneratedUnmarshaller}
+     */
+    public boolean isGenerated()
+    {
+        return generatedUnmarshaller != null;
+    }
+
+    /**
+     * @return the type of the instances created by this plan
+     */
+    public Class<T> getType()
+    {
+        return type;
+    }
+
+    /**
+     * The settings how the plans of an {@link XPathUnmarshaller} unmarshal,
+     * see {@link BindingPlan#create(Class, XPathUnmarshaller, Map, Settings)}
+     */
+    public static final class Settings
+    {
+        private boolean generateUnmarshaller;
+        private int forkJoinThreshold;
+        private Executor fieldEvaluationExecutor;
+        private int parallelFieldCostThreshold;
+        private boolean singleTraversal;
+
+        private Settings()
+        {
+            // created by BindingPlan.settings()
+        }
+
+        /**
+         * @param generate
+         *            <code>true</code> to generate a
+         *            {@link GeneratedUnmarshaller}
+         * @return these {@link Settings}
+         */
+        public Settings generateUnmarshaller(boolean generate)
+        {
+            generateUnmarshaller = generate;
+            return this;
+        }
+
+        /**
+         * @param threshold
+         *            the minimum number of nodes of an {@link Element} from
+         *            which its sub-objects are unmarshalled as forked tasks
+         *            when running in a {@link ForkJoinPool}, <code>0</code> to
+         *            never fork
+         * @return these {@link Settings}
+         */
+        public Settings forkJoinThreshold(int threshold)
+        {
+            forkJoinThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * @param executor
+         *            the {@link Executor} to evaluate the fields of a type in
+         *            parallel with, <code>null</code> to evaluate them
+         *            sequentially
+         * @param costThreshold
+         *            the minimum estimated cost of all fields of a type from
+         *            which they are evaluated in parallel by the given
+         *            {@link Executor}
+         * @return these {@link Settings}
+         */
+        public Settings fieldEvaluationExecutor(Executor executor, int costThreshold)
+        {
+            fieldEvaluationExecutor = executor;
+            parallelFieldCostThreshold = costThreshold;
+            return this;
+        }
+
+        /**
+         * @param enabled
+         *            <code>true</code> to find the {@link Node}s of all fields
+         *            in one traversal of the {@link Element} (see
+         *            {@link XPathQueryBatch}) when they are evaluated
+         *            sequentially
+         * @return these {@link Settings}
+         */
+        public Settings singleTraversal(boolean enabled)
+        {
+            singleTraversal = enabled;
+            return this;
+        }
+    }
+}
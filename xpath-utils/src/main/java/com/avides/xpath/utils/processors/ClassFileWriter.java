@@ -0,0 +1,253 @@
+package com.avides.xpath.utils.processors;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal writer for class-files with fields and methods of straight-line code
+ * (no branches and no exception-handlers, so no stack-map-frames are needed).
+ * Only used by the {@link UnmarshallerGenerator}, which keeps the generated
+ * classes that simple
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class ClassFileWriter
+{
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    static final int ALOAD_0 = 0x2a;
+    static final int ALOAD_1 = 0x2b;
+    static final int ALOAD_2 = 0x2c;
+    static final int ASTORE_2 = 0x4d;
+    static final int AALOAD = 0x32;
+    static final int DUP = 0x59;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKEVIRTUAL = 0xb6;
+    static final int INVOKESPECIAL = 0xb7;
+    static final int INVOKESTATIC = 0xb8;
+    static final int INVOKEINTERFACE = 0xb9;
+    static final int NEW = 0xbb;
+    static final int CHECKCAST = 0xc0;
+
+    private static final int CLASS_FILE_MAJOR_VERSION = 55;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream constantPool = new DataOutputStream(constantPoolBytes);
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int constantCount = 1;
+
+    private final ByteArrayOutputStream memberBytes = new ByteArrayOutputStream();
+    private final DataOutputStream members = new DataOutputStream(memberBytes);
+    private int fieldCount;
+    private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+    private final DataOutputStream methods = new DataOutputStream(methodBytes);
+    private int methodCount;
+
+    int utf8(String value)
+    {
+        return constant("U" + value, out -> out.writeUTF(value), CONSTANT_UTF8);
+    }
+
+    int classRef(String internalName)
+    {
+        int name = utf8(internalName);
+        return constant("C" + internalName, out -> out.writeShort(name), CONSTANT_CLASS);
+    }
+
+    int string(String value)
+    {
+        int utf8 = utf8(value);
+        return constant("S" + value, out -> out.writeShort(utf8), CONSTANT_STRING);
+    }
+
+    int fieldRef(String owner, String name, String descriptor)
+    {
+        return memberRef(CONSTANT_FIELDREF, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor)
+    {
+        return memberRef(CONSTANT_METHODREF, owner, name, descriptor);
+    }
+
+    int interfaceMethodRef(String owner, String name, String descriptor)
+    {
+        return memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor)
+    {
+        int ownerRef = classRef(owner);
+        int nameUtf8 = utf8(name);
+        int descriptorUtf8 = utf8(descriptor);
+        int nameAndType = constant("N" + name + " " + descriptor, out ->
+        {
+            out.writeShort(nameUtf8);
+            out.writeShort(descriptorUtf8);
+        }, CONSTANT_NAME_AND_TYPE);
+        return constant(tag + owner + "." + name + " " + descriptor, out ->
+        {
+            out.writeShort(ownerRef);
+            out.writeShort(nameAndType);
+        }, tag);
+    }
+
+    private int constant(String key, ConstantWriter writer, int tag)
+    {
+        Integer index = constants.get(key);
+        if (index != null)
+        {
+            return index.intValue();
+        }
+        try
+        {
+            constantPool.writeByte(tag);
+            writer.write(constantPool);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        index = Integer.valueOf(constantCount++);
+        constants.put(key, index);
+        return index.intValue();
+    }
+
+    void addField(int access, String name, String descriptor)
+    {
+        try
+        {
+            members.writeShort(access);
+            members.writeShort(utf8(name));
+            members.writeShort(utf8(descriptor));
+            members.writeShort(0);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        fieldCount++;
+    }
+
+    void addMethod(int access, String name, String descriptor, int maxStack, int maxLocals, Code code)
+    {
+        try
+        {
+            byte[] bytes = code.bytes.toByteArray();
+            methods.writeShort(access);
+            methods.writeShort(utf8(name));
+            methods.writeShort(utf8(descriptor));
+            methods.writeShort(1);
+            methods.writeShort(utf8("Code"));
+            methods.writeInt(12 + bytes.length);
+            methods.writeShort(maxStack);
+            methods.writeShort(maxLocals);
+            methods.writeInt(bytes.length);
+            methods.write(bytes);
+            methods.writeShort(0);
+            methods.writeShort(0);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        methodCount++;
+    }
+
+    byte[] toByteArray(int access, String internalName, String superName, String... interfaceNames)
+    {
+        int thisClass = classRef(internalName);
+        int superClass = classRef(superName);
+        int[] interfaces = new int[interfaceNames.length];
+        for (int i = 0; i < interfaceNames.length; i++)
+        {
+            interfaces[i] = classRef(interfaceNames[i]);
+        }
+        try
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_FILE_MAJOR_VERSION);
+            out.writeShort(constantCount);
+            constantPoolBytes.writeTo(out);
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.length);
+            for (int anInterface : interfaces)
+            {
+                out.writeShort(anInterface);
+            }
+            out.writeShort(fieldCount);
+            memberBytes.writeTo(out);
+            out.writeShort(methodCount);
+            methodBytes.writeTo(out);
+            out.writeShort(0);
+            out.flush();
+            return bytes.toByteArray();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The byte-code of a single method
+     */
+    static final class Code
+    {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        Code op(int opcode)
+        {
+            bytes.write(opcode);
+            return this;
+        }
+
+        Code op(int opcode, int operand)
+        {
+            bytes.write(opcode);
+            bytes.write(operand >>> 8);
+            bytes.write(operand);
+            return this;
+        }
+
+        Code invokeInterface(int methodRef, int argumentSlots)
+        {
+            op(INVOKEINTERFACE, methodRef);
+            bytes.write(argumentSlots);
+            bytes.write(0);
+            return this;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConstantWriter
+    {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
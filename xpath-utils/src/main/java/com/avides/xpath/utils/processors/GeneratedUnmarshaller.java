@@ -0,0 +1,24 @@
+package com.avides.xpath.utils.processors;
+
+import nu.xom.Element;
+
+/**
+ * Unmarshaller for one specific type, generated at runtime by the
+ * {@link UnmarshallerGenerator} or at compile-time by the
+ * <code>xpath-utils-processor</code> (see {@link UnmarshallerSupport})
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+public interface GeneratedUnmarshaller
+{
+    /**
+     * Unmarshals the given {@link Element} to a new instance of the type this
+     * unmarshaller is generated for
+     *
+     * @param root
+     *            {@link Element} to unmarshal from
+     * @return new instance of the type this unmarshaller is generated for
+     */
+    Object unmarshal(Element root);
+}
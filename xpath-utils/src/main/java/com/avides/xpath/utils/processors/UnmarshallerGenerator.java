@@ -0,0 +1,306 @@
+package com.avides.xpath.utils.processors;
+
+import static com.avides.xpath.utils.processors.ClassFileWriter.AALOAD;
+import static com.avides.xpath.utils.processors.ClassFileWriter.ACC_FINAL;
+import static com.avides.xpath.utils.processors.ClassFileWriter.ACC_PRIVATE;
+import static com.avides.xpath.utils.processors.ClassFileWriter.ACC_PUBLIC;
+import static com.avides.xpath.utils.processors.ClassFileWriter.ACC_SUPER;
+import static com.avides.xpath.utils.processors.ClassFileWriter.ALOAD_0;
+import static com.avides.xpath.utils.processors.ClassFileWriter.ALOAD_1;
+import static com.avides.xpath.utils.processors.ClassFileWriter.ALOAD_2;
+import static com.avides.xpath.utils.processors.ClassFileWriter.ARETURN;
+import static com.avides.xpath.utils.processors.ClassFileWriter.ASTORE_2;
+import static com.avides.xpath.utils.processors.ClassFileWriter.CHECKCAST;
+import static com.avides.xpath.utils.processors.ClassFileWriter.DUP;
+import static com.avides.xpath.utils.processors.ClassFileWriter.GETFIELD;
+import static com.avides.xpath.utils.processors.ClassFileWriter.INVOKESPECIAL;
+import static com.avides.xpath.utils.processors.ClassFileWriter.INVOKESTATIC;
+import static com.avides.xpath.utils.processors.ClassFileWriter.INVOKEVIRTUAL;
+import static com.avides.xpath.utils.processors.ClassFileWriter.LDC_W;
+import static com.avides.xpath.utils.processors.ClassFileWriter.NEW;
+import static com.avides.xpath.utils.processors.ClassFileWriter.PUTFIELD;
+import static com.avides.xpath.utils.processors.ClassFileWriter.RETURN;
+import static com.avides.xpath.utils.processors.ClassFileWriter.SIPUSH;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates a {@link GeneratedUnmarshaller} per type at runtime, which executes
+ * the processors of a {@link BindingPlan} as straight-line byte-code: the new
+ * instance is created with a direct constructor-call, the
+ * {@link Function Converter}s of plain {@link XPathFirstProcessor}s are called
+ * directly on the query-result and the values are written with
+ * <code>putfield</code> where the JVM allows it (otherwise through the
+ * {@link AbstractAnnotationProcessor processor}). So the JIT can inline the
+ * whole unmarshalling of a type.
+ * <p>
+ * On Java 15+ the class is defined as hidden nestmate of the type, so also
+ * private fields are written directly. On older versions it is defined in the
+ * package of the type and only non-private fields are written directly
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class UnmarshallerGenerator
+{
+    private static final Logger log = LoggerFactory.getLogger(UnmarshallerGenerator.class);
+
+    private static final String OBJECT = "java/lang/Object";
+    private static final String PROCESSOR = "com/avides/xpath/utils/processors/AbstractAnnotationProcessor";
+    private static final String FUNCTION = "java/util/function/Function";
+    private static final String ELEMENT = "nu/xom/Element";
+    private static final String XPATH_UTILS = "com/avides/xpath/utils/XPathUtils";
+
+    private static final int MAX_STACK = 8;
+
+    private static final AtomicInteger classCounter = new AtomicInteger();
+
+    private static final Method defineHiddenClass;
+    private static final Object hiddenClassOptions;
+
+    static
+    {
+        Method method = null;
+        Object options = null;
+        try
+        {
+            Class<?> classOption = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+            options = Array.newInstance(classOption, 1);
+            Array.set(options, 0, getEnumConstant(classOption, "NESTMATE"));
+            method = Lookup.class.getMethod("defineHiddenClass", byte[].class, boolean.class, options.getClass());
+        }
+        catch (ClassNotFoundException | NoSuchFieldException | NoSuchMethodException e)
+        {
+            // hidden classes are not supported before Java 15, so the classes are defined in the package of the type
+        }
+        defineHiddenClass = method;
+        hiddenClassOptions = options;
+    }
+
+    private UnmarshallerGenerator()
+    {
+        // private constructor to hide the public one (utility-class)
+    }
+
+    private static Object getEnumConstant(Class<?> enumType, String name) throws NoSuchFieldException
+    {
+        for (Object constant : enumType.getEnumConstants())
+        {
+            if (((Enum<?>) constant).name().equals(name))
+            {
+                return constant;
+            }
+        }
+        throw new NoSuchFieldException(enumType.getName() + "." + name);
+    }
+
+    /**
+     * @return <code>true</code> if the classes can be defined as hidden
+     *         nestmates of the type (Java 15+)
+     */
+    static boolean isHiddenClassSupported()
+    {
+        return defineHiddenClass != null;
+    }
+
+    /**
+     * Generates the {@link GeneratedUnmarshaller} for the given type
+     *
+     * @param type
+     *            the type to unmarshal
+     * @param constructor
+     *            the public no-args-constructor of the type
+     * @param processors
+     *            the processors of the annotated fields of the type
+     * @return the {@link GeneratedUnmarshaller}, or <code>null</code> if it can
+     *         not be generated for the given type
+     */
+    static GeneratedUnmarshaller generate(Class<?> type, Constructor<?> constructor, AbstractAnnotationProcessor[] processors)
+    {
+        return generate(type, constructor, processors, isHiddenClassSupported());
+    }
+
+    static GeneratedUnmarshaller generate(Class<?> type, Constructor<?> constructor, AbstractAnnotationProcessor[] processors, boolean hidden)
+    {
+        if ((constructor == null) || Modifier.isAbstract(type.getModifiers()) || type.isArray() || type.isPrimitive())
+        {
+            return null;
+        }
+        try
+        {
+            Lookup typeLookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            List<Object> arguments = new ArrayList<>();
+            byte[] bytes = generateClass(type, processors, hidden, arguments);
+            Lookup lookup = hidden ? defineHidden(typeLookup, bytes) : typeLookup.in(typeLookup.defineClass(bytes));
+            return (GeneratedUnmarshaller) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, Object[].class))
+                .invoke(arguments.toArray());
+        }
+        catch (Throwable e)
+        {
+            log.warn("could not generate unmarshaller for " + type.getName() + ", using reflection instead", e);
+            return null;
+        }
+    }
+
+    private static Lookup defineHidden(Lookup typeLookup, byte[] bytes) throws ReflectiveOperationException
+    {
+        return (Lookup) defineHiddenClass.invoke(typeLookup, bytes, Boolean.TRUE, hiddenClassOptions);
+    }
+
+    private static byte[] generateClass(Class<?> type, AbstractAnnotationProcessor[] processors, boolean hidden, List<Object> arguments)
+    {
+        String typeName = internalName(type);
+        String className = typeName + "$$XPathUnmarshaller$" + classCounter.incrementAndGet();
+        ClassFileWriter writer = new ClassFileWriter();
+        ClassFileWriter.Code init = new ClassFileWriter.Code()
+            .op(ALOAD_0)
+            .op(INVOKESPECIAL, writer.methodRef(OBJECT, "<init>", "()V"));
+        ClassFileWriter.Code unmarshal = new ClassFileWriter.Code()
+            .op(NEW, writer.classRef(typeName))
+            .op(DUP)
+            .op(INVOKESPECIAL, writer.methodRef(typeName, "<init>", "()V"))
+            .op(ASTORE_2);
+
+        for (int i = 0; i < processors.length; i++)
+        {
+            AbstractAnnotationProcessor processor = processors[i];
+            Field field = processor.getField();
+            int processorField = addArgument(writer, init, className, "processor" + i, PROCESSOR, processor, arguments);
+            boolean direct = isDirectlyWritable(type, field, hidden);
+            if (direct)
+            {
+                unmarshal.op(ALOAD_2);
+            }
+            else
+            {
+                unmarshal.op(ALOAD_0).op(GETFIELD, processorField).op(ALOAD_2);
+            }
+
+            if ((processor instanceof XPathFirstProcessor) && !((XPathFirstProcessor) processor).isSubType())
+            {
+                XPathFirstProcessor firstProcessor = (XPathFirstProcessor) processor;
+                int converterField = addArgument(writer, init, className, "converter" + i, FUNCTION, firstProcessor.getConverter(), arguments);
+                unmarshal.op(ALOAD_0).op(GETFIELD, processorField)
+                    .op(ALOAD_2)
+                    .op(ALOAD_0).op(GETFIELD, converterField)
+                    .op(ALOAD_1)
+                    .op(LDC_W, writer.string(firstProcessor.getXPath()))
+                    .op(INVOKESTATIC, writer.methodRef(XPATH_UTILS, "queryFirst",
+                        "(Lnu/xom/Node;Ljava/lang/String;)Ljava/lang/String;"))
+                    .invokeInterface(writer.interfaceMethodRef(FUNCTION, "apply", "(Ljava/lang/Object;)Ljava/lang/Object;"), 2)
+                    .op(INVOKEVIRTUAL, writer.methodRef(PROCESSOR, "toFieldValueExtended", "(Ljava/lang/Object;Ljava/lang/Object;)Ljava/lang/Object;"));
+            }
+            else
+            {
+                unmarshal.op(ALOAD_0).op(GETFIELD, processorField)
+                    .op(ALOAD_1)
+                    .op(ALOAD_2)
+                    .op(INVOKEVIRTUAL, writer.methodRef(PROCESSOR, "resolveValue", "(L" + ELEMENT + ";Ljava/lang/Object;)Ljava/lang/Object;"));
+            }
+
+            if (direct)
+            {
+                writeField(writer, unmarshal, typeName, field);
+            }
+            else
+            {
+                unmarshal.op(INVOKEVIRTUAL, writer.methodRef(PROCESSOR, "write", "(Ljava/lang/Object;Ljava/lang/Object;)V"));
+            }
+        }
+        init.op(RETURN);
+        unmarshal.op(ALOAD_2).op(ARETURN);
+
+        writer.addMethod(ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", MAX_STACK, 2, init);
+        writer.addMethod(ACC_PUBLIC, "unmarshal", "(L" + ELEMENT + ";)Ljava/lang/Object;", MAX_STACK, 3, unmarshal);
+        return writer.toByteArray(ACC_FINAL | ACC_SUPER, className, OBJECT, internalName(GeneratedUnmarshaller.class));
+    }
+
+    private static int addArgument(ClassFileWriter writer, ClassFileWriter.Code init, String className, String name, String type, Object value,
+            List<Object> arguments)
+    {
+        writer.addField(ACC_PRIVATE | ACC_FINAL, name, "L" + type + ";");
+        int fieldRef = writer.fieldRef(className, name, "L" + type + ";");
+        init.op(ALOAD_0)
+            .op(ALOAD_1)
+            .op(SIPUSH, arguments.size())
+            .op(AALOAD)
+            .op(CHECKCAST, writer.classRef(type))
+            .op(PUTFIELD, fieldRef);
+        arguments.add(value);
+        return fieldRef;
+    }
+
+    private static void writeField(ClassFileWriter writer, ClassFileWriter.Code code, String typeName, Field field)
+    {
+        Class<?> fieldType = field.getType();
+        if (fieldType.isPrimitive())
+        {
+            Class<?> wrapperType = wrapperType(fieldType);
+            code.op(CHECKCAST, writer.classRef(internalName(wrapperType)))
+                .op(INVOKEVIRTUAL, writer.methodRef(internalName(wrapperType), fieldType.getName() + "Value", "()" + descriptor(fieldType)));
+        }
+        else
+        {
+            code.op(CHECKCAST, writer.classRef(fieldType.isArray() ? descriptor(fieldType) : internalName(fieldType)));
+        }
+        code.op(PUTFIELD, writer.fieldRef(typeName, field.getName(), descriptor(fieldType)));
+    }
+
+    private static boolean isDirectlyWritable(Class<?> type, Field field, boolean hidden)
+    {
+        int modifiers = field.getModifiers();
+        if ((field.getDeclaringClass() != type) || Modifier.isFinal(modifiers) || Modifier.isStatic(modifiers))
+        {
+            return false;
+        }
+        if (Modifier.isPrivate(modifiers) && !hidden)
+        {
+            return false;
+        }
+        // byte has no null-value, so a missing value must not be written at all
+        Class<?> fieldType = field.getType();
+        if (fieldType == byte.class)
+        {
+            return false;
+        }
+        while (fieldType.isArray())
+        {
+            fieldType = fieldType.getComponentType();
+        }
+        return fieldType.isPrimitive() || Modifier.isPublic(fieldType.getModifiers()) || isSamePackage(type, fieldType);
+    }
+
+    private static boolean isSamePackage(Class<?> type, Class<?> otherType)
+    {
+        return (type.getClassLoader() == otherType.getClassLoader()) && type.getPackageName().equals(otherType.getPackageName());
+    }
+
+    private static Class<?> wrapperType(Class<?> primitiveType)
+    {
+        return MethodType.methodType(primitiveType).wrap().returnType();
+    }
+
+    private static String internalName(Class<?> type)
+    {
+        return type.getName().replace('.', '/');
+    }
+
+    private static String descriptor(Class<?> type)
+    {
+        return MethodType.methodType(type).toMethodDescriptorString().substring(2);
+    }
+}
@@ -0,0 +1,183 @@
+package com.avides.xpath.utils.processors;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.avides.xpath.utils.XPathUnmarshaller;
+import com.avides.xpath.utils.XPathUtils;
+import com.avides.xpath.utils.utils.ReflectionUtils;
+
+import nu.xom.Element;
+import nu.xom.Node;
+
+/**
+ * Runtime-support for the unmarshallers generated at compile-time by the
+ * <code>xpath-utils-processor</code> (classes named like the unmarshalled type
+ * with the suffix <code>XPathUnmarshaller</code>). The generated code queries
+ * the values through this class, so they are converted and unmarshalled by the
+ * {@link XPathUnmarshaller} that uses the generated code, the same way as the
+ * {@link AbstractAnnotationProcessor processors} do
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+public final class UnmarshallerSupport
+{
+    private static final Logger log = LoggerFactory.getLogger(UnmarshallerSupport.class);
+
+    /**
+     * Suffix of the names of generated unmarshaller-classes
+     */
+    public static final String CLASS_NAME_SUFFIX = "XPathUnmarshaller";
+
+    private final XPathUnmarshaller unmarshaller;
+    private final Map<Class<?>, Function<String, ?>> defaultToTypeConverters;
+
+    public UnmarshallerSupport(XPathUnmarshaller unmarshaller, Map<Class<?>, Function<String, ?>> defaultToTypeConverters)
+    {
+        this.unmarshaller = unmarshaller;
+        this.defaultToTypeConverters = defaultToTypeConverters;
+    }
+
+    /**
+     * @see XPathUtils#queryFirst(Node, String, Class)
+     */
+    public <T> T queryFirst(Node root, String xPath, Class<? extends Function<String, T>> converterClass)
+    {
+        return unmarshaller.getConverter(converterClass).apply(XPathUtils.queryFirst(root, xPath));
+    }
+
+    /**
+     * @see XPathUnmarshaller#unmarshal(Element, Class)
+     */
+    public <T> T queryFirstSubType(Node root, String xPath, Class<T> subType)
+    {
+        Element subRoot = XPathUtils.queryFirstElement(root, xPath);
+        return subRoot != null ? unmarshaller.unmarshal(subRoot, subType) : null;
+    }
+
+    /**
+     * @see XPathUnmarshaller#queryList(Node, String, Class, Class)
+     */
+    public <T> List<T> queryList(Node root, String xPath, Class<? extends Function<String, T>> converterClass, Class<T> subType)
+    {
+        return unmarshaller.queryList(root, xPath, converterClass, subType);
+    }
+
+    /**
+     * @see XPathUnmarshaller#queryList(Node, String, Class, Class, boolean)
+     */
+    public <T> List<T> queryList(Node root, String xPath, Class<? extends Function<String, T>> converterClass, Class<T> subType, boolean parallel)
+    {
+        return unmarshaller.queryList(root, xPath, converterClass, subType, parallel);
+    }
+
+    /**
+     * @see XPathUnmarshaller#queryMap(Node, String, String, String, Class,
+     *      Class, Class, Class)
+     */
+    public <K, V> Map<K, V> queryMap(Node root, String entryXPath, String keySubXPath, String valueSubXPath,
+        Class<? extends Function<String, K>> keyConverterClass, Class<? extends Function<String, V>> valueConverterClass, Class<K> keySubType,
+        Class<V> valueSubType)
+    {
+        return unmarshaller.queryMap(root, entryXPath, keySubXPath, valueSubXPath, keyConverterClass, valueConverterClass, keySubType, valueSubType);
+    }
+
+    /**
+     * Converts the given value to a value that can be set to a field of the
+     * given type: <code>null</code> is converted to the null-value of
+     * primitives, {@link String}s are converted by a registered
+     * default-{@link Function Converter} for the field-type or to an
+     * enum-constant
+     *
+     * @param value
+     *            the value to convert
+     * @param fieldType
+     *            the type of the field to set
+     * @param fieldName
+     *            the name of the field (only used for error-messages)
+     * @return the converted (boxed for primitives) value, or <code>null</code>
+     *         if a field of type <code>byte</code> must not be set at all
+     */
+    @SuppressWarnings(
+    { "rawtypes", "unchecked" })
+    public Object toFieldValue(Object value, Class<?> fieldType, String fieldName)
+    {
+        if (value == null)
+        {
+            Object nullValue = fieldType.isPrimitive() ? ReflectionUtils.getNullValue(fieldType) : null;
+            if (fieldType.isPrimitive() && (nullValue == null))
+            {
+                log.warn("no null-value for primitive byte is implemented yet, so don't set anything for field " + fieldName);
+            }
+            return nullValue;
+        }
+        if (ReflectionUtils.isAssignable(fieldType, value.getClass()))
+        {
+            return value;
+        }
+        try
+        {
+            if (value.getClass() == String.class)
+            {
+                Function<String, ?> fieldTypeConverter = defaultToTypeConverters.get(fieldType);
+                if (fieldTypeConverter != null)
+                {
+                    return fieldTypeConverter.apply((String) value);
+                }
+                if (fieldType.isEnum())
+                {
+                    return ((String) value).isEmpty() ? null : Enum.valueOf((Class<Enum>) fieldType, (String) value);
+                }
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            throw new RuntimeException("could not set value " + value + " for field " + fieldName, e);
+        }
+        throw new RuntimeException("could not set value " + value + " for field " + fieldName + " (field-types not matching)");
+    }
+
+    /**
+     * Finds the unmarshaller generated at compile-time for the given type
+     *
+     * @param type
+     *            the type to unmarshal
+     * @return new instance of the generated unmarshaller, or <code>null</code>
+     *         if there is none
+     */
+    GeneratedUnmarshaller findCompiledUnmarshaller(Class<?> type)
+    {
+        ClassLoader classLoader = type.getClassLoader();
+        if ((classLoader == null) || type.isArray())
+        {
+            return null;
+        }
+        Class<?> unmarshallerClass;
+        try
+        {
+            unmarshallerClass = Class.forName(type.getName() + CLASS_NAME_SUFFIX, true, classLoader);
+        }
+        catch (ClassNotFoundException | LinkageError e)
+        {
+            return null;
+        }
+        if (!GeneratedUnmarshaller.class.isAssignableFrom(unmarshallerClass))
+        {
+            return null;
+        }
+        try
+        {
+            return (GeneratedUnmarshaller) unmarshallerClass.getConstructor(UnmarshallerSupport.class).newInstance(this);
+        }
+        catch (ReflectiveOperationException | RuntimeException e)
+        {
+            log.warn("could not create generated unmarshaller " + unmarshallerClass.getName() + ", using reflection instead", e);
+            return null;
+        }
+    }
+}
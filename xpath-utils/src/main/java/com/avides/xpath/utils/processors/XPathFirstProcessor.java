@@ -0,0 +1,119 @@
+package com.avides.xpath.utils.processors;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.avides.xpath.utils.XPathUnmarshaller;
+import com.avides.xpath.utils.XPathUtils;
+import com.avides.xpath.utils.annotations.XPathFirst;
+
+import nu.xom.Element;
+import nu.xom.Node;
+
+/**
+ * @author Martin Schumacher
+ * @since 1.0.3.RELEASE
+ */
+public class XPathFirstProcessor extends AbstractAnnotationProcessor
+{
+    private final String xPath;
+    private final boolean isSubType;
+    private final Class<?> subType;
+    private final Function<String, ?> converter;
+    private final XPathUnmarshaller unmarshaller;
+
+    @SuppressWarnings("unchecked")
+    public XPathFirstProcessor(Field field, XPathFirst xPathFirst, XPathUnmarshaller unmarshaller,
+            Map<Class<?>, Function<String, ?>> defaultToTypeConverters)
+    {
+        super(field, defaultToTypeConverters);
+        // the annotation is only null for the deprecated per-target constructor
+        xPath = xPathFirst != null ? xPathFirst.value() : null;
+        isSubType = (xPathFirst != null) && xPathFirst.isSubType();
+        subType = field.getType();
+        converter = (xPathFirst == null) || isSubType ? null
+            : unmarshaller.getConverter((Class<? extends Function<String, Object>>) xPathFirst.converterClass());
+        this.unmarshaller = unmarshaller;
+    }
+
+    /**
+     * @deprecated since 2.2.0, use
+     *             {@link #XPathFirstProcessor(Field, XPathFirst, XPathUnmarshaller, Map)}
+     *             and {@link #process(Element, Object)} instead, a
+     *             {@link Field} without {@link XPathFirst} is not processed
+     */
+    @Deprecated
+    public XPathFirstProcessor(Element root, Field field, Object target, Map<Class<?>, Function<String, ?>> defaultToTypeConverters)
+    {
+        this(field, field.getAnnotation(XPathFirst.class), XPathUnmarshaller.getInstance(), defaultToTypeConverters);
+        this.root = root;
+        this.target = target;
+    }
+
+    @Override
+    public Object resolveValue(Element root, Object target)
+    {
+        if (isSubType)
+        {
+            Element subRoot = XPathUtils.queryFirstElement(root, xPath);
+            Object value = subRoot != null ? unmarshaller.unmarshal(subRoot, subType) : null;
+            return toFieldValueSimple(target, value);
+        }
+        Object value = converter.apply(XPathUtils.queryFirst(root, xPath));
+        return toFieldValueExtended(target, value);
+    }
+
+    @Override
+    boolean isAnnotated()
+    {
+        return xPath != null;
+    }
+
+    @Override
+    String getSelectingXPath()
+    {
+        return xPath;
+    }
+
+    @Override
+    Object resolveValue(Element root, Object target, List<Node> nodes)
+    {
+        Node node = nodes.isEmpty() ? null : nodes.get(0);
+        if (isSubType)
+        {
+            Object value = node != null ? unmarshaller.unmarshal((Element) node, subType) : null;
+            return toFieldValueSimple(target, value);
+        }
+        Object value = converter.apply(node != null ? node.getValue() : null);
+        return toFieldValueExtended(target, value);
+    }
+
+    @Override
+    boolean isBranch()
+    {
+        return isSubType && !subType.isEnum();
+    }
+
+    @Override
+    int getEvaluationCost()
+    {
+        return estimateEvaluationCost(isBranch(), xPath);
+    }
+
+    String getXPath()
+    {
+        return xPath;
+    }
+
+    boolean isSubType()
+    {
+        return isSubType;
+    }
+
+    Function<String, ?> getConverter()
+    {
+        return converter;
+    }
+}
@@ -0,0 +1,95 @@
+package com.avides.xpath.utils.processors;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.avides.xpath.utils.XPathUnmarshaller;
+import com.avides.xpath.utils.annotations.XPathList;
+
+import nu.xom.Element;
+import nu.xom.Node;
+
+/**
+ * @author Martin Schumacher
+ * @since 1.0.3.RELEASE
+ */
+public class XPathListProcessor extends AbstractAnnotationProcessor
+{
+    private final String xPath;
+    private final Class<Function<String, Object>> converterClass;
+    private final Class<Object> subTypeClass;
+    private final boolean parallel;
+    private final XPathUnmarshaller unmarshaller;
+
+    @SuppressWarnings("unchecked")
+    public XPathListProcessor(Field field, XPathList xPathList, XPathUnmarshaller unmarshaller, Map<Class<?>, Function<String, ?>> defaultToTypeConverters)
+    {
+        super(field, defaultToTypeConverters);
+        // the annotation is only null for the deprecated per-target constructor
+        xPath = xPathList != null ? xPathList.value() : null;
+        converterClass = xPathList != null ? (Class<Function<String, Object>>) xPathList.converterClass() : null;
+        subTypeClass = xPathList != null ? (Class<Object>) xPathList.subTypeClass() : null;
+        parallel = (xPathList != null) && xPathList.parallel();
+        this.unmarshaller = unmarshaller;
+    }
+
+    /**
+     * @deprecated since 2.2.0, use
+     *             {@link #XPathListProcessor(Field, XPathList, XPathUnmarshaller, Map)}
+     *             and {@link #process(Element, Object)} instead, a
+     *             {@link Field} without {@link XPathList} is not processed
+     */
+    @Deprecated
+    public XPathListProcessor(Element root, Field field, Object target, Map<Class<?>, Function<String, ?>> defaultToTypeConverters)
+    {
+        this(field, field.getAnnotation(XPathList.class), XPathUnmarshaller.getInstance(), defaultToTypeConverters);
+        this.root = root;
+        this.target = target;
+    }
+
+    @Override
+    public Object resolveValue(Element root, Object target)
+    {
+        List<Object> value = unmarshaller.queryList(root, xPath, converterClass, subTypeClass, parallel);
+        return toFieldValueSimple(target, value);
+    }
+
+    @Override
+    boolean isAnnotated()
+    {
+        return xPath != null;
+    }
+
+    @Override
+    String getSelectingXPath()
+    {
+        return xPath;
+    }
+
+    @Override
+    boolean isSelectingAll()
+    {
+        return true;
+    }
+
+    @Override
+    Object resolveValue(Element root, Object target, List<Node> nodes)
+    {
+        List<Object> value = unmarshaller.toList(nodes, converterClass, subTypeClass, parallel);
+        return toFieldValueSimple(target, value);
+    }
+
+    @Override
+    boolean isBranch()
+    {
+        return !String.class.equals(subTypeClass) && !subTypeClass.isEnum();
+    }
+
+    @Override
+    int getEvaluationCost()
+    {
+        return estimateEvaluationCost(isBranch(), xPath);
+    }
+}
@@ -0,0 +1,108 @@
+package com.avides.xpath.utils.processors;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.avides.xpath.utils.XPathUnmarshaller;
+import com.avides.xpath.utils.annotations.XPathMap;
+
+import nu.xom.Element;
+import nu.xom.Node;
+
+/**
+ * @author Martin Schumacher
+ * @since 1.0.3.RELEASE
+ */
+public class XPathMapProcessor extends AbstractAnnotationProcessor
+{
+    private final String entryXPath;
+    private final String keySubXPath;
+    private final String valueSubXPath;
+    private final Class<Function<String, Object>> keyConverterClass;
+    private final Class<Function<String, Object>> valueConverterClass;
+    private final Class<Object> keySubTypeClass;
+    private final Class<Object> valueSubTypeClass;
+    private final XPathUnmarshaller unmarshaller;
+
+    @SuppressWarnings("unchecked")
+    public XPathMapProcessor(Field field, XPathMap xPathMap, XPathUnmarshaller unmarshaller, Map<Class<?>, Function<String, ?>> defaultToTypeConverters)
+    {
+        super(field, defaultToTypeConverters);
+        // the annotation is only null for the deprecated per-target constructor
+        entryXPath = xPathMap != null ? xPathMap.entryXPath() : null;
+        keySubXPath = xPathMap != null ? xPathMap.keySubXPath() : null;
+        valueSubXPath = xPathMap != null ? xPathMap.valueSubXPath() : null;
+        keyConverterClass = xPathMap != null ? (Class<Function<String, Object>>) xPathMap.keyConverterClass() : null;
+        valueConverterClass = xPathMap != null ? (Class<Function<String, Object>>) xPathMap.valueConverterClass() : null;
+        keySubTypeClass = xPathMap != null ? (Class<Object>) xPathMap.keySubTypeClass() : null;
+        valueSubTypeClass = xPathMap != null ? (Class<Object>) xPathMap.valueSubTypeClass() : null;
+        this.unmarshaller = unmarshaller;
+    }
+
+    /**
+     * @deprecated since 2.2.0, use
+     *             {@link #XPathMapProcessor(Field, XPathMap, XPathUnmarshaller, Map)}
+     *             and {@link #process(Element, Object)} instead, a
+     *             {@link Field} without {@link XPathMap} is not processed
+     */
+    @Deprecated
+    public XPathMapProcessor(Element root, Field field, Object target, Map<Class<?>, Function<String, ?>> defaultToTypeConverters)
+    {
+        this(field, field.getAnnotation(XPathMap.class), XPathUnmarshaller.getInstance(), defaultToTypeConverters);
+        this.root = root;
+        this.target = target;
+    }
+
+    @Override
+    public Object resolveValue(Element root, Object target)
+    {
+        Map<Object, Object> value = unmarshaller.queryMap(root, entryXPath, keySubXPath, valueSubXPath, keyConverterClass, valueConverterClass,
+            keySubTypeClass, valueSubTypeClass);
+        return toFieldValueSimple(target, value);
+    }
+
+    @Override
+    boolean isAnnotated()
+    {
+        return entryXPath != null;
+    }
+
+    @Override
+    String getSelectingXPath()
+    {
+        return entryXPath;
+    }
+
+    @Override
+    boolean isSelectingAll()
+    {
+        return true;
+    }
+
+    @Override
+    Object resolveValue(Element root, Object target, List<Node> nodes)
+    {
+        Map<Object, Object> value = unmarshaller.toMap(nodes, keySubXPath, valueSubXPath, keyConverterClass, valueConverterClass, keySubTypeClass,
+            valueSubTypeClass);
+        return toFieldValueSimple(target, value);
+    }
+
+    @Override
+    boolean isBranch()
+    {
+        return isSubObjectType(keySubTypeClass) || isSubObjectType(valueSubTypeClass);
+    }
+
+    @Override
+    int getEvaluationCost()
+    {
+        return estimateEvaluationCost(isBranch(), entryXPath, keySubXPath, valueSubXPath);
+    }
+
+    private static boolean isSubObjectType(Class<?> subType)
+    {
+        return (subType != null) && (subType != String.class) && !subType.isEnum();
+    }
+}
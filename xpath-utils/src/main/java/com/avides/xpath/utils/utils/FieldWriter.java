@@ -0,0 +1,94 @@
+package com.avides.xpath.utils.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Writes the value of a single {@link Field} through a {@link MethodHandle}
+ * that is built once, instead of checking the modifiers and accessibility and
+ * using {@link Field#set(Object, Object)} on each write
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+public final class FieldWriter
+{
+    private static final MethodType OBJECT_SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Field field;
+    private final MethodHandle setter;
+
+    private FieldWriter(Field field, MethodHandle setter)
+    {
+        this.field = field;
+        this.setter = setter.asType(OBJECT_SETTER_TYPE);
+    }
+
+    /**
+     * Creates the {@link FieldWriter} for the given {@link Field}, making it
+     * accessible if necessary
+     *
+     * @param field
+     *            the {@link Field} to write
+     * @return the {@link FieldWriter} for the given {@link Field}
+     */
+    public static FieldWriter of(Field field)
+    {
+        if ((!Modifier.isPublic(field.getModifiers()) ||
+            !Modifier.isPublic(field.getDeclaringClass().getModifiers()) ||
+            Modifier.isFinal(field.getModifiers())) && !field.isAccessible())
+        {
+            field.setAccessible(true);
+        }
+        try
+        {
+            return new FieldWriter(field, MethodHandles.lookup().unreflectSetter(field));
+        }
+        catch (IllegalAccessException e)
+        {
+            throw new IllegalStateException("Not allowed to access field '" + field.getName() + "': " + e);
+        }
+    }
+
+    /**
+     * Sets the given value, which is unboxed for primitive fields
+     *
+     * @param target
+     *            the instance to set the value on
+     * @param value
+     *            the value to set
+     * @throws IllegalArgumentException
+     *             if the value does not match the field-type
+     */
+    public void set(Object target, Object value)
+    {
+        try
+        {
+            setter.invokeExact(target, value);
+        }
+        catch (ClassCastException | NullPointerException e)
+        {
+            throw new IllegalArgumentException("can not set value " + value + " to field " + field, e);
+        }
+        catch (Throwable e)
+        {
+            throw rethrow(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e)
+    {
+        if (e instanceof RuntimeException)
+        {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error)
+        {
+            throw (Error) e;
+        }
+        return new IllegalStateException(e);
+    }
+}
@@ -1,7 +1,6 @@
 package com.avides.xpath.utils.utils;
 
 import java.lang.reflect.Field;
-import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Map;
 
@@ -13,8 +12,6 @@ import java.util.Map;
  */
 public class ReflectionUtils
 {
-    private static final Map<Class<?>, Field[]> declaredFieldsCache = new HashMap<>(256);
-
     private static final Map<Class<?>, Class<?>> primitiveWrapperTypeMap = new IdentityHashMap<>(8);
 
     private static final Map<Class<?>, Class<?>> primitiveTypeToWrapperMap = new IdentityHashMap<>(8);
@@ -24,6 +21,17 @@ public class ReflectionUtils
     private static final Field[] NO_FIELDS =
     {};
 
+    // a map keyed by Class would keep classes of discarded class-loaders alive
+    private static final ClassValue<Field[]> declaredFieldsCache = new ClassValue<Field[]>()
+    {
+        @Override
+        protected Field[] computeValue(Class<?> type)
+        {
+            Field[] fields = type.getDeclaredFields();
+            return fields.length == 0 ? NO_FIELDS : fields;
+        }
+    };
+
     static
     {
         primitiveWrapperTypeMap.put(Boolean.class, boolean.class);
@@ -73,13 +81,7 @@ public class ReflectionUtils
 
     private static Field[] getDeclaredFields(Class<?> clazz)
     {
-        Field[] result = declaredFieldsCache.get(clazz);
-        if (result == null)
-        {
-            result = clazz.getDeclaredFields();
-            declaredFieldsCache.put(clazz, (result.length == 0 ? NO_FIELDS : result));
-        }
-        return result;
+        return declaredFieldsCache.get(clazz);
     }
 
     public static boolean isAssignable(Class<?> lhsType, Class<?> rhsType)
@@ -0,0 +1,71 @@
+package com.avides.xpath.utils.utils;
+
+import java.util.List;
+
+import nu.xom.Node;
+
+/**
+ * Utility-class to estimate the cost of unmarshalling a subtree by the number
+ * of its nodes. The nodes are only counted until the wanted minimum is
+ * reached, so checking a large subtree costs no more than checking a subtree
+ * of the minimum size
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+public final class SubtreeSize
+{
+    private SubtreeSize()
+    {
+        // only static methods
+    }
+
+    /**
+     * @param node
+     *            the root of the subtree
+     * @param minimum
+     *            the minimum number of nodes
+     * @return <code>true</code> if the subtree of the given {@link Node}
+     *         (including itself) has at least the given number of nodes
+     */
+    public static boolean isAtLeast(Node node, int minimum)
+    {
+        return count(node, minimum) >= minimum;
+    }
+
+    /**
+     * @param nodes
+     *            the roots of the subtrees
+     * @param minimum
+     *            the minimum number of nodes
+     * @return <code>true</code> if the subtrees of the given {@link Node}s
+     *         together have at least the given number of nodes
+     */
+    public static boolean isAtLeast(List<? extends Node> nodes, int minimum)
+    {
+        int count = 0;
+        for (Node node : nodes)
+        {
+            count += count(node, minimum - count);
+            if (count >= minimum)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of nodes of the given subtree, but at most the given
+     *         limit
+     */
+    private static int count(Node node, int limit)
+    {
+        int count = 1;
+        for (int i = 0, childCount = node.getChildCount(); (i < childCount) && (count < limit); i++)
+        {
+            count += count(node.getChild(i), limit - count);
+        }
+        return count;
+    }
+}
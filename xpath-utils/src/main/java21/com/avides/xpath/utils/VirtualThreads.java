@@ -0,0 +1,101 @@
+package com.avides.xpath.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Access to virtual threads, version for Java 21 and later of the
+ * multi-release JAR. Each task runs on its own virtual thread, so a task
+ * waiting for I/O does not block a platform thread. The number of tasks
+ * running at the same time is limited by a {@link Semaphore}, which (unlike a
+ * <code>synchronized</code> block) does not pin the virtual thread to its
+ * carrier while waiting
+ *
+ * @author Martin Schumacher
+ * @since 2.2.0
+ */
+final class VirtualThreads
+{
+    private VirtualThreads()
+    {
+        // only static methods
+    }
+
+    /**
+     * @return <code>true</code> if the current thread is a virtual thread
+     */
+    static boolean isCurrentThreadVirtual()
+    {
+        return Thread.currentThread().isVirtual();
+    }
+
+    /**
+     * Executes the given tasks concurrently on one virtual thread per task, at
+     * most the given number at the same time. If a task fails, the remaining
+     * tasks are cancelled
+     *
+     * @param tasks
+     *            the tasks to execute
+     * @param maximumConcurrency
+     *            the maximum number of tasks executed at the same time
+     * @return the results of the tasks, in the order of the tasks
+     * @throws ExecutionException
+     *             with the exception of the first failed task
+     * @throws InterruptedException
+     *             if the current thread is interrupted while waiting
+     */
+    static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int maximumConcurrency) throws ExecutionException, InterruptedException
+    {
+        if (tasks.isEmpty())
+        {
+            return new ArrayList<>();
+        }
+        Semaphore permits = new Semaphore(maximumConcurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            List<Future<T>> futures = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks)
+            {
+                futures.add(executor.submit(() ->
+                {
+                    permits.acquire();
+                    try
+                    {
+                        return task.call();
+                    }
+                    finally
+                    {
+                        permits.release();
+                    }
+                }));
+            }
+            return getAll(futures);
+        }
+    }
+
+    private static <T> List<T> getAll(List<Future<T>> futures) throws ExecutionException, InterruptedException
+    {
+        List<T> results = new ArrayList<>(futures.size());
+        try
+        {
+            for (Future<T> future : futures)
+            {
+                results.add(future.get());
+            }
+        }
+        finally
+        {
+            if (results.size() < futures.size())
+            {
+                futures.forEach(future -> future.cancel(true));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,77 @@
+package com.avides.xpath.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import nu.xom.Element;
+import nu.xom.Node;
+import nu.xom.Nodes;
+import nu.xom.ParsingException;
+
+public class DescendantPathTest
+{
+    private static final String[] DESCENDANT_XPATHS =
+    { "//item", ".//item", "descendant::item", "//*", ".//*", "//item/@id", ".//item/@id", "descendant::*/@id", "//value", "//notExisting",
+            ".//notExisting/@id" };
+
+    private static final String[] NOT_DESCENDANT_XPATHS =
+    { "item", "//item/value", "//item[1]", "//x:item", "//item/text()", "///item", "//", "descendant-or-self::item", "//item/@id/value" };
+
+    @Test
+    public void testParse()
+    {
+        for (String xPath : DESCENDANT_XPATHS)
+        {
+            assertThat(XPathUtils.getExpressionCache().get(xPath, null)).as(xPath).isInstanceOf(DescendantPath.class);
+        }
+        for (String xPath : NOT_DESCENDANT_XPATHS)
+        {
+            assertThat(DescendantPath.parse(new CompiledXPathStub(xPath))).as(xPath).isNull();
+        }
+    }
+
+    @Test
+    public void testSelectFirstIsSameAsQuery() throws ParsingException
+    {
+        // nested items, so the first match in document-order is not the first match of a breadth-first search
+        Element root = XPathUtils.getRootElement("<root><list><entry><item id=\"1\"><item id=\"2\"/></item></entry><item id=\"0\"/><item/><item id=\"3\"/></list>"
+            + "<value xmlns=\"urn:default\">defaultNamespaced</value><value>plain</value><item id=\"4\"/></root>");
+        Element list = root.getFirstChildElement("list");
+        for (Node node : new Node[]
+        { root, list, list.getChild(0), root.getDocument(), list.getChild(1), ((Element) list.getChild(1)).getAttribute(0), new Element("detached") })
+        {
+            for (String xPath : DESCENDANT_XPATHS)
+            {
+                CompiledXPath compiledXPath = XPathUtils.getExpressionCache().get(xPath, null);
+                Nodes expected = node.query(xPath);
+
+                assertThat(compiledXPath.selectFirst(node)).as(xPath).isSameAs(expected.size() > 0 ? expected.get(0) : null);
+                assertThat(compiledXPath.exists(node)).as(xPath).isEqualTo(expected.size() > 0);
+                assertThat(compiledXPath.select(node).size()).as(xPath).isEqualTo(expected.size());
+                Iterator<Node> iterator = compiledXPath.iterate(node);
+                for (int i = 0; i < expected.size(); i++)
+                {
+                    assertThat(iterator.next()).as(xPath).isSameAs(expected.get(i));
+                }
+                assertThat(iterator.hasNext()).as(xPath).isFalse();
+            }
+        }
+    }
+
+    private static class CompiledXPathStub extends CompiledXPath
+    {
+        CompiledXPathStub(String xPath)
+        {
+            super(xPath, null);
+        }
+
+        @Override
+        Nodes select(Node root)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.avides.xpath.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import nu.xom.Document;
+import nu.xom.NodeFactory;
+import nu.xom.ParsingException;
+
+public class DocumentParserTest
+{
+    private static final String XML = "<root><value>1</value></root>";
+
+    private final AtomicInteger createdBuilders = new AtomicInteger();
+
+    @Test
+    public void testThreadLocalPoolingReusesBuilder() throws ParsingException
+    {
+        DocumentParser parser = newParser(ParserPooling.THREAD_LOCAL);
+
+        parseTimes(parser, 3);
+
+        assertThat(createdBuilders).hasValue(1);
+    }
+
+    @Test
+    public void testThreadLocalPoolingCreatesBuilderPerThread() throws Exception
+    {
+        DocumentParser parser = newParser(ParserPooling.THREAD_LOCAL);
+        parseTimes(parser, 2);
+
+        Thread thread = new Thread(() ->
+        {
+            try
+            {
+                parseTimes(parser, 2);
+            }
+            catch (ParsingException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertThat(createdBuilders).hasValue(2);
+    }
+
+    @Test
+    public void testBoundedPoolingReusesBuilder() throws ParsingException
+    {
+        DocumentParser parser = newParser(ParserPooling.BOUNDED);
+
+        parseTimes(parser, 3);
+
+        assertThat(createdBuilders).hasValue(1);
+    }
+
+    @Test
+    public void testBoundedPoolingKeepsAtMostMaximumBuilders() throws Exception
+    {
+        // each document waits until all are being parsed, so every thread needs its own builder
+        CyclicBarrier allParsing = new CyclicBarrier(4);
+        DocumentParser parser = new DocumentParser(XPathUnmarshaller.builder().nodeFactory(() ->
+        {
+            createdBuilders.incrementAndGet();
+            return new NodeFactory()
+            {
+                @Override
+                public Document startMakingDocument()
+                {
+                    await(allParsing);
+                    return super.startMakingDocument();
+                }
+            };
+        }).parserPooling(ParserPooling.BOUNDED).maximumPooledParsers(2));
+
+        parseConcurrently(parser, 4);
+        assertThat(createdBuilders).hasValue(4);
+
+        // only 2 of the 4 builders were kept
+        parseConcurrently(parser, 4);
+        assertThat(createdBuilders).hasValue(6);
+    }
+
+    @Test
+    public void testNoPoolingCreatesBuilderPerDocument() throws ParsingException
+    {
+        DocumentParser parser = newParser(ParserPooling.NONE);
+
+        parseTimes(parser, 3);
+
+        assertThat(createdBuilders).hasValue(3);
+    }
+
+    @Test
+    public void testBuilderIsDroppedAfterFailure() throws ParsingException
+    {
+        DocumentParser parser = newParser(ParserPooling.THREAD_LOCAL);
+        parseTimes(parser, 1);
+
+        assertThatThrownBy(() -> parser.getRootElement("<root>")).isInstanceOf(ParsingException.class);
+        parseTimes(parser, 2);
+
+        assertThat(createdBuilders).hasValue(2);
+    }
+
+    @Test
+    public void testMaximumPooledParsersMustBePositive()
+    {
+        assertThatThrownBy(() -> XPathUnmarshaller.builder().maximumPooledParsers(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private DocumentParser newParser(ParserPooling pooling)
+    {
+        return new DocumentParser(XPathUnmarshaller.builder().nodeFactory(() ->
+        {
+            createdBuilders.incrementAndGet();
+            return new NodeFactory();
+        }).parserPooling(pooling).maximumPooledParsers(2));
+    }
+
+    private static void parseConcurrently(DocumentParser parser, int threads) throws InterruptedException
+    {
+        List<Thread> started = new ArrayList<>();
+        AtomicInteger parsed = new AtomicInteger();
+        for (int i = 0; i < threads; i++)
+        {
+            Thread thread = new Thread(() ->
+            {
+                try
+                {
+                    parseTimes(parser, 1);
+                    parsed.incrementAndGet();
+                }
+                catch (ParsingException e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            });
+            thread.start();
+            started.add(thread);
+        }
+        for (Thread thread : started)
+        {
+            thread.join();
+        }
+        assertThat(parsed).hasValue(threads);
+    }
+
+    private static void await(CyclicBarrier barrier)
+    {
+        try
+        {
+            barrier.await(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException | BrokenBarrierException | TimeoutException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void parseTimes(DocumentParser parser, int times) throws ParsingException
+    {
+        for (int i = 0; i < times; i++)
+        {
+            assertThat(XPathUtils.queryInteger(parser.getRootElement(XML), "value")).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.avides.xpath.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.avides.xpath.utils.annotations.XPathFirst;
+import com.avides.xpath.utils.annotations.XPathList;
+import com.avides.xpath.utils.testsupport.XPathTestSupport;
+
+import nu.xom.Builder;
+import nu.xom.NodeFactory;
+import nu.xom.ParsingException;
+
+public class EarlyTerminatingNodeFactoryTest extends XPathTestSupport
+{
+    private static final String HEADER = "<message><header version=\"2\"><id>1</id></header>";
+
+    private final XPathUnmarshaller unmarshaller = XPathUnmarshaller.builder().earlyTermination(true).build();
+
+    @Test
+    public void testStopAfterHeader() throws ParsingException
+    {
+        StringBuilder payload = new StringBuilder("<payload>");
+        for (int i = 0; i < 100_000; i++)
+        {
+            payload.append("<item>").append(i).append("</item>");
+        }
+        byte[] xml = (HEADER + payload + "</payload></message>").getBytes(StandardCharsets.UTF_8);
+        CountingInputStream inputStream = new CountingInputStream(new ByteArrayInputStream(xml));
+
+        Message message = unmarshaller.unmarshal(inputStream, Message.class);
+
+        assertThat(message.header.id).isEqualTo("1");
+        assertThat(message.header.version).isEqualTo("2");
+        assertThat(inputStream.count).isLessThan(xml.length / 10);
+    }
+
+    @Test
+    public void testStopWithoutReadingRest() throws ParsingException
+    {
+        String xml = HEADER + "<payload><unclosed></message>";
+
+        assertThat(unmarshaller.unmarshal(xml, Message.class).header.id).isEqualTo("1");
+        assertThat(unmarshaller.unmarshal(xml, HeaderValues.class).version).isEqualTo("2");
+        assertThatThrownBy(() -> XPathUnmarshaller.getInstance().unmarshal(xml, Message.class)).isInstanceOf(ParsingException.class);
+    }
+
+    @Test
+    public void testParseCompletelyIfValuesCanFollow()
+    {
+        assertThatThrownBy(() -> unmarshaller.unmarshal(HEADER + "<payload><unclosed></message>", WithList.class))
+            .isInstanceOf(ParsingException.class);
+        assertThatThrownBy(() -> unmarshaller.unmarshal("<message><header/><payload><unclosed></message>", HeaderValues.class))
+            .isInstanceOf(ParsingException.class);
+    }
+
+    @Test
+    public void testUnmarshalCompletely() throws ParsingException
+    {
+        assertAnyObjectIsCorrect(unmarshaller.unmarshal(xml, AnyObject.class));
+        assertAnyObjectIsCorrect(XPathUnmarshaller.builder().earlyTermination(true).pruneUnusedNodes(true).build().unmarshal(xml, AnyObject.class));
+    }
+
+    @Test
+    public void testHoldsNoDocumentAfterParsing() throws Exception
+    {
+        // like the pooled builders of the DocumentParser
+        EarlyTerminatingNodeFactory factory = new EarlyTerminatingNodeFactory(new NodeFactory());
+        Builder builder = new Builder(factory);
+
+        factory.setFirstValuePaths(ElementPaths.forType(HeaderValues.class, Collections.emptyMap()).getFirstValuePaths());
+        assertThatThrownBy(() -> builder.build(new StringReader(HEADER + "<payload/></message>")))
+            .matches(e -> EarlyTerminatingNodeFactory.isTerminatedEarly((ParsingException) e));
+        assertThat(factory.takeDocument().getRootElement().getLocalName()).isEqualTo("message");
+        assertThat(factory.takeDocument()).isNull();
+
+        factory.setFirstValuePaths(null);
+        assertThat(builder.build(new StringReader(HEADER + "</message>")).getRootElement().getChildCount()).isEqualTo(1);
+        assertThat(factory.takeDocument()).isNull();
+    }
+
+    public static class Message
+    {
+        @XPathFirst(value = "header", isSubType = true)
+        private Header header;
+    }
+
+    public static class Header
+    {
+        @XPathFirst("id")
+        private String id;
+
+        @XPathFirst("@version")
+        private String version;
+    }
+
+    public static class HeaderValues
+    {
+        @XPathFirst("header/id")
+        private String id;
+
+        @XPathFirst("header/@version")
+        private String version;
+    }
+
+    public static class WithList
+    {
+        @XPathFirst(value = "header", isSubType = true)
+        private Header header;
+
+        @XPathList("payload/item")
+        private List<String> items;
+    }
+
+    private static class CountingInputStream extends FilterInputStream
+    {
+        int count;
+
+        CountingInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int read = super.read();
+            count += read >= 0 ? 1 : 0;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int read = super.read(b, off, len);
+            count += Math.max(read, 0);
+            return read;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.avides.xpath.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.avides.xpath.utils.testsupport.XPathTestSupport;
+
+import nu.xom.ParsingException;
+
+public class MappedFileInputStreamTest extends XPathTestSupport
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testReadInChunks() throws IOException
+    {
+        byte[] content = new byte[10_000];
+        for (int i = 0; i < content.length; i++)
+        {
+            content[i] = (byte) i;
+        }
+        File file = folder.newFile();
+        Files.write(file.toPath(), content);
+
+        try (InputStream inputStream = new MappedFileInputStream(file, 333))
+        {
+            ByteArrayOutputStream read = new ByteArrayOutputStream();
+            read.write(inputStream.read());
+            byte[] buffer = new byte[1024];
+            int length;
+            while ((length = inputStream.read(buffer, 0, buffer.length)) >= 0)
+            {
+                read.write(buffer, 0, length);
+            }
+
+            assertThat(read.toByteArray()).isEqualTo(content);
+            assertThat(inputStream.read()).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    public void testReadEmptyFile() throws IOException
+    {
+        try (InputStream inputStream = new MappedFileInputStream(folder.newFile(), 333))
+        {
+            assertThat(inputStream.read()).isEqualTo(-1);
+            assertThat(inputStream.read(new byte[10], 0, 10)).isEqualTo(-1);
+        }
+    }
+
+    @Test
+    public void testUnmarshalMappedFile() throws IOException, ParsingException
+    {
+        File file = folder.newFile("test.xml");
+        Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+        XPathUnmarshaller unmarshaller = XPathUnmarshaller.builder().memoryMappingThreshold(0).build();
+
+        assertAnyObjectIsCorrect(unmarshaller.unmarshal(file, AnyObject.class));
+    }
+
+    @Test
+    public void testResolveRelativeReferences() throws IOException, ParsingException
+    {
+        Files.write(folder.newFile("entities.dtd").toPath(), "<!ENTITY value \"resolved\">".getBytes(StandardCharsets.UTF_8));
+        File file = folder.newFile("entities.xml");
+        Files.write(file.toPath(), "<!DOCTYPE root SYSTEM \"entities.dtd\"><root>&value;</root>".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(XPathUnmarshaller.builder().memoryMappingThreshold(0).build().getRootElement(file).getValue()).isEqualTo("resolved");
+    }
+}
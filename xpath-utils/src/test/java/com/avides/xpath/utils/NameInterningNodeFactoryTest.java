@@ -0,0 +1,69 @@
+package com.avides.xpath.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import nu.xom.Builder;
+import nu.xom.Element;
+import nu.xom.NodeFactory;
+import nu.xom.ParsingException;
+import nu.xom.XPathContext;
+
+public class NameInterningNodeFactoryTest
+{
+    private static final String XML = "<p:root xmlns:p=\"urn:p\"><p:item p:id=\"1\" /><p:item p:id=\"2\" /><item /></p:root>";
+
+    @Test
+    public void testShareNamesBetweenNodesAndDocuments() throws ParsingException
+    {
+        Builder builder = new Builder(new NameInterningNodeFactory(new NodeFactory(), NameInterningNodeFactory.DEFAULT_MAXIMUM_NAMES));
+        Element first = build(builder);
+        Element second = build(builder);
+
+        Element item = first.getChildElements().get(0);
+        assertThat(item.getLocalName()).isSameAs("item");
+        assertThat(item.getNamespacePrefix()).isSameAs("p");
+        assertThat(item.getNamespaceURI()).isSameAs("urn:p");
+        assertThat(item.getAttribute(0).getLocalName()).isSameAs("id");
+        assertThat(item.getAttribute(0).getNamespacePrefix()).isSameAs("p");
+        assertThat(first.getChildElements().get(1).getLocalName()).isSameAs("item");
+        assertThat(first.getChildElements().get(2).getLocalName()).isSameAs("item");
+        assertThat(second.getChildElements().get(0).getLocalName()).isSameAs("item");
+        assertThat(second.toXML()).isEqualTo(XML);
+    }
+
+    @Test
+    public void testInternBoundedNumberOfNames() throws ParsingException
+    {
+        Builder builder = new Builder(new NameInterningNodeFactory(new NodeFactory(), 1));
+
+        Element root = build(builder);
+
+        assertThat(root.toXML()).isEqualTo(XML);
+        assertThat(root.getChildElements().get(0).getLocalName()).isEqualTo("item").isNotSameAs(root.getChildElements().get(1).getLocalName());
+    }
+
+    @Test
+    public void testInternNamesOfUnmarshaller() throws ParsingException
+    {
+        Element root = XPathUnmarshaller.builder().internNames(true).build().getRootElement(XML);
+
+        assertThat(root.getLocalName()).isSameAs("root");
+        assertThat(XPathUtils.queryNodes(root, "p:item/@p:id", new XPathContext("p", "urn:p"))).hasSize(2);
+    }
+
+    private static Element build(Builder builder) throws ParsingException
+    {
+        try
+        {
+            return builder.build(XML, null).getRootElement();
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
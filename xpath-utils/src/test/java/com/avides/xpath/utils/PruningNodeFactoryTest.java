@@ -0,0 +1,86 @@
+package com.avides.xpath.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.avides.xpath.utils.annotations.XPathFirst;
+import com.avides.xpath.utils.annotations.XPathList;
+import com.avides.xpath.utils.testsupport.XPathTestSupport;
+
+import nu.xom.Builder;
+import nu.xom.Element;
+import nu.xom.ParsingException;
+
+public class PruningNodeFactoryTest extends XPathTestSupport
+{
+    @Test
+    public void testUnmarshalPruned() throws ParsingException
+    {
+        XPathUnmarshaller unmarshaller = XPathUnmarshaller.builder().pruneUnusedNodes(true).build();
+
+        assertAnyObjectIsCorrect(unmarshaller.unmarshal(xml, AnyObject.class));
+        assertAnyObjectIsCorrect(unmarshaller.unmarshal(xml, AnyObject.class));
+    }
+
+    @Test
+    public void testPruneUnusedSubtrees() throws ParsingException
+    {
+        Element pruned = build(AnyObject.class, xml);
+
+        assertThat(pruned.query("singleString").get(0).getValue()).isEqualTo("anyStringValue");
+        assertThat(pruned.query("map/entry")).hasSize(4);
+        assertThat(pruned.query("singleDouble")).isEmpty();
+        assertThat(pruned.query("valueTypedMap")).isEmpty();
+        assertThat(pruned.query("descendant::node()").size()).isLessThan(root.query("descendant::node()").size());
+    }
+
+    @Test
+    public void testKeepAttributesAndNeededTextOnly() throws ParsingException
+    {
+        Element pruned = build(Item.class, "<root><item id=\"1\">text<name>first</name><skipped/></item><item id=\"2\"/><other>text</other></root>");
+
+        assertThat(pruned.toXML()).isEqualTo("<root><item id=\"1\"><name>first</name></item><item id=\"2\" /></root>");
+        assertThat(XPathUtils.fromRoot(pruned, Item.class).ids).containsExactly("1", "2");
+        assertThat(XPathUtils.fromRoot(pruned, Item.class).name).isEqualTo("first");
+    }
+
+    @Test
+    public void testKeepEverythingForNotSimpleXPath() throws ParsingException
+    {
+        String xml = "<root><item id=\"1\"><name>first</name></item><other>text</other></root>";
+
+        assertThat(build(NotSimple.class, xml).toXML()).isEqualTo(xml);
+    }
+
+    private static Element build(Class<?> type, String xml) throws ParsingException
+    {
+        try
+        {
+            Builder builder = new Builder(XPathUnmarshaller.getInstance().newPruningNodeFactory(type));
+            return builder.build(xml, null).getRootElement();
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class Item
+    {
+        @XPathList("item/@id")
+        private List<String> ids;
+
+        @XPathFirst("item/name")
+        private String name;
+    }
+
+    public static class NotSimple
+    {
+        @XPathFirst("item[@id='1']/name")
+        private String name;
+    }
+}
@@ -0,0 +1,105 @@
+package com.avides.xpath.utils;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.avides.xpath.utils.annotations.XPathFirst;
+import com.avides.xpath.utils.testsupport.XPathTestSupport;
+
+import nu.xom.ParsingException;
+import nu.xom.XPathContext;
+
+public class RecordIteratorTest extends XPathTestSupport
+{
+    @Test
+    public void testStreamRecords() throws ParsingException
+    {
+        String record = xml.substring(xml.indexOf("<root>"));
+        String feed = "<feed><header><root>ignored</root></header><records>" + record + record + record + "</records></feed>";
+
+        try (Stream<AnyObject> records = XPathUtils.stream(inputStream(feed), "/feed/records/root", AnyObject.class))
+        {
+            List<AnyObject> anyObjects = records.collect(toList());
+
+            assertThat(anyObjects).hasSize(3);
+            anyObjects.forEach(this::assertAnyObjectIsCorrect);
+        }
+    }
+
+    @Test
+    public void testStreamRecordsAtAnyDepth() throws ParsingException
+    {
+        String feed = "<feed><item><id>1</id><item><id>nested</id></item></item><group><item><id>2</id></item></group><other><id>3</id></other></feed>";
+
+        assertThat(ids(feed, "item")).containsExactly("1", "2");
+        assertThat(ids(feed, "//group/item")).containsExactly("2");
+        assertThat(ids(feed, "/feed/*")).containsExactly("1", null, "3");
+        assertThat(ids(feed, "/item")).isEmpty();
+    }
+
+    @Test
+    public void testStreamRecordsWithNamespaces() throws ParsingException
+    {
+        String feed = "<f:feed xmlns:f=\"urn:feed\" xmlns:v=\"urn:value\"><f:item f:id=\"1\"><v:value>a</v:value></f:item>"
+            + "<item xmlns=\"urn:feed\"><value xmlns=\"urn:value\">b</value></item></f:feed>";
+        XPathContext context = new XPathContext("v", "urn:value");
+        context.addNamespace("f", "urn:feed");
+
+        Iterator<Record> records = XPathUtils.stream(inputStream(feed), "f:item", Record.class).iterator();
+
+        assertThat(records.next().id).isNull();
+        assertThat(records.hasNext()).isFalse();
+        assertThat(new RecordIterator<>(inputStream(feed), "item", record -> XPathUtils.queryNodes(record, "@f:id", context).size())).toIterable()
+            .containsExactly(1, 0);
+        assertThat(new RecordIterator<>(inputStream(feed), "item", record -> XPathUtils.queryNodes(record, "v:value", context).get(0).getValue()))
+            .toIterable()
+            .containsExactly("a", "b");
+    }
+
+    @Test
+    public void testStreamIsLazy() throws ParsingException
+    {
+        String feed = "<feed><item><id>1</id></item><item><id>2</id></item><broken></feed>";
+
+        Iterator<Record> records = XPathUtils.stream(inputStream(feed), "item", Record.class).iterator();
+
+        assertThat(records.next().id).isEqualTo("1");
+        assertThat(records.next().id).isEqualTo("2");
+        assertThatThrownBy(records::hasNext).isInstanceOf(RuntimeException.class).hasMessage("the xml can not be parsed");
+    }
+
+    @Test
+    public void testStreamWithoutRecordPath()
+    {
+        assertThatThrownBy(() -> XPathUtils.stream(inputStream("<feed/>"), "/", Record.class)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<String> ids(String feed, String recordPath) throws ParsingException
+    {
+        try (Stream<Record> records = XPathUtils.stream(inputStream(feed), recordPath, Record.class))
+        {
+            return records.map(record -> record.id).collect(toList());
+        }
+    }
+
+    private static InputStream inputStream(String xml)
+    {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static class Record
+    {
+        @XPathFirst("id")
+        String id;
+    }
+}
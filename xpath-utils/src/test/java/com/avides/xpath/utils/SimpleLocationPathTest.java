@@ -0,0 +1,113 @@
+package com.avides.xpath.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.avides.xpath.utils.testsupport.XPathTestSupport;
+
+import nu.xom.Attribute;
+import nu.xom.Comment;
+import nu.xom.Element;
+import nu.xom.Node;
+import nu.xom.Nodes;
+import nu.xom.ParsingException;
+import nu.xom.Text;
+
+public class SimpleLocationPathTest extends XPathTestSupport
+{
+    private static final String[] SIMPLE_XPATHS =
+    { "singleString", "singleBoolean", "singleBoolean[2]", "singleBoolean[3]", "map/entry", "map/entry/string", "map/entry/string[2]", "map/entry[3]/string[2]",
+            "map/*/string[1]", "*", "*[2]", "*/entry/*", "list/value/text()", "list/value[2]/text()", "emptyValue/text()", "typedList/subObject[1]/singleString",
+            "@id", "subMap/entry/@id", "subMap/entry/key/text()", "notExisting", "notExisting/value", "list/value[10]" };
+
+    private static final String[] NOT_SIMPLE_XPATHS =
+    { "/root", "//value", "list/value[last()]", "list/value[@id]", "list/./value", "..", "x:value", "text()/value", "@id/value", "list/value[0]", "list/ value",
+            "node()", "count(list/value)", "" };
+
+    @Test
+    public void testParse()
+    {
+        for (String xPath : SIMPLE_XPATHS)
+        {
+            assertThat(XPathUtils.getExpressionCache().get(xPath, null)).as(xPath).isInstanceOf(SimpleLocationPath.class);
+        }
+        for (String xPath : NOT_SIMPLE_XPATHS)
+        {
+            assertThat(SimpleLocationPath.parse(new CompiledXPathStub(xPath))).as(xPath).isNull();
+        }
+    }
+
+    @Test
+    public void testSelectIsSameAsQuery() throws ParsingException
+    {
+        Element attributed = XPathUtils.getRootElement("<root id=\"1\"><subMap><entry id=\"a\"><key>k</key></entry><entry id=\"b\"/></subMap>"
+            + "<x:value xmlns:x=\"urn:any\">namespaced</x:value><value xmlns=\"urn:default\">defaultNamespaced</value><value>plain</value></root>");
+        for (Element element : new Element[]
+        { root, attributed, root.getFirstChildElement("map"), new Element("detached") })
+        {
+            for (String xPath : SIMPLE_XPATHS)
+            {
+                assertSameAsQuery(element, xPath);
+            }
+            assertSameAsQuery(element, "value");
+        }
+    }
+
+    @Test
+    public void testSelectWithIrregularText()
+    {
+        Element element = new Element("root");
+        element.appendChild(new Text(""));
+        element.appendChild(new Element("value"));
+        element.appendChild(new Text("a"));
+        element.appendChild(new Text("b"));
+        element.appendChild(new Comment("comment"));
+        element.appendChild(new Text("c"));
+        element.addAttribute(new Attribute("id", "1"));
+
+        assertSameAsQuery(element, "text()");
+        assertSameAsQuery(element, "value");
+        assertSameAsQuery(element, "@id");
+    }
+
+    @Test
+    public void testSelectOnDocument()
+    {
+        assertSameAsQuery(root.getDocument(), "root/singleString");
+    }
+
+    private static void assertSameAsQuery(Node root, String xPath)
+    {
+        CompiledXPath compiledXPath = XPathUtils.getExpressionCache().get(xPath, null);
+        List<Node> expected = toList(root.query(xPath));
+
+        assertThat(toList(compiledXPath.select(root))).as(xPath).containsExactlyElementsOf(expected);
+        assertThat(compiledXPath.selectFirst(root)).as(xPath).isSameAs(expected.isEmpty() ? null : expected.get(0));
+        assertThat(compiledXPath.iterate(root)).toIterable().as(xPath).containsExactlyElementsOf(expected);
+    }
+
+    private static List<Node> toList(Nodes nodes)
+    {
+        List<Node> list = new ArrayList<>();
+        nodes.forEach(list::add);
+        return list;
+    }
+
+    private static class CompiledXPathStub extends CompiledXPath
+    {
+        CompiledXPathStub(String xPath)
+        {
+            super(xPath, null);
+        }
+
+        @Override
+        Nodes select(Node root)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
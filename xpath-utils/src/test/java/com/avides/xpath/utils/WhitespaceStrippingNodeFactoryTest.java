@@ -0,0 +1,78 @@
+package com.avides.xpath.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import com.avides.xpath.utils.testsupport.XPathTestSupport;
+
+import nu.xom.Element;
+import nu.xom.NodeFactory;
+import nu.xom.Nodes;
+import nu.xom.ParsingException;
+
+public class WhitespaceStrippingNodeFactoryTest extends XPathTestSupport
+{
+    private final XPathUnmarshaller unmarshaller = XPathUnmarshaller.builder().stripWhitespace(true).build();
+
+    @Test
+    public void testStripIgnorableWhitespace() throws ParsingException
+    {
+        Element stripped = unmarshaller.getRootElement("<root>\n  <a>x</a>\n  <b> </b>\n  <!--c-->\n  <c>\n  </c>\n</root>");
+
+        assertThat(stripped.toXML()).isEqualTo("<root><a>x</a><b> </b><!--c--><c>\n  </c></root>");
+    }
+
+    @Test
+    public void testStripWhitespaceOnlyTextOfPrettyPrintedDocument() throws ParsingException
+    {
+        StringBuilder prettyPrinted = new StringBuilder("<root>\n");
+        for (int i = 0; i < 100; i++)
+        {
+            prettyPrinted.append("    <item>\n        <id>").append(i).append("</id>\n    </item>\n");
+        }
+        String whitespaceOnlyText = "//text()[normalize-space() = '']";
+
+        Element stripped = unmarshaller.getRootElement(prettyPrinted.append("</root>").toString());
+
+        assertThat(XPathUnmarshaller.getInstance().getRootElement(prettyPrinted.toString()).query(whitespaceOnlyText).size()).isEqualTo(301);
+        assertThat(stripped.query(whitespaceOnlyText).size()).isZero();
+        assertThat(stripped.query("//text()").size()).isEqualTo(100);
+    }
+
+    @Test
+    public void testKeepPreservedSpace() throws ParsingException
+    {
+        String xml = "<root><pre xml:space=\"preserve\">\n  <a>x</a>\n</pre>\n  <a>y</a>\n</root>";
+
+        assertThat(unmarshaller.getRootElement(xml).toXML()).isEqualTo("<root><pre xml:space=\"preserve\">\n  <a>x</a>\n</pre><a>y</a></root>");
+    }
+
+    @Test
+    public void testMergeAdjacentText() throws ParsingException
+    {
+        XPathUnmarshaller withoutComments = XPathUnmarshaller.builder().stripWhitespace(true).nodeFactory(() -> new NodeFactory()
+        {
+            @Override
+            public Nodes makeComment(String data)
+            {
+                return new Nodes();
+            }
+        }).build();
+
+        Element stripped = withoutComments.getRootElement("<root>x<!--c-->y<!--c--><![CDATA[z]]></root>");
+
+        assertThat(stripped.getChildCount()).isEqualTo(1);
+        assertThat(stripped.getValue()).isEqualTo("xyz");
+    }
+
+    @Test
+    public void testUnmarshalStripped() throws ParsingException
+    {
+        Element stripped = unmarshaller.getRootElement(xml);
+
+        assertThat(stripped.query("descendant::node()").size()).isLessThan(root.query("descendant::node()").size() * 2 / 3);
+        assertAnyObjectIsCorrect(unmarshaller.unmarshal(xml, AnyObject.class));
+        assertAnyObjectIsCorrect(XPathUnmarshaller.builder().stripWhitespace(true).pruneUnusedNodes(true).build().unmarshal(xml, AnyObject.class));
+    }
+}
@@ -0,0 +1,89 @@
+package com.avides.xpath.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.Test;
+
+import com.avides.xpath.utils.testsupport.XPathTestSupport;
+
+import nu.xom.Element;
+import nu.xom.ParsingException;
+import nu.xom.XPathContext;
+import nu.xom.XPathException;
+
+public class XPathExpressionCacheTest extends XPathTestSupport
+{
+    @Test
+    public void testGet()
+    {
+        XPathExpressionCache cache = new XPathExpressionCache(10);
+
+        CompiledXPath compiledXPath = cache.get("list/value", null);
+        assertThat(compiledXPath.select(root).size()).isEqualTo(3);
+        assertThat(cache.get("list/value", null)).isSameAs(compiledXPath);
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getEvictionCount()).isZero();
+    }
+
+    @Test
+    public void testGetWithEviction()
+    {
+        XPathExpressionCache cache = new XPathExpressionCache(2);
+
+        CompiledXPath first = cache.get("singleString", null);
+        cache.get("singleInt", null);
+        cache.get("singleDouble", null);
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+        assertThat(cache.get("singleString", null)).isNotSameAs(first);
+        assertThat(cache.getMissCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void testGetWithContext() throws ParsingException
+    {
+        Element namespaced = XPathUtils.getRootElement("<root xmlns:x=\"urn:any\"><x:value>1</x:value><value>2</value></root>");
+        XPathContext context = new XPathContext("y", "urn:any");
+        XPathExpressionCache cache = new XPathExpressionCache(10);
+
+        assertThat(cache.get("y:value", context).select(namespaced).get(0).getValue()).isEqualTo("1");
+        assertThat(cache.get("value", context)).isNotSameAs(cache.get("value", null));
+        assertThat(XPathUtils.queryNodes(namespaced, "y:value", context).get(0).getValue()).isEqualTo("1");
+    }
+
+    @Test
+    public void testGetWithDetachedNode()
+    {
+        Element detached = new Element("root");
+        detached.appendChild(new Element("value"));
+
+        assertThat(new XPathExpressionCache(10).get("value", null).select(detached).size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGetWithInvalidXPath()
+    {
+        assertThatThrownBy(() -> XPathUtils.queryNodes(root, "list/[")).isInstanceOf(XPathException.class);
+    }
+
+    @Test
+    public void testClear()
+    {
+        XPathExpressionCache cache = new XPathExpressionCache(10);
+        cache.get("singleString", null);
+        cache.clear();
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getMaximumSize()).isEqualTo(10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructWithInvalidMaximumSize()
+    {
+        new XPathExpressionCache(0);
+    }
+}
@@ -0,0 +1,91 @@
+package com.avides.xpath.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.avides.xpath.utils.testsupport.XPathTestSupport;
+
+import nu.xom.Element;
+import nu.xom.Node;
+import nu.xom.ParsingException;
+
+public class XPathQueryBatchTest extends XPathTestSupport
+{
+    private static final String[] XPATHS =
+    { "singleString", "singleBoolean[2]", "map/entry", "map/entry/string", "map/entry/string[2]", "map/entry[3]/string[2]", "map/*/string[1]", "*",
+            "*[2]", "*/entry/*", "list/value/text()", "list/value[2]/text()", "emptyValue/text()", "typedList/subObject[1]/singleString", "@id",
+            "subMap/entry/@id", "subMap/entry/key/text()", "notExisting", "list/value[10]", ".//value", "descendant::string", ".//entry/@id", "//value",
+            "list/value[last()]", "list/value[. > 600]", "list/value[@id]" };
+
+    @Test
+    public void testQueryFirstNodesIsSameAsQueryFirstNode() throws ParsingException
+    {
+        Element attributed = XPathUtils.getRootElement("<root id=\"1\"><subMap><entry id=\"a\"><key>k</key><entry id=\"nested\"/></entry><entry id=\"b\"/>"
+            + "</subMap><x:value xmlns:x=\"urn:any\">namespaced</x:value><value>plain</value></root>");
+        XPathQueryBatch batch = XPathQueryBatch.of(toMap(XPATHS));
+        for (Node node : new Node[]
+        { root, attributed, root.getFirstChildElement("map"), root.getDocument(), new Element("detached") })
+        {
+            Map<String, Node> found = batch.queryFirstNodes(node);
+
+            assertThat(found.keySet()).containsExactly(XPATHS);
+            for (String xPath : XPATHS)
+            {
+                assertThat(found.get(xPath)).as(xPath).isSameAs(XPathUtils.queryFirstNode(node, xPath));
+            }
+        }
+    }
+
+    @Test
+    public void testQueryNodesIsSameAsQueryNodeList()
+    {
+        XPathQueryBatch batch = XPathQueryBatch.of(Arrays.asList("singleString", ".//value"), Arrays.asList(XPATHS));
+        for (Node node : new Node[]
+        { root, root.getFirstChildElement("map"), root.getDocument() })
+        {
+            List<List<Node>> found = batch.queryNodes(node);
+
+            assertThat(found).hasSize(XPATHS.length + 2);
+            assertThat(found.get(0)).containsExactlyElementsOf(XPathUtils.queryNodeList(node, "singleString", 0, 1));
+            for (int i = 0; i < XPATHS.length; i++)
+            {
+                assertThat(found.get(i + 2)).as(XPATHS[i]).containsExactlyElementsOf(XPathUtils.queryNodeList(node, XPATHS[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testQueryAll()
+    {
+        Map<String, String> xPaths = new LinkedHashMap<>();
+        xPaths.put("string", "singleString");
+        xPaths.put("second", "list/value[2]");
+        xPaths.put("firstValue", "list/value/text()");
+        xPaths.put("last", "list/value[last()]");
+        xPaths.put("missing", "notExisting");
+
+        Map<String, String> values = XPathUtils.queryAll(root, xPaths);
+
+        assertThat(values).containsEntry("string", XPathUtils.queryFirst(root, "singleString"))
+            .containsEntry("second", "678")
+            .containsEntry("firstValue", "567")
+            .containsEntry("last", "789")
+            .containsEntry("missing", null);
+    }
+
+    private static Map<String, String> toMap(String[] xPaths)
+    {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (String xPath : xPaths)
+        {
+            map.put(xPath, xPath);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,442 @@
+package com.avides.xpath.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.avides.xpath.utils.annotations.XPathFirst;
+import com.avides.xpath.utils.annotations.XPathList;
+import com.avides.xpath.utils.annotations.XPathMap;
+import com.avides.xpath.utils.converters.NoneConverter;
+import com.avides.xpath.utils.converters.ToIntegerConverter;
+import com.avides.xpath.utils.processors.GeneratedUnmarshaller;
+import com.avides.xpath.utils.processors.UnmarshallerSupport;
+import com.avides.xpath.utils.testsupport.XPathTestSupport;
+
+import nu.xom.Element;
+import nu.xom.NodeFactory;
+import nu.xom.ParsingException;
+import nu.xom.ValidityException;
+
+public class XPathUnmarshallerTest extends XPathTestSupport
+{
+    private XPathUnmarshaller unmarshaller = XPathUnmarshaller.getInstance();
+
+    @Test
+    public void testUnmarshal() throws ParsingException
+    {
+        AnyObject anyObject = unmarshaller.unmarshal(xml, AnyObject.class);
+
+        assertThat(anyObject.getAnyString()).isEqualTo("anyStringValue");
+        assertThat(anyObject.getAnyInteger()).isEqualTo(123);
+        assertThat(anyObject.getAnyIntegerWithoutGivenConverterClass()).isEqualTo(123);
+        assertThat(anyObject.getAnyInt()).isEqualTo(123);
+        assertThat(anyObject.getAnyIntWithoutGivenConverterClass()).isEqualTo(123);
+        assertThat(anyObject.getNotExistingString()).isNull();
+        assertThat(anyObject.getNotExistingInteger()).isNull();
+        assertThat(anyObject.getNotExistingInt()).isZero();
+        assertThat(anyObject.getAnyStringMap()).hasSize(4)
+            .containsEntry("anyKey1", "234")
+            .containsEntry("anyKey2", "345")
+            .containsEntry("anyKey3", null)
+            .containsEntry("anyKey4", "456");
+        assertThat(anyObject.getAnyIntegerMap()).hasSize(4)
+            .containsEntry("anyKey1", Integer.valueOf(234))
+            .containsEntry("anyKey2", Integer.valueOf(345))
+            .containsEntry("anyKey3", null)
+            .containsEntry("anyKey4", Integer.valueOf(456));
+        assertThat(anyObject.getAnyStringList()).containsExactly("567", "678", "789");
+        assertThat(anyObject.getAnyIntegerList()).containsExactly(Integer.valueOf(567), Integer.valueOf(678), Integer.valueOf(789));
+        assertThat(anyObject.getAnyEnum()).isSameAs(AnyEnum.ENUM_VALUE2);
+        assertThat(anyObject.getEmptyEnum()).isNull();
+    }
+
+    @Test
+    public void testUnmarshalWithChangedDefaultConverter() throws ParsingException
+    {
+        assertThat(unmarshaller.unmarshal(xml, AnyObject.class).getAnyIntegerWithoutGivenConverterClass()).isEqualTo(123);
+
+        XPathUnmarshaller.registerDefaultConverterInstanceToType(Integer.class, value -> Integer.valueOf(value.trim()) * 2);
+        try
+        {
+            assertThat(unmarshaller.unmarshal(xml, AnyObject.class).getAnyIntegerWithoutGivenConverterClass()).isEqualTo(246);
+        }
+        finally
+        {
+            XPathUnmarshaller.resetDefaultConverterInstancesToType();
+        }
+
+        assertThat(unmarshaller.unmarshal(xml, AnyObject.class).getAnyIntegerWithoutGivenConverterClass()).isEqualTo(123);
+    }
+
+    @Test
+    public void testBuilderCreatesIndependentInstance() throws ParsingException
+    {
+        XPathUnmarshaller built = XPathUnmarshaller.builder()
+            .defaultConverterInstanceToType(Integer.class, value -> Integer.valueOf(value.trim()) * 2)
+            .build();
+        XPathUnmarshaller.registerDefaultConverterInstanceToType(Integer.class, value -> Integer.valueOf(value.trim()) * 3);
+        try
+        {
+            assertThat(built.unmarshal(xml, AnyObject.class).getAnyIntegerWithoutGivenConverterClass()).isEqualTo(246);
+            assertThat(unmarshaller.unmarshal(xml, AnyObject.class).getAnyIntegerWithoutGivenConverterClass()).isEqualTo(369);
+        }
+        finally
+        {
+            XPathUnmarshaller.resetDefaultConverterInstancesToType();
+        }
+        assertThat(built.unmarshal(xml, AnyObject.class).getAnyIntegerWithoutGivenConverterClass()).isEqualTo(246);
+    }
+
+    @Test
+    public void testBuilderWithConverterInstance()
+    {
+        ToIntegerConverter converter = new ToIntegerConverter();
+        XPathUnmarshaller built = XPathUnmarshaller.builder().converterInstance(converter).build();
+
+        assertThat(built.getConverter(ToIntegerConverter.class)).isSameAs(converter);
+        assertThat(XPathUtils.getConverter(ToIntegerConverter.class)).isNotSameAs(converter);
+        assertAnyObjectIsCorrect(built.unmarshal(root, AnyObject.class));
+    }
+
+    @Test
+    public void testBuilderWithoutDefaultConverterInstanceToType()
+    {
+        XPathUnmarshaller built = XPathUnmarshaller.builder().withoutDefaultConverterInstanceToType(Integer.class).build();
+
+        assertThatThrownBy(() -> built.unmarshal(root, AnyObject.class)).hasMessageContaining("field-types not matching");
+    }
+
+    @Test
+    public void testBuilderWithParserSettings() throws ParsingException
+    {
+        AtomicInteger createdNodeFactories = new AtomicInteger();
+        XPathUnmarshaller built = XPathUnmarshaller.builder().nodeFactory(() ->
+        {
+            createdNodeFactories.incrementAndGet();
+            return new NodeFactory();
+        }).build();
+
+        assertAnyObjectIsCorrect(built.unmarshal(xml, AnyObject.class));
+        assertThat(createdNodeFactories).hasValue(1);
+        assertThatThrownBy(() -> XPathUnmarshaller.builder().validating(true).build().unmarshal(xml, AnyObject.class))
+            .isInstanceOf(ValidityException.class);
+    }
+
+    @Test
+    public void testUnmarshalAsync() throws Exception
+    {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            File file = new File(getClass().getClassLoader().getResource("test.xml").getFile());
+            CompletableFuture<AnyObject> fromFile = unmarshaller.unmarshalAsync(file, AnyObject.class, executor);
+            CompletableFuture<AnyObject> fromReader = unmarshaller.unmarshalAsync(new StringReader(xml), AnyObject.class, executor);
+
+            assertAnyObjectIsCorrect(fromFile.get());
+            assertAnyObjectIsCorrect(fromReader.get());
+            assertThat(unmarshaller.getRootElementAsync(file, executor).get().getLocalName()).isEqualTo("root");
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnmarshalAsyncMemoryMapped() throws Exception
+    {
+        XPathUnmarshaller mappingUnmarshaller = XPathUnmarshaller.builder().memoryMappingThreshold(1).build();
+        File file = new File(getClass().getClassLoader().getResource("test.xml").getFile());
+
+        assertThat(XPathUnmarshaller.getInstance().getParser().isMemoryMapped(file)).isFalse();
+        assertThat(mappingUnmarshaller.getParser().isMemoryMapped(file)).isTrue();
+        assertAnyObjectIsCorrect(mappingUnmarshaller.unmarshalAsync(file, AnyObject.class, Runnable::run).get());
+    }
+
+    @Test
+    public void testUnmarshalAsyncFailing()
+    {
+        Executor executor = Runnable::run;
+
+        assertThatThrownBy(() -> unmarshaller.unmarshalAsync(new File("notExisting.xml"), AnyObject.class, executor).get())
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(ParsingException.class);
+        assertThatThrownBy(() -> unmarshaller.unmarshalAsync(new ByteArrayInputStream("invalid".getBytes()), AnyObject.class, executor).get())
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(ParsingException.class);
+    }
+
+    @Test
+    public void testUnmarshalAll() throws Exception
+    {
+        Path file = new File(getClass().getClassLoader().getResource("test.xml").getFile()).toPath();
+        List<Path> paths = Collections.nCopies(20, file);
+
+        List<AnyObject> anyObjects = unmarshaller.unmarshalAll(paths, AnyObject.class, 4);
+
+        assertThat(anyObjects).hasSize(20);
+        anyObjects.forEach(this::assertAnyObjectIsCorrect);
+        assertThat(unmarshaller.unmarshalAll(Collections.emptyList(), AnyObject.class)).isEmpty();
+    }
+
+    @Test
+    public void testUnmarshalAllFailing()
+    {
+        Path file = new File(getClass().getClassLoader().getResource("test.xml").getFile()).toPath();
+        List<Path> paths = Arrays.asList(file, Paths.get("notExisting.xml"), file);
+
+        assertThatThrownBy(() -> unmarshaller.unmarshalAll(paths, AnyObject.class)).isInstanceOf(ParsingException.class);
+        assertThatThrownBy(() -> unmarshaller.unmarshalAll(paths, AnyObject.class, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testQueryListParallel() throws ParsingException
+    {
+        StringBuilder largeXml = new StringBuilder("<root><list>");
+        for (int i = 0; i < 5000; i++)
+        {
+            largeXml.append("<value><singleString>").append(i).append("</singleString></value>");
+        }
+        Element largeRoot = XPathUtils.getRootElement(largeXml.append("</list></root>").toString());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            XPathUnmarshaller parallelUnmarshaller = XPathUnmarshaller.builder().parallelListThreshold(100).forkJoinPool(pool).build();
+
+            ParallelListObject parallelListObject = parallelUnmarshaller.unmarshal(largeRoot, ParallelListObject.class);
+            List<Integer> integers = parallelUnmarshaller.queryList(largeRoot, "list/value", ToIntegerConverter.class, null, true);
+
+            assertThat(parallelListObject.subObjects).hasSize(5000);
+            for (int i = 0; i < 5000; i++)
+            {
+                assertThat(parallelListObject.subObjects.get(i).getStringValue()).isEqualTo(String.valueOf(i));
+                assertThat(integers.get(i)).isEqualTo(i);
+            }
+            assertThat(parallelUnmarshaller.queryList(root, "subList/value", null, AnySubObject.class, true))
+                .containsExactly(new AnySubObject("anySubListValue1"), new AnySubObject("anySubListValue2"));
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        assertThatThrownBy(() -> XPathUnmarshaller.builder().parallelListThreshold(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    public static class ParallelListObject
+    {
+        @XPathList(value = "list/value", subTypeClass = AnySubObject.class, parallel = true)
+        List<AnySubObject> subObjects;
+    }
+
+    @Test
+    public void testUnmarshalForkJoin() throws ParsingException
+    {
+        Element treeRoot = XPathUtils.getRootElement(appendTreeNode(new StringBuilder(), "n", 5).toString());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try
+        {
+            XPathUnmarshaller forkJoinUnmarshaller = XPathUnmarshaller.builder().forkJoinUnmarshalling(true).forkJoinThreshold(16).forkJoinPool(pool).build();
+
+            TreeNode forkJoinTree = forkJoinUnmarshaller.unmarshal(treeRoot, TreeNode.class);
+            TreeNode sequentialTree = XPathUnmarshaller.builder().build().unmarshal(treeRoot, TreeNode.class);
+
+            assertTreeNode(forkJoinTree, "n", 5);
+            assertTreeNode(sequentialTree, "n", 5);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        assertThatThrownBy(() -> XPathUnmarshaller.builder().forkJoinThreshold(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static StringBuilder appendTreeNode(StringBuilder xml, String name, int depth)
+    {
+        xml.append("<node name=\"").append(name).append("\"><detail><value>").append(name).append("</value></detail>");
+        for (int i = 0; (depth > 0) && (i < 4); i++)
+        {
+            appendTreeNode(xml, name + i, depth - 1);
+        }
+        return xml.append("</node>");
+    }
+
+    private static void assertTreeNode(TreeNode node, String name, int depth)
+    {
+        assertThat(node.name).isEqualTo(name);
+        assertThat(node.detail.value).isEqualTo(name);
+        assertThat(node.children).hasSize(depth > 0 ? 4 : 0);
+        assertThat(node.childrenByName).hasSize(depth > 0 ? 4 : 0);
+        for (int i = 0; i < node.children.size(); i++)
+        {
+            assertTreeNode(node.children.get(i), name + i, depth - 1);
+            assertThat(node.childrenByName.get(name + i).name).isEqualTo(name + i);
+        }
+    }
+
+    public static class TreeNode
+    {
+        @XPathFirst("@name")
+        String name;
+
+        @XPathFirst(value = "detail", isSubType = true)
+        TreeNodeDetail detail;
+
+        @XPathList(value = "node", subTypeClass = TreeNode.class)
+        List<TreeNode> children;
+
+        @XPathMap(entryXPath = "node", keySubXPath = "@name", valueSubXPath = ".", valueSubTypeClass = TreeNode.class)
+        Map<String, TreeNode> childrenByName;
+    }
+
+    public static class TreeNodeDetail
+    {
+        @XPathFirst("value")
+        String value;
+    }
+
+    @Test
+    public void testUnmarshalWithParallelFieldEvaluation() throws ParsingException
+    {
+        Element scanRoot = XPathUtils.getRootElement(
+            "<root><id>1</id><a><b><name>first</name><price>2</price></b><c><name>second</name><price>3</price></c></a></root>");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        AtomicInteger tasks = new AtomicInteger();
+        try
+        {
+            XPathUnmarshaller parallelUnmarshaller = XPathUnmarshaller.builder()
+                .parallelFieldEvaluation(command -> executor.execute(() ->
+                {
+                    tasks.incrementAndGet();
+                    command.run();
+                }))
+                .parallelFieldCostThreshold(32)
+                .build();
+
+            ScanningObject scanningObject = parallelUnmarshaller.unmarshal(scanRoot, ScanningObject.class);
+
+            assertThat(scanningObject.id).isEqualTo(1);
+            assertThat(scanningObject.names).containsExactly("first", "second");
+            assertThat(scanningObject.prices).containsExactly(2, 3);
+            assertThat(scanningObject.firstName).isEqualTo("first");
+            // all expensive fields but the last one are evaluated by the executor
+            assertThat(tasks.get()).isEqualTo(2);
+
+            parallelUnmarshaller.unmarshal(scanRoot, AnySubObject.class);
+            assertThat(tasks.get()).isEqualTo(2);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+        assertThatThrownBy(() -> XPathUnmarshaller.builder().parallelFieldCostThreshold(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    public static class ScanningObject
+    {
+        @XPathFirst(value = "id", converterClass = ToIntegerConverter.class)
+        int id;
+
+        @XPathList("//name")
+        List<String> names;
+
+        @XPathList(value = "//price", converterClass = ToIntegerConverter.class)
+        List<Integer> prices;
+
+        @XPathFirst("descendant::name")
+        String firstName;
+    }
+
+    @Test
+    public void testUnmarshalInOneTraversal() throws ParsingException
+    {
+        XPathUnmarshaller singleTraversalUnmarshaller = XPathUnmarshaller.builder().singleTraversalUnmarshalling(true).build();
+
+        assertAnyObjectIsCorrect(singleTraversalUnmarshaller.unmarshal(xml, AnyObject.class));
+        assertTreeNode(singleTraversalUnmarshaller.unmarshal(appendTreeNode(new StringBuilder(), "n", 3).toString(), TreeNode.class), "n", 3);
+        ScanningObject scanningObject = singleTraversalUnmarshaller.unmarshal(
+            "<root><id>1</id><a><b><name>first</name><price>2</price></b><c><name>second</name><price>3</price></c></a></root>", ScanningObject.class);
+        assertThat(scanningObject.names).containsExactly("first", "second");
+        assertThat(scanningObject.firstName).isEqualTo("first");
+    }
+
+    @Test
+    public void testUnmarshalWithCompiledUnmarshaller()
+    {
+        CompiledObject compiledObject = unmarshaller.unmarshal(root, CompiledObject.class);
+
+        assertThat(compiledObject.anyString).isEqualTo("anyStringValue");
+        assertThat(compiledObject.anyInt).isEqualTo(123);
+        assertThat(compiledObject.unmarshalledByCompiledUnmarshaller).isTrue();
+    }
+
+    @Test
+    public void testUnmarshalInOneTraversalIgnoresCompiledUnmarshaller()
+    {
+        XPathUnmarshaller singleTraversalUnmarshaller = XPathUnmarshaller.builder().singleTraversalUnmarshalling(true).build();
+        CompiledObject compiledObject = singleTraversalUnmarshaller.unmarshal(root, CompiledObject.class);
+
+        assertThat(compiledObject.anyString).isEqualTo("anyStringValue");
+        assertThat(compiledObject.anyInt).isEqualTo(123);
+        assertThat(compiledObject.unmarshalledByCompiledUnmarshaller).isFalse();
+    }
+
+    public static class CompiledObject
+    {
+        @XPathFirst("singleString")
+        String anyString;
+
+        @XPathFirst("singleInt")
+        int anyInt;
+
+        boolean unmarshalledByCompiledUnmarshaller;
+    }
+
+    /**
+     * Same as generated by the xpath-utils-processor for {@link CompiledObject}
+     */
+    public static final class CompiledObjectXPathUnmarshaller implements GeneratedUnmarshaller
+    {
+        private final UnmarshallerSupport support;
+
+        public CompiledObjectXPathUnmarshaller(UnmarshallerSupport support)
+        {
+            this.support = support;
+        }
+
+        @Override
+        @SuppressWarnings(
+        { "unchecked", "rawtypes" })
+        public Object unmarshal(Element root)
+        {
+            CompiledObject target = new CompiledObject();
+            target.anyString = (String) support.toFieldValue(support.queryFirst(root, "singleString", (Class) NoneConverter.class), String.class,
+                "anyString");
+            Integer anyInt = (Integer) support.toFieldValue(support.queryFirst(root, "singleInt", (Class) NoneConverter.class), int.class, "anyInt");
+            if (anyInt != null)
+            {
+                target.anyInt = anyInt;
+            }
+            target.unmarshalledByCompiledUnmarshaller = true;
+            return target;
+        }
+    }
+}
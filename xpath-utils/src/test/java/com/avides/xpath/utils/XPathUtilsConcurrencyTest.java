@@ -0,0 +1,151 @@
+package com.avides.xpath.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.avides.xpath.utils.converters.ToBooleanConverter;
+import com.avides.xpath.utils.converters.ToIntegerConverter;
+import com.avides.xpath.utils.converters.ToLongConverter;
+import com.avides.xpath.utils.testsupport.XPathTestSupport;
+
+public class XPathUtilsConcurrencyTest extends XPathTestSupport
+{
+    private static final int READER_THREADS = 8;
+    private static final int ITERATIONS = 300;
+
+    @After
+    public void tearDown()
+    {
+        XPathUtils.clearConverterInstances();
+        XPathUtils.resetDefaultConverterInstancesToType();
+    }
+
+    @Test
+    public void testConcurrentReadsAndRegistrations() throws InterruptedException
+    {
+        Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < READER_THREADS; i++)
+        {
+            readers.add(startThread(errors, () ->
+            {
+                start.await();
+                for (int j = 0; j < ITERATIONS; j++)
+                {
+                    assertThat(XPathUtils.getConverter(ToIntegerConverter.class)).isInstanceOf(ToIntegerConverter.class);
+                    assertThat(XPathUtils.getConverter(ToLongConverter.class)).isInstanceOf(ToLongConverter.class);
+                    assertThat(XPathUtils.queryInteger(root, "singleInt")).isEqualTo(123);
+                    assertAnyObjectIsCorrect(XPathUtils.fromRoot(root, AnyObject.class));
+                }
+            }));
+        }
+        Thread writer = startThread(errors, () ->
+        {
+            start.await();
+            while (running.get())
+            {
+                XPathUtils.registerConverterInstance(new ToIntegerConverter());
+                XPathUtils.unregisterConverterInstance(ToBooleanConverter.class);
+                XPathUtils.registerDefaultConverterInstanceToType(Integer.class, new ToIntegerConverter());
+                XPathUtils.clearConverterInstances();
+                XPathUtils.resetDefaultConverterInstancesToType();
+            }
+        });
+
+        start.countDown();
+        for (Thread reader : readers)
+        {
+            reader.join();
+        }
+        running.set(false);
+        writer.join();
+
+        assertThat(errors).isEmpty();
+    }
+
+    @Test
+    public void testCachesDoNotPinClassLoaders() throws Exception
+    {
+        WeakReference<ClassLoader> classLoader = useClassesOfSeparateClassLoader();
+        for (int i = 0; (i < 100) && (classLoader.get() != null); i++)
+        {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertThat(classLoader.get()).isNull();
+    }
+
+    @SuppressWarnings(
+    { "unchecked", "rawtypes" })
+    private WeakReference<ClassLoader> useClassesOfSeparateClassLoader() throws Exception
+    {
+        URL testClasses = SeparateConverter.class.getProtectionDomain().getCodeSource().getLocation();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]
+        { testClasses }, ClassLoader.getPlatformClassLoader()))
+        {
+            Class converterClass = classLoader.loadClass(SeparateConverter.class.getName());
+            Class<?> objectClass = classLoader.loadClass(SeparateObject.class.getName());
+            assertThat(XPathUtils.getConverter(converterClass).apply("value")).isEqualTo("value");
+            assertThat(XPathUtils.fromRoot(root, objectClass)).isInstanceOf(objectClass);
+            return new WeakReference<>(classLoader);
+        }
+    }
+
+    private static Thread startThread(Queue<Throwable> errors, Task task)
+    {
+        Thread thread = new Thread(() ->
+        {
+            try
+            {
+                task.run();
+            }
+            catch (Throwable e)
+            {
+                errors.add(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private interface Task
+    {
+        void run() throws Exception;
+    }
+
+    public static class SeparateConverter implements Function<String, String>
+    {
+        @Override
+        public String apply(String value)
+        {
+            return value;
+        }
+    }
+
+    public static class SeparateObject
+    {
+        private String value;
+
+        @Override
+        public String toString()
+        {
+            return value;
+        }
+    }
+}
@@ -1,16 +1,23 @@
 package com.avides.xpath.utils;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
@@ -128,6 +135,19 @@ public class XPathUtilsTest extends XPathTestSupport
             Integer.valueOf(789));
     }
 
+    @Test
+    public void testQueryListWithOffsetAndLimit()
+    {
+        assertThat(XPathUtils.queryList(root, "list/value", 1, 1)).containsExactly("678");
+        assertThat(XPathUtils.queryList(root, "list/value", 1, 10)).containsExactly("678", "789");
+        assertThat(XPathUtils.queryList(root, "list/value", 3, 10)).isEmpty();
+        assertThat(XPathUtils.queryList(root, "list/value", 0, 0)).isEmpty();
+        assertThat(XPathUtils.queryList(root, "//value", 0, 2)).containsExactlyElementsOf(XPathUtils.queryList(root, "//value").subList(0, 2));
+        assertThat(XPathUtils.queryNodeList(root, "list/value[. > 600]", 1, 1)).extracting(Node::getValue).containsExactly("789");
+        assertThatThrownBy(() -> XPathUtils.queryList(root, "list/value", -1, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> XPathUtils.queryList(root, "list/value", 0, -1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
     @Test
     public void testQueryTypesList()
     {
@@ -170,6 +190,34 @@ public class XPathUtilsTest extends XPathTestSupport
         assertAnyObjectIsCorrect(anyObject);
     }
 
+    @Test
+    public void testFromByteBuffer() throws ParsingException
+    {
+        byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+        direct.flip();
+
+        assertAnyObjectIsCorrect(XPathUtils.fromByteBuffer(direct, AnyObject.class));
+        assertThat(direct.position()).isZero();
+        assertAnyObjectIsCorrect(XPathUtils.fromByteBuffer(ByteBuffer.wrap(bytes), AnyObject.class));
+    }
+
+    @Test
+    public void testFromBytes() throws ParsingException
+    {
+        byte[] bytes = ("ignored" + xml + "ignored").getBytes(StandardCharsets.UTF_8);
+
+        assertAnyObjectIsCorrect(XPathUtils.fromBytes(bytes, 7, bytes.length - 14, AnyObject.class));
+    }
+
+    @Test
+    public void testFromChannel() throws ParsingException
+    {
+        ReadableByteChannel channel = Channels.newChannel(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+
+        assertAnyObjectIsCorrect(XPathUtils.fromChannel(channel, AnyObject.class));
+    }
+
     @Test
     public void testFromReader() throws ParsingException
     {
@@ -190,6 +238,33 @@ public class XPathUtilsTest extends XPathTestSupport
         XPathUtils.getRootElement("anyInvalidXml");
     }
 
+    @Test
+    public void testGetRootElementFromXmlWithoutEncoding() throws ParsingException
+    {
+        String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><root>\u00e4\u20ac</root>";
+
+        assertThat(XPathUtils.getRootElement(xml).getValue()).isEqualTo("\u00e4\u20ac");
+    }
+
+    @Test
+    public void testGetRootElementFromBytes() throws ParsingException
+    {
+        byte[] bytes = "<a/><root>value</root><b/>".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(XPathUtils.getRootElement(bytes, 4, 18).getValue()).isEqualTo("value");
+        assertThat(XPathUtils.getRootElement(ByteBuffer.wrap(bytes, 4, 18)).getValue()).isEqualTo("value");
+        assertThat(XPathUtils.getRootElement(Channels.newChannel(new ByteArrayInputStream(bytes, 4, 18))).getValue()).isEqualTo("value");
+    }
+
+    @Test
+    public void testGetRootElementAsync() throws Exception
+    {
+        File file = new File(getClass().getClassLoader().getResource("test.xml").getFile());
+
+        assertThat(XPathUtils.getRootElementAsync(file, ForkJoinPool.commonPool()).get().toXML()).isEqualTo(root.toXML());
+        assertThat(XPathUtils.getRootElementAsync(new StringReader("<root/>"), ForkJoinPool.commonPool()).get().getLocalName()).isEqualTo("root");
+    }
+
     @Test
     public void testGetRootElementFromReader() throws ParsingException
     {
@@ -419,4 +494,17 @@ public class XPathUtilsTest extends XPathTestSupport
         assertThat(XPathUtils.queryEnum(root, "anyNotExisting", AnyEnum.class)).isNull();
         assertThat(XPathUtils.queryEnum(root, "emptyValue", AnyEnum.class)).isNull();
     }
+
+    @Test
+    public void testIsScanning()
+    {
+        assertThat(XPathUtils.isScanning("order/item")).isFalse();
+        assertThat(XPathUtils.isScanning("order/followingItems")).isFalse();
+        assertThat(XPathUtils.isScanning("ancestorId")).isFalse();
+        assertThat(XPathUtils.isScanning("item[descendantCount > 1]/@id")).isFalse();
+        assertThat(XPathUtils.isScanning("//item")).isTrue();
+        assertThat(XPathUtils.isScanning("order//item[@id = 1]")).isTrue();
+        assertThat(XPathUtils.isScanning("item/following-sibling::item")).isTrue();
+        assertThat(XPathUtils.isScanning("ancestor :: order")).isTrue();
+    }
 }
@@ -0,0 +1,72 @@
+package com.avides.xpath.utils.processors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.avides.xpath.utils.converters.ToIntegerConverter;
+import com.avides.xpath.utils.testsupport.XPathTestSupport;
+
+@SuppressWarnings("deprecation")
+public class AbstractAnnotationProcessorTest extends XPathTestSupport
+{
+    @Test
+    public void testDeprecatedPerTargetProcessor() throws NoSuchFieldException
+    {
+        AnyObject anyObject = new AnyObject();
+        new XPathFirstProcessor(root, AnyObject.class.getDeclaredField("anyInteger"), anyObject, defaultToTypeConverters()).process();
+        new XPathListProcessor(root, AnyObject.class.getDeclaredField("anyStringList"), anyObject, defaultToTypeConverters()).process();
+        new XPathMapProcessor(root, AnyObject.class.getDeclaredField("anyStringMap"), anyObject, defaultToTypeConverters()).process();
+
+        assertThat(anyObject.getAnyInteger()).isEqualTo(123);
+        assertThat(anyObject.getAnyStringList()).containsExactly("567", "678", "789");
+        assertThat(anyObject.getAnyStringMap()).hasSize(4).containsEntry("anyKey1", "234");
+    }
+
+    @Test
+    public void testDeprecatedPerTargetProcessorIgnoresUnannotatedField() throws NoSuchFieldException
+    {
+        AnyObject anyObject = new AnyObject();
+        Field field = AnyObject.class.getDeclaredField("anyInteger");
+        new XPathListProcessor(root, field, anyObject, defaultToTypeConverters()).process();
+        new XPathMapProcessor(root, field, anyObject, defaultToTypeConverters()).process();
+
+        assertThat(anyObject.getAnyInteger()).isNull();
+    }
+
+    @Test
+    public void testDeprecatedPerTargetProcessorsForAllFields()
+    {
+        // the unmarshalling of former versions, which created all processors for each field
+        AnyObject anyObject = new AnyObject();
+        for (Field field : AnyObject.class.getDeclaredFields())
+        {
+            new XPathFirstProcessor(root, field, anyObject, defaultToTypeConverters()).process();
+            new XPathListProcessor(root, field, anyObject, defaultToTypeConverters()).process();
+            new XPathMapProcessor(root, field, anyObject, defaultToTypeConverters()).process();
+        }
+
+        assertAnyObjectIsCorrect(anyObject);
+    }
+
+    @Test
+    public void testEstimateEvaluationCost()
+    {
+        assertThat(AbstractAnnotationProcessor.estimateEvaluationCost(false, "order/followingItems", "ancestorId")).isEqualTo(1);
+        assertThat(AbstractAnnotationProcessor.estimateEvaluationCost(true, "order/followingItems")).isEqualTo(4);
+        assertThat(AbstractAnnotationProcessor.estimateEvaluationCost(false, "//item", "item/following::item")).isEqualTo(33);
+    }
+
+    private static Map<Class<?>, Function<String, ?>> defaultToTypeConverters()
+    {
+        Map<Class<?>, Function<String, ?>> converters = new HashMap<>();
+        converters.put(Integer.class, new ToIntegerConverter());
+        converters.put(int.class, new ToIntegerConverter());
+        return converters;
+    }
+}
@@ -0,0 +1,127 @@
+package com.avides.xpath.utils.processors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import com.avides.xpath.utils.XPathUnmarshaller;
+import com.avides.xpath.utils.XPathUtils;
+import com.avides.xpath.utils.annotations.XPathFirst;
+import com.avides.xpath.utils.converters.ToIntegerConverter;
+import com.avides.xpath.utils.testsupport.XPathTestSupport;
+
+import nu.xom.ParsingException;
+
+public class UnmarshallerGeneratorTest extends XPathTestSupport
+{
+    @Test
+    public void testGenerateHidden()
+    {
+        assumeTrue(UnmarshallerGenerator.isHiddenClassSupported());
+
+        GeneratedUnmarshaller unmarshaller = generate(AnyObject.class, true);
+
+        assertThat(unmarshaller).isNotNull();
+        assertAnyObjectIsCorrect((AnyObject) unmarshaller.unmarshal(root));
+    }
+
+    @Test
+    public void testGenerateInPackage()
+    {
+        GeneratedUnmarshaller unmarshaller = generate(AnyObject.class, false);
+
+        assertThat(unmarshaller).isNotNull();
+        assertAnyObjectIsCorrect((AnyObject) unmarshaller.unmarshal(root));
+    }
+
+    @Test
+    public void testGenerateWithPrimitivesAndVisibleFields() throws ParsingException
+    {
+        String primitivesXml = "<root><int>1</int><long>2</long><double>3.5</double><boolean>true</boolean><byte>4</byte><char>c</char></root>";
+        for (boolean hidden : UnmarshallerGenerator.isHiddenClassSupported() ? new boolean[]
+        { true, false } : new boolean[]
+        { false })
+        {
+            GeneratedUnmarshaller unmarshaller = generate(AnyPrimitives.class, hidden);
+            AnyPrimitives primitives = (AnyPrimitives) unmarshaller.unmarshal(XPathUtils.getRootElement(primitivesXml));
+
+            assertThat(primitives.intValue).isEqualTo(1);
+            assertThat(primitives.longValue).isEqualTo(2L);
+            assertThat(primitives.doubleValue).isEqualTo(3.5);
+            assertThat(primitives.booleanValue).isTrue();
+            assertThat(primitives.byteValue).isEqualTo((byte) 4);
+            assertThat(primitives.charValue).isEqualTo('c');
+            assertThat(primitives.notExistingByte).isEqualTo((byte) 5);
+        }
+    }
+
+    @Test
+    public void testGenerateWithoutConstructor()
+    {
+        assertThat(UnmarshallerGenerator.generate(AnyObject.class, null, new AbstractAnnotationProcessor[0])).isNull();
+    }
+
+    @Test
+    public void testUnmarshalWithGeneratedUnmarshallersEnabled() throws ParsingException
+    {
+        XPathUnmarshaller.setGeneratedUnmarshallersEnabled(true);
+        try
+        {
+            assertThat(XPathUnmarshaller.isGeneratedUnmarshallersEnabled()).isTrue();
+            assertAnyObjectIsCorrect(XPathUnmarshaller.getInstance().unmarshal(xml, AnyObject.class));
+        }
+        finally
+        {
+            XPathUnmarshaller.setGeneratedUnmarshallersEnabled(false);
+        }
+        assertThat(XPathUnmarshaller.isGeneratedUnmarshallersEnabled()).isFalse();
+    }
+
+    private static GeneratedUnmarshaller generate(Class<?> type, boolean hidden)
+    {
+        BindingPlan<?> plan = BindingPlan.create(type, XPathUnmarshaller.getInstance(), defaultToTypeConverters(), BindingPlan.settings());
+        return UnmarshallerGenerator.generate(type, type.getConstructors()[0], plan.getProcessors(), hidden);
+    }
+
+    private static Map<Class<?>, Function<String, ?>> defaultToTypeConverters()
+    {
+        Map<Class<?>, Function<String, ?>> converters = new HashMap<>();
+        converters.put(Integer.class, new ToIntegerConverter());
+        converters.put(int.class, new ToIntegerConverter());
+        converters.put(long.class, Long::valueOf);
+        converters.put(double.class, Double::valueOf);
+        converters.put(boolean.class, Boolean::valueOf);
+        converters.put(byte.class, Byte::valueOf);
+        converters.put(char.class, value -> Character.valueOf(value.charAt(0)));
+        return converters;
+    }
+
+    public static class AnyPrimitives
+    {
+        @XPathFirst("int")
+        int intValue;
+
+        @XPathFirst("long")
+        protected long longValue;
+
+        @XPathFirst("double")
+        public double doubleValue;
+
+        @XPathFirst("boolean")
+        private boolean booleanValue;
+
+        @XPathFirst("byte")
+        byte byteValue;
+
+        @XPathFirst("char")
+        char charValue;
+
+        @XPathFirst("notExisting")
+        byte notExistingByte = 5;
+    }
+}
@@ -0,0 +1,154 @@
+package com.avides.xpath.utils.processors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.avides.xpath.utils.XPathUnmarshaller;
+import com.avides.xpath.utils.XPathUtils;
+
+/**
+ * Tests the annotation-processor of <code>xpath-utils-processor</code>, which
+ * is built before this module by the parent-pom. It is not a dependency (that
+ * could not be resolved by goals like <code>surefire:test</code> without
+ * packaging), but found on the processor-path of the test-compilation
+ */
+public class XPathUnmarshallerProcessorTest
+{
+    private static final File PROCESSOR_CLASSES = new File("../xpath-utils-processor/target/classes");
+
+    private static final String SAMPLE = "package sample;\n"
+        + "import java.util.List;\n"
+        + "import java.util.Map;\n"
+        + "import com.avides.xpath.utils.annotations.XPathFirst;\n"
+        + "import com.avides.xpath.utils.annotations.XPathList;\n"
+        + "import com.avides.xpath.utils.annotations.XPathMap;\n"
+        + "import com.avides.xpath.utils.converters.ToIntegerConverter;\n"
+        + "public class Sample\n"
+        + "{\n"
+        + "    @XPathFirst(\"string\") String string;\n"
+        + "    @XPathFirst(value = \"int\", converterClass = ToIntegerConverter.class) int intValue;\n"
+        + "    @XPathFirst(\"notExisting\") byte notExistingByte = 5;\n"
+        + "    @XPathFirst(\"kind\") Kind kind;\n"
+        + "    @XPathList(value = \"list/value\", converterClass = ToIntegerConverter.class) List<Integer> list;\n"
+        + "    @XPathMap(entryXPath = \"map/entry\", keySubXPath = \"key\", valueSubXPath = \"value\") Map<String, String> map;\n"
+        + "    @XPathFirst(value = \"sub\", isSubType = true) Sub sub;\n"
+        + "    @XPathFirst(\"private\") private String privateValue;\n"
+        + "    public void setPrivateValue(String privateValue) { this.privateValue = privateValue + \"-set\"; }\n"
+        + "    public static class Sub { @XPathFirst(\"value\") public String value; }\n"
+        + "    public enum Kind { A, B }\n"
+        + "}\n";
+
+    private static final String UNSUPPORTED = "package sample;\n"
+        + "import com.avides.xpath.utils.annotations.XPathFirst;\n"
+        + "public class Unsupported\n"
+        + "{\n"
+        + "    @XPathFirst(\"string\") private String string;\n"
+        + "}\n";
+
+    private static final String XML = "<root><string>any</string><int>12</int><kind>B</kind><list><value>1</value><value>2</value></list>"
+        + "<map><entry><key>k</key><value>v</value></entry></map><sub><value>subValue</value></sub><private>p</private></root>";
+
+    private File outputDirectory;
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+    private ClassLoader classLoader;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        assumeTrue("xpath-utils-processor is not built", PROCESSOR_CLASSES.isDirectory());
+
+        outputDirectory = Files.createTempDirectory("xpath-utils-processor").toFile();
+        diagnostics = new DiagnosticCollector<>();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<String> options = Arrays.asList("-d", outputDirectory.getPath(), "-s", outputDirectory.getPath(), "-classpath",
+            System.getProperty("java.class.path"), "-processorpath", PROCESSOR_CLASSES.getPath());
+        CompilationTask task = compiler.getTask(null, null, diagnostics, options, null,
+            Arrays.asList(new Source("sample/Sample", SAMPLE), new Source("sample/Unsupported", UNSUPPORTED)));
+
+        assertThat(task.call()).as(diagnostics.getDiagnostics().toString()).isTrue();
+        classLoader = new URLClassLoader(new URL[]
+        { outputDirectory.toURI().toURL() }, getClass().getClassLoader());
+    }
+
+    @Test
+    public void testGeneratedUnmarshaller() throws Exception
+    {
+        Class<?> sampleClass = classLoader.loadClass("sample.Sample");
+        GeneratedUnmarshaller unmarshaller = (GeneratedUnmarshaller) classLoader.loadClass("sample.SampleXPathUnmarshaller")
+            .getConstructor(UnmarshallerSupport.class)
+            .newInstance(new UnmarshallerSupport(XPathUnmarshaller.getInstance(), new HashMap<>()));
+
+        assertSample(unmarshaller.unmarshal(XPathUtils.getRootElement(XML)));
+        assertSample(XPathUtils.fromXml(XML, sampleClass));
+        assertThat(new File(outputDirectory, "sample/Sample$SubXPathUnmarshaller.java")).exists();
+    }
+
+    @Test
+    public void testNoGeneratedUnmarshallerForPrivateFieldWithoutSetter()
+    {
+        assertThat(new File(outputDirectory, "sample/UnsupportedXPathUnmarshaller.java")).doesNotExist();
+        assertThat(diagnostics.getDiagnostics()).anySatisfy(diagnostic ->
+        {
+            assertThat(diagnostic.getKind()).isEqualTo(Diagnostic.Kind.WARNING);
+            assertThat(diagnostic.getMessage(null)).contains("string").contains("setter");
+        });
+    }
+
+    private static void assertSample(Object sample) throws ReflectiveOperationException
+    {
+        assertThat(field(sample, "string")).isEqualTo("any");
+        assertThat(field(sample, "intValue")).isEqualTo(12);
+        assertThat(field(sample, "notExistingByte")).isEqualTo((byte) 5);
+        assertThat(field(sample, "kind")).hasToString("B");
+        assertThat(field(sample, "list")).isEqualTo(Arrays.asList(1, 2));
+        assertThat(field(sample, "map")).isEqualTo(Map.of("k", "v"));
+        assertThat(field(field(sample, "sub"), "value")).isEqualTo("subValue");
+        assertThat(field(sample, "privateValue")).isEqualTo("p-set");
+    }
+
+    private static Object field(Object target, String name) throws ReflectiveOperationException
+    {
+        java.lang.reflect.Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(target);
+    }
+
+    private static class Source extends SimpleJavaFileObject
+    {
+        private final String content;
+
+        Source(String name, String content)
+        {
+            super(URI.create("string:///" + name + Kind.SOURCE.extension), Kind.SOURCE);
+            this.content = content;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors)
+        {
+            return content;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.avides.xpath.utils.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.Test;
+
+public class FieldWriterTest
+{
+    @Test
+    public void testSetPrimitives() throws NoSuchFieldException
+    {
+        AnyTarget target = new AnyTarget();
+
+        writer("intValue").set(target, Integer.valueOf(1));
+        writer("longValue").set(target, Long.valueOf(2L));
+        writer("doubleValue").set(target, Double.valueOf(3.5));
+        writer("booleanValue").set(target, Boolean.TRUE);
+        writer("shortValue").set(target, Short.valueOf((short) 4));
+
+        assertThat(target.intValue).isEqualTo(1);
+        assertThat(target.longValue).isEqualTo(2L);
+        assertThat(target.doubleValue).isEqualTo(3.5);
+        assertThat(target.booleanValue).isTrue();
+        assertThat(target.shortValue).isEqualTo((short) 4);
+    }
+
+    @Test
+    public void testSetObjects() throws NoSuchFieldException
+    {
+        AnyTarget target = new AnyTarget();
+
+        writer("stringValue").set(target, "any");
+        writer("integerValue").set(target, Integer.valueOf(6));
+
+        assertThat(target.stringValue).isEqualTo("any");
+        assertThat(target.integerValue).isEqualTo(6);
+    }
+
+    @Test
+    public void testSetFinal() throws NoSuchFieldException
+    {
+        AnyTarget target = new AnyTarget();
+
+        writer("finalValue").set(target, "changed");
+
+        assertThat(target.finalValue).isEqualTo("changed");
+    }
+
+    @Test
+    public void testSetWithNotMatchingType() throws NoSuchFieldException
+    {
+        FieldWriter stringWriter = writer("stringValue");
+        FieldWriter intWriter = writer("intValue");
+
+        assertThatThrownBy(() -> stringWriter.set(new AnyTarget(), Integer.valueOf(1))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> intWriter.set(new AnyTarget(), null)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static FieldWriter writer(String fieldName) throws NoSuchFieldException
+    {
+        return FieldWriter.of(AnyTarget.class.getDeclaredField(fieldName));
+    }
+
+    private static class AnyTarget
+    {
+        private int intValue;
+        private long longValue;
+        private double doubleValue;
+        private boolean booleanValue;
+        private short shortValue;
+        private Integer integerValue;
+        private String stringValue;
+        private final String finalValue = String.valueOf("initial");
+    }
+}
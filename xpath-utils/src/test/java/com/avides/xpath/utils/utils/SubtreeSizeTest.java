@@ -0,0 +1,42 @@
+package com.avides.xpath.utils.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import nu.xom.Element;
+
+public class SubtreeSizeTest
+{
+    @Test
+    public void testIsAtLeast()
+    {
+        // element, text, child element, its text
+        Element element = new Element("root");
+        element.appendChild("text");
+        Element child = new Element("child");
+        child.appendChild("childText");
+        element.appendChild(child);
+
+        assertThat(SubtreeSize.isAtLeast(element, 1)).isTrue();
+        assertThat(SubtreeSize.isAtLeast(element, 4)).isTrue();
+        assertThat(SubtreeSize.isAtLeast(element, 5)).isFalse();
+        assertThat(SubtreeSize.isAtLeast(child, 3)).isFalse();
+    }
+
+    @Test
+    public void testIsAtLeastForList()
+    {
+        Element first = new Element("first");
+        first.appendChild("text");
+        Element second = new Element("second");
+        second.appendChild("text");
+
+        assertThat(SubtreeSize.isAtLeast(Arrays.asList(first, second), 4)).isTrue();
+        assertThat(SubtreeSize.isAtLeast(Arrays.asList(first, second), 5)).isFalse();
+        assertThat(SubtreeSize.isAtLeast(Collections.emptyList(), 1)).isFalse();
+    }
+}